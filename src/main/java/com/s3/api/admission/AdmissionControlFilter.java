@@ -0,0 +1,141 @@
+package com.s3.api.admission;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Runs {@link S3AdmissionControl} in front of the {@code /s3} endpoints, before the request body is read, and answers
+ * {@code 429 Too Many Requests} with a {@code Retry-After} header to the requests it rejects.
+ * The bucket and key are taken from the query string ({@code bucketName}, or the destination then source bucket of
+ * copies, and {@code key} or a prefix), or from the path of bucket checks ({@code /check/{bucketName}}).
+ * The stats endpoints are not limited. Streaming and asynchronous responses keep their slot until the response is complete.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 100)
+public class AdmissionControlFilter extends OncePerRequestFilter {
+
+    // Autowires the admission control.
+    @Autowired
+    private S3AdmissionControl admissionControl;
+
+    // Request header identifying clients for their rate limit; when empty, clients are told apart by address.
+    @Value("${s3.admission.client-header:}")
+    private String clientHeader;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return !admissionControl.isEnabled() || !path.startsWith("/s3/") || path.endsWith("/stats");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        // Parameters come from the query string only: reading them from the request would parse multipart bodies.
+        Map<String, String> query = parseQuery(request.getQueryString());
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        String bucketName = firstOf(query.get("bucketName"), query.get("destinationBucketName"), query.get("sourceBucketName"),
+                                    path.contains("/check/") ? path.substring(path.lastIndexOf('/') + 1) : null);
+        String key = firstOf(query.get("key"), query.get("prefix"), query.get("destinationPrefix"));
+        String method = request.getMethod();
+        boolean write = !("GET".equals(method) || "HEAD".equals(method) || path.endsWith("/download"));
+
+        S3AdmissionControl.Permit permit;
+        try {
+            permit = admissionControl.admit(clientOf(request), bucketName, key, write);
+        } catch (S3AdmissionControl.RejectedException e) {
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(e.retryAfterSeconds()));
+            response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+            response.getWriter().write(e.getMessage());
+            return;
+        }
+
+        boolean async = false;
+        try {
+            filterChain.doFilter(request, response);
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new PermitReleaser(permit));
+                async = true;
+            }
+        } finally {
+            if (!async) {
+                permit.close();
+            }
+        }
+    }
+
+    private String clientOf(HttpServletRequest request) {
+        String client = clientHeader.isBlank() ? null : request.getHeader(clientHeader);
+        return client == null || client.isBlank() ? request.getRemoteAddr() : client;
+    }
+
+    private static String firstOf(String... values) {
+        for (String value : values) {
+            if (value != null && !value.isEmpty()) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+        for (String parameter : rawQuery.split("&")) {
+            int equals = parameter.indexOf('=');
+            String name = URLDecoder.decode(equals < 0 ? parameter : parameter.substring(0, equals), StandardCharsets.UTF_8);
+            String value = equals < 0 ? "" : URLDecoder.decode(parameter.substring(equals + 1), StandardCharsets.UTF_8);
+            query.putIfAbsent(name, value);
+        }
+        return query;
+    }
+
+    /**
+     * Frees the slot of an asynchronous request once its response is complete, failed or timed out.
+     */
+    private record PermitReleaser(S3AdmissionControl.Permit permit) implements AsyncListener {
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            permit.close();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            permit.close();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            permit.close();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // The same request goes on: keep listening.
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
@@ -0,0 +1,554 @@
+package com.s3.api.admission;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.interceptor.Context;
+import software.amazon.awssdk.core.interceptor.ExecutionAttributes;
+import software.amazon.awssdk.core.interceptor.ExecutionInterceptor;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Admission control in front of the S3 calls, so that a burst of requests is shed here instead of being turned into
+ * S3 throttling (503 SlowDown) and multiplied by SDK retries.
+ * A request is admitted in three steps:
+ * <ol>
+ *     <li>A token bucket per client caps the request rate of each caller.</li>
+ *     <li>A token bucket per bucket and key prefix caps the read and write rates S3 allows per prefix.</li>
+ *     <li>A concurrency limit per bucket bounds the requests in flight; the others wait in a bounded queue.</li>
+ * </ol>
+ * Rate limits answer at once; only the concurrency limit queues. Both bucket limits are adaptive: every throttling
+ * response S3 sends for a bucket (seen on each attempt, retries included) shrinks them by
+ * {@code s3.admission.adaptive.decrease-factor}, at most once per {@code s3.admission.adaptive.cooldown}, and they
+ * grow back linearly once S3 stops throttling.
+ * Per-bucket meters are tagged with the bucket name only once a request of that bucket has been admitted (before,
+ * they are tagged "other"), and are removed with the state of the bucket when it is dropped while idle.
+ */
+@Component
+public class S3AdmissionControl {
+
+    /**
+     * Thrown when a request is not admitted; it should be answered with 429 Too Many Requests.
+     */
+    public static final class RejectedException extends RuntimeException {
+        private final String reason;
+        private final long retryAfterSeconds;
+
+        RejectedException(String reason, long retryAfterSeconds) {
+            super("Too many requests (" + reason + "), retry after " + retryAfterSeconds + "s");
+            this.reason = reason;
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+
+        /**
+         * @return The limit that rejected the request: client-rate, prefix-rate, queue-full or queue-timeout.
+         */
+        public String reason() {
+            return reason;
+        }
+
+        /**
+         * @return When the request is worth retrying, for the Retry-After header.
+         */
+        public long retryAfterSeconds() {
+            return retryAfterSeconds;
+        }
+    }
+
+    /**
+     * A slot taken by an admitted request. Closing it (once) frees the slot for the next queued request.
+     */
+    public static final class Permit implements AutoCloseable {
+        private final BucketState bucket;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Permit(BucketState bucket) {
+            this.bucket = bucket;
+        }
+
+        @Override
+        public void close() {
+            if (bucket != null && closed.compareAndSet(false, true)) {
+                bucket.release();
+            }
+        }
+    }
+
+    // Token buckets idle for longer than this are dropped once more than s3.admission.max-tracked-keys are tracked.
+    private static final long IDLE_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    // Enables admission control; when disabled every request goes straight to S3.
+    @Value("${s3.admission.enabled:false}")
+    private boolean enabled;
+
+    // Requests per second allowed to each client, and the burst it may send at once.
+    @Value("${s3.admission.client.rate:50}")
+    private double clientRate;
+
+    @Value("${s3.admission.client.burst:100}")
+    private double clientBurst;
+
+    // Number of leading key segments forming the prefix rates are tracked by; 0 tracks whole buckets.
+    @Value("${s3.admission.prefix-depth:1}")
+    private int prefixDepth;
+
+    // Requests per second allowed per prefix for reads (GET/HEAD) and writes, as documented S3 limits.
+    @Value("${s3.admission.prefix.read-rate:5500}")
+    private double prefixReadRate;
+
+    @Value("${s3.admission.prefix.write-rate:3500}")
+    private double prefixWriteRate;
+
+    // Requests in flight per bucket, before any throttling shrinks it.
+    @Value("${s3.admission.max-concurrency-per-bucket:64}")
+    private int maxConcurrency;
+
+    // Requests waiting per bucket for a slot; beyond it requests are rejected at once.
+    @Value("${s3.admission.max-queue-per-bucket:256}")
+    private int maxQueue;
+
+    // How long a request waits for a slot before it is rejected.
+    @Value("${s3.admission.queue-timeout:2s}")
+    private Duration queueTimeout;
+
+    // Factor the limits of a bucket are multiplied by when S3 throttles it.
+    @Value("${s3.admission.adaptive.decrease-factor:0.5}")
+    private double decreaseFactor;
+
+    // Lowest fraction of the configured limits a bucket can shrink to.
+    @Value("${s3.admission.adaptive.min-factor:0.05}")
+    private double minFactor;
+
+    // Time after a decrease during which further throttling does not shrink the limits again, and after the last
+    // throttling response before they grow back.
+    @Value("${s3.admission.adaptive.cooldown:1s}")
+    private Duration cooldown;
+
+    // Fraction of the configured limits a bucket gets back per second without throttling.
+    @Value("${s3.admission.adaptive.recovery-per-second:0.05}")
+    private double recoveryPerSecond;
+
+    // Number of client and prefix token buckets, and of bucket states, tracked before idle ones are dropped.
+    @Value("${s3.admission.max-tracked-keys:10000}")
+    private int maxTrackedKeys;
+
+    // Autowires the registry the admission meters are published to.
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, TokenBucket> clients = new ConcurrentHashMap<>();
+    private final Map<String, TokenBucket> prefixes = new ConcurrentHashMap<>();
+    private final Map<String, BucketState> buckets = new ConcurrentHashMap<>();
+
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Admits a request, waiting in the queue of its bucket if all of its slots are taken.
+     * Every request is admitted at once when admission control is disabled.
+     *
+     * @param client     Identifies the caller, or null to skip the client rate limit.
+     * @param bucketName The bucket the request targets, or null if it targets none (only the client limit applies).
+     * @param key        The key or prefix the request targets, if any.
+     * @param write      True for writes (uploads, copies, deletes), false for reads.
+     * @return The permit to close when the request is done.
+     * @throws RejectedException If a limit is reached.
+     */
+    public Permit admit(String client, String bucketName, String key, boolean write) {
+        if (!enabled) {
+            return new Permit(null);
+        }
+        long now = System.nanoTime();
+        TokenBucket clientBucket = null;
+        if (client != null) {
+            clientBucket = tokenBucket(clients, client, now);
+            long wait = clientBucket.take(clientRate, clientBurst, now);
+            if (wait > 0) {
+                throw reject("client-rate", bucketName == null ? null : buckets.get(bucketName), wait);
+            }
+        }
+        if (bucketName == null) {
+            admitted.increment();
+            return new Permit(null);
+        }
+
+        BucketState bucket = bucketState(bucketName);
+        double factor = bucket.factor(now);
+        double prefixRate = (write ? prefixWriteRate : prefixReadRate) * factor;
+        String prefixKey = bucketName + "/" + prefixOf(key) + (write ? "\0w" : "\0r");
+        long wait = tokenBucket(prefixes, prefixKey, now).take(prefixRate, Math.max(1, prefixRate), now);
+        if (wait > 0) {
+            if (clientBucket != null) {
+                // The request was not served: give the client its token back.
+                clientBucket.refund();
+            }
+            throw reject("prefix-rate", bucket, wait);
+        }
+
+        while (!bucket.acquire()) {
+            // Dropped while idle since it was looked up: take a slot in the state that replaces it.
+            bucket = bucketState(bucketName);
+        }
+        if (bucket.gauged.compareAndSet(false, true)) {
+            BucketState admittedBucket = bucket;
+            bucketMeter(bucket, tag -> Gauge.builder("s3.admission.queue.depth", admittedBucket, BucketState::waiting).tag("bucket", tag).register(meterRegistry));
+            bucketMeter(bucket, tag -> Gauge.builder("s3.admission.in.flight", admittedBucket, BucketState::inFlight).tag("bucket", tag).register(meterRegistry));
+            bucketMeter(bucket, tag -> Gauge.builder("s3.admission.limit", admittedBucket, state -> state.limit(System.nanoTime()))
+                                            .tag("bucket", tag)
+                                            .register(meterRegistry));
+        }
+        admitted.increment();
+        return new Permit(bucket);
+    }
+
+    /**
+     * Records a throttling response from S3, shrinking the limits of the bucket.
+     *
+     * @param bucketName The throttled bucket.
+     */
+    public void throttled(String bucketName) {
+        if (!enabled) {
+            return;
+        }
+        throttled.increment();
+        BucketState bucket = bucketState(bucketName);
+        bucketMeter(bucket, tag -> Counter.builder("s3.admission.throttled").tag("bucket", tag).register(meterRegistry)).increment();
+        bucket.throttled(System.nanoTime());
+    }
+
+    /**
+     * Watches the responses of every S3 call attempt for throttling (503 Slow Down, 429), to feed the adaptive limits.
+     *
+     * @return An interceptor to register on the S3 clients.
+     */
+    public ExecutionInterceptor throttleObserver() {
+        return new ExecutionInterceptor() {
+            @Override
+            public void afterTransmission(Context.AfterTransmission context, ExecutionAttributes executionAttributes) {
+                int status = context.httpResponse().statusCode();
+                if (status == 503 || status == 429) {
+                    context.request().getValueForField("Bucket", String.class)
+                           .or(() -> context.request().getValueForField("DestinationBucket", String.class))
+                           .ifPresent(S3AdmissionControl.this::throttled);
+                }
+            }
+        };
+    }
+
+    /**
+     * @return Admission counters, the requests queued and in flight now, and the lowest limit factor among buckets.
+     */
+    public Map<String, Number> stats() {
+        Map<String, Number> stats = new LinkedHashMap<>();
+        int waiting = 0;
+        int inFlight = 0;
+        double lowestFactor = 1.0;
+        long now = System.nanoTime();
+        for (BucketState bucket : buckets.values()) {
+            waiting += bucket.waiting();
+            inFlight += bucket.inFlight();
+            lowestFactor = Math.min(lowestFactor, bucket.factor(now));
+        }
+        stats.put("admitted", admitted.sum());
+        stats.put("queued", queued.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("throttled", throttled.sum());
+        stats.put("queueDepth", waiting);
+        stats.put("inFlight", inFlight);
+        stats.put("lowestLimitFactor", lowestFactor);
+        return stats;
+    }
+
+    /**
+     * @return The current limit factor of a bucket, between s3.admission.adaptive.min-factor and 1.
+     */
+    public double limitFactor(String bucketName) {
+        BucketState bucket = buckets.get(bucketName);
+        return bucket == null ? 1.0 : bucket.factor(System.nanoTime());
+    }
+
+    private RejectedException reject(String reason, BucketState bucket, long waitNanos) {
+        rejected.increment();
+        bucketMeter(bucket, tag -> Counter.builder("s3.admission.rejected").tag("reason", reason).tag("bucket", tag).register(meterRegistry))
+                .increment();
+        return new RejectedException(reason, Math.max(1, (waitNanos + 999_999_999L) / 1_000_000_000L));
+    }
+
+    private String prefixOf(String key) {
+        if (key == null || prefixDepth <= 0) {
+            return "";
+        }
+        int end = -1;
+        for (int i = 0; i < prefixDepth; i++) {
+            end = key.indexOf('/', end + 1);
+            if (end < 0) {
+                // Fewer segments than the depth: the key is at the top of its prefix.
+                return key.lastIndexOf('/') < 0 ? "" : key.substring(0, key.lastIndexOf('/') + 1);
+            }
+        }
+        return key.substring(0, end + 1);
+    }
+
+    private TokenBucket tokenBucket(Map<String, TokenBucket> tokenBuckets, String key, long now) {
+        TokenBucket bucket = tokenBuckets.get(key);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (tokenBuckets.size() >= maxTrackedKeys) {
+            // An idle bucket would be full again by now: dropping it loses nothing.
+            tokenBuckets.values().removeIf(candidate -> candidate.idleFor(now) > IDLE_NANOS);
+        }
+        return tokenBuckets.computeIfAbsent(key, ignored -> new TokenBucket(now));
+    }
+
+    private BucketState bucketState(String bucketName) {
+        BucketState bucket = buckets.get(bucketName);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (buckets.size() >= maxTrackedKeys) {
+            // An idle bucket loses its adaptive limit factor, and its meters with it.
+            buckets.values().removeIf(candidate -> {
+                if (!candidate.evict()) {
+                    return false;
+                }
+                candidate.meters.forEach(meterRegistry::remove);
+                return true;
+            });
+        }
+        return buckets.computeIfAbsent(bucketName, name -> new BucketState(name, System.nanoTime()));
+    }
+
+    /**
+     * Registers a meter tagged with a bucket, tracked so it is removed with the bucket state. Bucket names come from
+     * callers: until a request of the bucket has been admitted its meters share the "other" tag ("none" without a
+     * bucket), so rejected names do not each add meters.
+     */
+    private <M extends Meter> M bucketMeter(BucketState bucket, Function<String, M> register) {
+        if (bucket == null || !bucket.admitted) {
+            return register.apply(bucket == null ? "none" : "other");
+        }
+        M meter = register.apply(bucket.name);
+        bucket.meters.add(meter);
+        if (bucket.evicted()) {
+            // Dropped while the meter was registered: it would never be removed.
+            meterRegistry.remove(meter);
+        }
+        return meter;
+    }
+
+    /**
+     * Tokens refilled continuously at the rate given on each call, up to the burst; each request takes one.
+     */
+    private static final class TokenBucket {
+        private double tokens = -1;
+        private long refilledAt;
+
+        private TokenBucket(long now) {
+            this.refilledAt = now;
+        }
+
+        /**
+         * @return 0 if a token was taken, otherwise the nanoseconds until one is available.
+         */
+        synchronized long take(double rate, double burst, long now) {
+            if (tokens < 0) {
+                tokens = burst;
+            }
+            tokens = Math.min(burst, tokens + (now - refilledAt) * rate / 1e9);
+            refilledAt = now;
+            if (tokens >= 1) {
+                tokens -= 1;
+                return 0;
+            }
+            return (long) Math.ceil((1 - tokens) / rate * 1e9);
+        }
+
+        synchronized void refund() {
+            tokens += 1;
+        }
+
+        synchronized long idleFor(long now) {
+            return now - refilledAt;
+        }
+    }
+
+    /**
+     * The adaptive limit factor of a bucket and its concurrency limit, with the requests waiting for a slot.
+     */
+    private final class BucketState {
+        private final String name;
+        private final Set<Meter> meters = ConcurrentHashMap.newKeySet();
+        private final AtomicBoolean gauged = new AtomicBoolean();
+        private volatile boolean admitted;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition released = lock.newCondition();
+        private double factor = 1.0;
+        private long updatedAt;
+        private long throttledAt;
+        private long decreasedAt;
+        private int inFlight;
+        private int waiting;
+        private boolean evicted;
+
+        private BucketState(String name, long now) {
+            this.name = name;
+            this.updatedAt = now;
+            this.throttledAt = now - cooldown.toNanos();
+            this.decreasedAt = now - cooldown.toNanos();
+        }
+
+        double factor(long now) {
+            lock.lock();
+            try {
+                if (now - throttledAt >= cooldown.toNanos() && factor < 1.0) {
+                    factor = Math.min(1.0, factor + recoveryPerSecond * (now - Math.max(updatedAt, throttledAt + cooldown.toNanos())) / 1e9);
+                }
+                updatedAt = now;
+                return factor;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int limit(long now) {
+            return Math.max(1, (int) Math.round(maxConcurrency * factor(now)));
+        }
+
+        void throttled(long now) {
+            lock.lock();
+            try {
+                factor(now);
+                throttledAt = now;
+                if (now - decreasedAt >= cooldown.toNanos()) {
+                    factor = Math.max(minFactor, factor * decreaseFactor);
+                    decreasedAt = now;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * @return False if the state was dropped, true once a slot is taken.
+         */
+        boolean acquire() {
+            lock.lock();
+            try {
+                if (evicted) {
+                    return false;
+                }
+                // Requests already waiting go first.
+                if (waiting == 0 && inFlight < limit(System.nanoTime())) {
+                    inFlight++;
+                    admitted = true;
+                    return true;
+                }
+                if (waiting >= maxQueue) {
+                    throw reject("queue-full", this, TimeUnit.SECONDS.toNanos(1));
+                }
+                waiting++;
+                queued.increment();
+                long start = System.nanoTime();
+                try {
+                    long remaining = queueTimeout.toNanos();
+                    while (inFlight >= limit(System.nanoTime())) {
+                        if (remaining <= 0) {
+                            throw reject("queue-timeout", this, TimeUnit.SECONDS.toNanos(1));
+                        }
+                        remaining = released.awaitNanos(remaining);
+                    }
+                    inFlight++;
+                    admitted = true;
+                    return true;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw reject("queue-timeout", this, TimeUnit.SECONDS.toNanos(1));
+                } finally {
+                    waiting--;
+                    bucketMeter(this, tag -> Timer.builder("s3.admission.queue.wait").tag("bucket", tag).register(meterRegistry))
+                            .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void release() {
+            lock.lock();
+            try {
+                inFlight--;
+                // The limit may have grown since the waiters last checked it: let them all check again.
+                released.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Marks the state dropped if no request holds or waits for a slot.
+         *
+         * @return True if the state is dropped.
+         */
+        boolean evict() {
+            lock.lock();
+            try {
+                if (inFlight == 0 && waiting == 0) {
+                    evicted = true;
+                }
+                return evicted;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        boolean evicted() {
+            lock.lock();
+            try {
+                return evicted;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int waiting() {
+            lock.lock();
+            try {
+                return waiting;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int inFlight() {
+            lock.lock();
+            try {
+                return inFlight;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.s3.api.cache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Concurrent cache of bucket existence and of the bucket list.
+ * Existing buckets are cached for {@code ttl}, missing buckets for the shorter {@code negativeTtl}. Concurrent misses
+ * for the same entry share one in-flight S3 request, and entries older than {@code refreshAfter} are reloaded in the
+ * background while the cached value keeps being served. Failed loads are never cached, so a throttled or failed
+ * request is retried by the next caller instead of being remembered as "does not exist".
+ */
+@Component
+public class BucketMetadataCache {
+
+    /**
+     * What a HeadBucket request tells about a bucket.
+     */
+    public enum BucketStatus {
+        // The bucket exists and is accessible.
+        EXISTS,
+        // The bucket exists but belongs to another account, or access to it is denied.
+        FORBIDDEN,
+        // No bucket has this name.
+        NOT_FOUND
+    }
+
+    // The key of the single bucket list entry.
+    private static final String BUCKET_LIST = "";
+
+    // Enables or disables the cache; when disabled every call goes to S3.
+    @Value("${s3.bucket-cache.enabled:true}")
+    private boolean enabled;
+
+    // How long an existing bucket and the bucket list are cached.
+    @Value("${s3.bucket-cache.ttl:60s}")
+    private Duration ttl;
+
+    // How long a missing bucket is cached.
+    @Value("${s3.bucket-cache.negative-ttl:5s}")
+    private Duration negativeTtl;
+
+    // Age after which a cached entry is reloaded in the background while it is still served.
+    @Value("${s3.bucket-cache.refresh-after:45s}")
+    private Duration refreshAfter;
+
+    // Maximum number of cached bucket statuses.
+    @Value("${s3.bucket-cache.max-size:10000}")
+    private int maxSize;
+
+    private final Map<String, Entry<BucketStatus>> statuses = new ConcurrentHashMap<>();
+    private final Map<String, Entry<List<String>>> bucketLists = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder collapsed = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * A cached value, or the load in flight that will provide it.
+     */
+    private static final class Entry<V> {
+        private final CompletableFuture<V> value = new CompletableFuture<>();
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+        private volatile long loadedAtNanos;
+    }
+
+    /**
+     * Returns the cached status of a bucket, or loads it.
+     *
+     * @param bucketName The name of the bucket.
+     * @param loader     Asks S3 for the status; throws on transient failures, which are not cached.
+     * @return The status of the bucket.
+     */
+    public BucketStatus status(String bucketName, Supplier<BucketStatus> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        return get(statuses, bucketName, loader);
+    }
+
+    /**
+     * Returns the cached bucket list, or loads it.
+     *
+     * @param loader Lists the buckets in S3.
+     * @return The names of the buckets.
+     */
+    public List<String> buckets(Supplier<List<String>> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        return get(bucketLists, BUCKET_LIST, loader);
+    }
+
+    /**
+     * Drops what is cached about a bucket, along with the bucket list, e.g. after the bucket was created.
+     *
+     * @param bucketName The name of the bucket.
+     */
+    public void invalidate(String bucketName) {
+        if (statuses.remove(bucketName) != null) {
+            invalidations.increment();
+        }
+        if (bucketLists.remove(BUCKET_LIST) != null) {
+            invalidations.increment();
+        }
+    }
+
+    /**
+     * @return Hit, miss, collapsed miss, refresh, failure and invalidation counters along with the current size.
+     */
+    public Map<String, Number> stats() {
+        Map<String, Number> stats = new LinkedHashMap<>();
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        stats.put("size", statuses.size());
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRatio", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        stats.put("collapsedMisses", collapsed.sum());
+        stats.put("refreshes", refreshes.sum());
+        stats.put("loadFailures", loadFailures.sum());
+        stats.put("invalidations", invalidations.sum());
+        return stats;
+    }
+
+    private <V> V get(Map<String, Entry<V>> entries, String key, Supplier<V> loader) {
+        while (true) {
+            Entry<V> entry = entries.get(key);
+            if (entry == null) {
+                if (entries.size() >= maxSize) {
+                    purgeExpired(entries);
+                    if (entries.size() >= maxSize) {
+                        // Still full of live entries: answer without caching rather than growing without bound.
+                        misses.increment();
+                        return loader.get();
+                    }
+                }
+                Entry<V> loading = new Entry<>();
+                if (entries.putIfAbsent(key, loading) == null) {
+                    misses.increment();
+                    return load(entries, key, loading, loader);
+                }
+                continue;
+            }
+
+            if (!entry.value.isDone()) {
+                // Another caller is loading this entry: wait for its result instead of sending a second request.
+                collapsed.increment();
+                return await(entry);
+            }
+            if (entry.value.isCompletedExceptionally()) {
+                // A failed load that is being removed: load again.
+                entries.remove(key, entry);
+                continue;
+            }
+            V value = entry.value.getNow(null);
+            long age = System.nanoTime() - entry.loadedAtNanos;
+            if (age >= ttlOf(value).toNanos()) {
+                entries.remove(key, entry);
+                continue;
+            }
+            hits.increment();
+            if (age >= refreshAfter.toNanos() && ttlOf(value).compareTo(refreshAfter) > 0 && entry.refreshing.compareAndSet(false, true)) {
+                refresh(entries, key, entry, loader);
+            }
+            return value;
+        }
+    }
+
+    private <V> V load(Map<String, Entry<V>> entries, String key, Entry<V> entry, Supplier<V> loader) {
+        try {
+            V value = loader.get();
+            entry.loadedAtNanos = System.nanoTime();
+            entry.value.complete(value);
+            return value;
+        } catch (Throwable e) {
+            // Transient failures are handed to the waiting callers but never cached. Errors too, or the callers
+            // waiting on this entry would never be woken.
+            loadFailures.increment();
+            entries.remove(key, entry);
+            entry.value.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Reloads an entry on a virtual thread and swaps it in once loaded. If the reload fails, the current value
+     * keeps being served until it expires.
+     */
+    private <V> void refresh(Map<String, Entry<V>> entries, String key, Entry<V> current, Supplier<V> loader) {
+        refreshes.increment();
+        Thread.ofVirtual().name("bucket-cache-refresh").start(() -> {
+            try {
+                Entry<V> refreshed = new Entry<>();
+                refreshed.value.complete(loader.get());
+                refreshed.loadedAtNanos = System.nanoTime();
+                entries.replace(key, current, refreshed);
+            } catch (Throwable e) {
+                // The current value stays, and can be refreshed again.
+                loadFailures.increment();
+                current.refreshing.set(false);
+                throw e;
+            }
+        });
+    }
+
+    private <V> void purgeExpired(Map<String, Entry<V>> entries) {
+        long now = System.nanoTime();
+        entries.forEach((key, entry) -> {
+            if (entry.value.isDone() && !entry.value.isCompletedExceptionally()
+                    && now - entry.loadedAtNanos >= ttlOf(entry.value.getNow(null)).toNanos()) {
+                entries.remove(key, entry);
+            }
+        });
+    }
+
+    private Duration ttlOf(Object value) {
+        return value == BucketStatus.NOT_FOUND ? negativeTtl : ttl;
+    }
+
+    private static <V> V await(Entry<V> entry) {
+        try {
+            return entry.value.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+}
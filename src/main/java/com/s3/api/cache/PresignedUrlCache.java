@@ -0,0 +1,172 @@
+package com.s3.api.cache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Bounded, concurrent cache of presigned URLs.
+ * Signing a URL rebuilds the request objects and computes a SigV4 signature; for hot keys the same URL
+ * can be handed out again as long as enough of its lifetime remains, which turns presigning into a map lookup.
+ * Entries are keyed by (bucket, key) and then by (operation, expiration), so uploads and deletes can
+ * invalidate every URL of an object at once.
+ */
+@Component
+public class PresignedUrlCache {
+
+    /**
+     * The S3 operation a presigned URL grants.
+     */
+    public enum Operation {
+        GET, PUT
+    }
+
+    private record ObjectRef(String bucketName, String key) {
+    }
+
+    private record Variant(Operation operation, Duration expiration) {
+    }
+
+    private record CachedUrl(String url, Instant expiresAt) {
+    }
+
+    // Enables or disables the cache; when disabled every request is signed.
+    @Value("${s3.presign.cache.enabled:true}")
+    private boolean enabled;
+
+    // Maximum number of cached URLs.
+    @Value("${s3.presign.cache.max-size:10000}")
+    private int maxSize;
+
+    // Fraction of its requested lifetime a cached URL must still have to be handed out again.
+    @Value("${s3.presign.cache.min-remaining-ratio:0.5}")
+    private double minRemainingRatio;
+
+    private final Map<ObjectRef, Map<Variant, CachedUrl>> entries = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * Returns a cached URL that is still valid for long enough, or signs and caches a new one.
+     *
+     * @param operation  The operation the URL grants.
+     * @param bucketName The name of the bucket.
+     * @param key        The key (path) of the object.
+     * @param expiration The requested lifetime of the URL.
+     * @param signer     Signs a new URL on a cache miss.
+     * @return The presigned URL.
+     */
+    public String get(Operation operation, String bucketName, String key, Duration expiration, Supplier<String> signer) {
+        if (!enabled) {
+            return signer.get();
+        }
+        ObjectRef ref = new ObjectRef(bucketName, key);
+        Variant variant = new Variant(operation, expiration);
+
+        Map<Variant, CachedUrl> variants = entries.get(ref);
+        CachedUrl cached = variants == null ? null : variants.get(variant);
+        if (cached != null && isUsable(cached, expiration, Instant.now())) {
+            hits.increment();
+            return cached.url();
+        }
+
+        misses.increment();
+        // The expiry is taken before signing so it never overestimates the real one.
+        Instant expiresAt = Instant.now().plus(expiration);
+        CachedUrl signed = new CachedUrl(signer.get(), expiresAt);
+        entries.compute(ref, (ignored, current) -> {
+            Map<Variant, CachedUrl> updated = current == null ? new ConcurrentHashMap<>() : current;
+            if (updated.put(variant, signed) == null) {
+                size.incrementAndGet();
+            }
+            return updated;
+        });
+        evictIfNeeded();
+        return signed.url();
+    }
+
+    /**
+     * Drops every cached URL of an object, e.g. after it was uploaded or deleted.
+     *
+     * @param bucketName The name of the bucket.
+     * @param key        The key (path) of the object.
+     */
+    public void invalidate(String bucketName, String key) {
+        Map<Variant, CachedUrl> removed = entries.remove(new ObjectRef(bucketName, key));
+        if (removed != null) {
+            size.addAndGet(-removed.size());
+            invalidations.add(removed.size());
+        }
+    }
+
+    /**
+     * @return Hit, miss, eviction and invalidation counters along with the current size.
+     */
+    public Map<String, Number> stats() {
+        Map<String, Number> stats = new LinkedHashMap<>();
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        stats.put("size", size.get());
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRatio", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        stats.put("evictions", evictions.sum());
+        stats.put("invalidations", invalidations.sum());
+        return stats;
+    }
+
+    private boolean isUsable(CachedUrl cached, Duration expiration, Instant now) {
+        Duration remaining = Duration.between(now, cached.expiresAt());
+        return remaining.toMillis() >= expiration.toMillis() * minRemainingRatio;
+    }
+
+    /**
+     * Brings the cache back under 90% of its maximum size once it overflows, dropping the URLs
+     * with the least remaining validity first. Only one thread evicts at a time; others carry on.
+     */
+    private void evictIfNeeded() {
+        if (size.get() <= maxSize || !evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            List<Map.Entry<ObjectRef, Map.Entry<Variant, CachedUrl>>> candidates = new ArrayList<>();
+            entries.forEach((ref, variants) -> variants.entrySet().forEach(entry -> candidates.add(Map.entry(ref, entry))));
+            candidates.sort(Comparator.comparing(candidate -> candidate.getValue().getValue().expiresAt()));
+
+            int target = (int) (maxSize * 0.9);
+            for (Map.Entry<ObjectRef, Map.Entry<Variant, CachedUrl>> candidate : candidates) {
+                if (size.get() <= target) {
+                    break;
+                }
+                Variant variant = candidate.getValue().getKey();
+                CachedUrl cached = candidate.getValue().getValue();
+                entries.computeIfPresent(candidate.getKey(), (ignored, variants) -> {
+                    if (variants.remove(variant, cached)) {
+                        size.decrementAndGet();
+                        evictions.increment();
+                    }
+                    return variants.isEmpty() ? null : variants;
+                });
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.s3.api.cache;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Persistent index of uploaded content, keyed by SHA-256 checksum and size, pointing to an object that holds it.
+ * The index lives in memory and is journaled to {@code s3.dedup.directory}: each change is appended to a log that is
+ * compacted on startup, so the index survives restarts. Entries are hints, not facts: an object may be overwritten
+ * or deleted after it was indexed, so readers pin their requests to the indexed ETag and {@link #forget} entries
+ * that no longer match. The least recently used entries are dropped beyond {@code s3.dedup.max-entries}.
+ */
+@Component
+public class S3DedupIndex {
+
+    /**
+     * An object known to hold some content.
+     *
+     * @param bucketName The bucket of the object.
+     * @param key        The key of the object.
+     * @param eTag       The ETag the object had when it was indexed.
+     */
+    public record Entry(String bucketName, String key, String eTag) {
+    }
+
+    private record ContentKey(String sha256, long size) {
+    }
+
+    // Enables deduplication of uploads; when disabled every upload transfers its content.
+    @Value("${s3.dedup.enabled:false}")
+    private boolean enabled;
+
+    // Directory holding the index journal.
+    @Value("${s3.dedup.directory:${s3.work.directory:${java.io.tmpdir}/spring-boot-s3-app}/dedup-index}")
+    private String directory;
+
+    // Maximum number of indexed contents.
+    @Value("${s3.dedup.max-entries:1000000}")
+    private int maxEntries;
+
+    // Access-ordered index, guarded by this.
+    private final LinkedHashMap<ContentKey, Entry> index = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ContentKey, Entry> eldest) {
+            return size() > maxEntries;
+        }
+    };
+
+    private BufferedWriter journal;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder stale = new LongAdder();
+    private final LongAdder bytesSaved = new LongAdder();
+    private final LongAdder journalFailures = new LongAdder();
+
+    @PostConstruct
+    synchronized void init() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        Path indexDirectory = Paths.get(directory);
+        Files.createDirectories(indexDirectory);
+        Path journalFile = indexDirectory.resolve("index.log");
+        if (Files.exists(journalFile)) {
+            try (BufferedReader reader = Files.newBufferedReader(journalFile)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    try {
+                        replay(line);
+                    } catch (IllegalArgumentException e) {
+                        // A line torn by a crash: skip it.
+                    }
+                }
+            }
+        }
+
+        // Compact: rewrite the live entries only, least recently used first, and swap the files atomically.
+        Path temporary = indexDirectory.resolve("index.log.tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(temporary)) {
+            for (Map.Entry<ContentKey, Entry> entry : index.entrySet()) {
+                writer.write(addition(entry.getKey(), entry.getValue()));
+                writer.newLine();
+            }
+        }
+        Files.move(temporary, journalFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        journal = Files.newBufferedWriter(journalFile, StandardOpenOption.APPEND);
+    }
+
+    @PreDestroy
+    synchronized void close() throws IOException {
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Looks up an object holding some content.
+     *
+     * @param sha256 The base64 SHA-256 checksum of the content.
+     * @param size   The size of the content in bytes.
+     * @return The indexed object, or null if the content is not indexed.
+     */
+    public synchronized Entry find(String sha256, long size) {
+        Entry entry = index.get(new ContentKey(sha256, size));
+        if (entry == null) {
+            misses.increment();
+        }
+        return entry;
+    }
+
+    /**
+     * Records an object holding some content, replacing the object previously indexed for it.
+     *
+     * @param sha256     The base64 SHA-256 checksum of the content.
+     * @param size       The size of the content in bytes.
+     * @param bucketName The bucket of the object.
+     * @param key        The key of the object.
+     * @param eTag       The ETag of the object.
+     */
+    public synchronized void record(String sha256, long size, String bucketName, String key, String eTag) {
+        ContentKey contentKey = new ContentKey(sha256, size);
+        Entry entry = new Entry(bucketName, key, eTag);
+        if (entry.equals(index.put(contentKey, entry))) {
+            return;
+        }
+        append(addition(contentKey, entry));
+    }
+
+    /**
+     * Drops an entry whose object no longer holds the content, unless it was replaced in the meantime.
+     *
+     * @param sha256 The base64 SHA-256 checksum of the content.
+     * @param size   The size of the content in bytes.
+     * @param entry  The entry found to be stale.
+     */
+    public synchronized void forget(String sha256, long size, Entry entry) {
+        stale.increment();
+        misses.increment();
+        ContentKey contentKey = new ContentKey(sha256, size);
+        if (index.remove(contentKey, entry)) {
+            append("-\t" + contentKey.sha256() + "\t" + contentKey.size());
+        }
+    }
+
+    /**
+     * Counts an upload that was answered from the index instead of transferring its content.
+     *
+     * @param size The number of bytes that were not transferred.
+     */
+    public void hit(long size) {
+        hits.increment();
+        bytesSaved.add(size);
+    }
+
+    /**
+     * @return Hit, miss, stale entry and saved byte counters along with the index size.
+     */
+    public Map<String, Number> stats() {
+        Map<String, Number> stats = new LinkedHashMap<>();
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        synchronized (this) {
+            stats.put("entries", index.size());
+        }
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRatio", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        stats.put("stale", stale.sum());
+        stats.put("bytesSaved", bytesSaved.sum());
+        stats.put("journalFailures", journalFailures.sum());
+        return stats;
+    }
+
+    /**
+     * Appends a change to the journal. The journal is flushed but not forced to disk: an entry lost in a crash only
+     * costs one deduplication, while forcing every upload's entry would slow uploads down. A failed write keeps
+     * the entry in memory and is counted in the stats.
+     */
+    private void append(String line) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.write(line);
+            journal.newLine();
+            journal.flush();
+        } catch (IOException e) {
+            journalFailures.increment();
+        }
+    }
+
+    private void replay(String line) {
+        String[] fields = line.split("\t", -1);
+        if (fields.length == 6 && "+".equals(fields[0])) {
+            index.put(new ContentKey(fields[1], Long.parseLong(fields[2])),
+                      new Entry(URLDecoder.decode(fields[3], StandardCharsets.UTF_8), URLDecoder.decode(fields[4], StandardCharsets.UTF_8), fields[5]));
+        } else if (fields.length == 3 && "-".equals(fields[0])) {
+            index.remove(new ContentKey(fields[1], Long.parseLong(fields[2])));
+        } else {
+            throw new IllegalArgumentException("Malformed index line");
+        }
+    }
+
+    private static String addition(ContentKey contentKey, Entry entry) {
+        // Keys may contain tabs or line breaks, so bucket names and keys are URL-encoded.
+        return "+\t" + contentKey.sha256() + "\t" + contentKey.size() + "\t" + URLEncoder.encode(entry.bucketName(), StandardCharsets.UTF_8)
+                + "\t" + URLEncoder.encode(entry.key(), StandardCharsets.UTF_8) + "\t" + entry.eTag();
+    }
+}
@@ -0,0 +1,296 @@
+package com.s3.api.cache;
+
+import com.s3.api.config.S3Config;
+import com.s3.api.metrics.S3Metrics;
+import com.s3.api.service.S3Checksums;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.ChecksumMode;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Read-through cache of S3 objects on local disk.
+ * Every read revalidates the cached copy with a conditional GET (If-None-Match); S3 answers 304 without a body
+ * when the copy is still current, so only changed objects are transferred again. Entries are evicted in LRU order
+ * once the cache exceeds its byte budget; objects larger than the whole budget are not cached, and are left for the
+ * caller to download directly. Concurrent reads of the same key share a single in-flight request.
+ * Fetched objects are checked against the checksum S3 stored for them before they enter the cache. Only fetched
+ * objects count as downloaded bytes, not revalidated ones.
+ */
+@Component
+public class S3ObjectCache {
+
+    private record CacheKey(String bucketName, String key) {
+    }
+
+    private record Entry(Path file, String eTag, long size, String contentEncoding) {
+    }
+
+    // Enables or disables the cache; when disabled downloads always transfer the object.
+    @Value("${s3.object-cache.enabled:false}")
+    private boolean enabled;
+
+    // Directory holding the cached objects. It is cleared on startup.
+    @Value("${s3.object-cache.directory:${s3.work.directory:${java.io.tmpdir}/spring-boot-s3-app}/object-cache}")
+    private String directory;
+
+    // Total size (in bytes) of the cached objects above which the least recently used ones are evicted.
+    @Value("${s3.object-cache.max-bytes:1073741824}")
+    private long maxBytes;
+
+    // Autowires the S3Client bean for conditional reads.
+    @Autowired
+    private S3Client s3Client;
+
+    // Autowires the checksums fetched objects are checked against.
+    @Autowired
+    private S3Checksums checksums;
+
+    // Autowires the S3 metrics, to count the bytes fetched.
+    @Autowired
+    private S3Metrics metrics;
+
+    private Path cacheDirectory;
+
+    // Access-ordered index, guarded by its own monitor.
+    private final LinkedHashMap<CacheKey, Entry> index = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    // Fetches or revalidations in progress, so concurrent readers of a key share one request.
+    private final Map<CacheKey, CompletableFuture<Path>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder bytesSaved = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    @PostConstruct
+    void init() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        cacheDirectory = Paths.get(directory);
+        Files.createDirectories(cacheDirectory);
+        // The index lives in memory, so files left over by a previous run cannot be trusted.
+        try (Stream<Path> files = Files.list(cacheDirectory)) {
+            for (Path file : files.toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns a local file holding the current content of an object, fetching it from S3 if the cached copy
+     * is missing or stale. The file belongs to the cache: copy it, do not modify or move it.
+     *
+     * @param bucketName The name of the bucket containing the object.
+     * @param key        The key (path) of the object in the bucket.
+     * @return The cached file, or null if the object is larger than the cache and was not fetched.
+     * @throws IOException If the object cannot be written to the cache.
+     */
+    public Path get(String bucketName, String key) throws IOException {
+        CacheKey cacheKey = new CacheKey(bucketName, key);
+        CompletableFuture<Path> request = new CompletableFuture<>();
+        CompletableFuture<Path> existing = inFlight.putIfAbsent(cacheKey, request);
+        if (existing != null) {
+            return await(existing);
+        }
+        try {
+            Path file = fetch(cacheKey);
+            request.complete(file);
+            return file;
+        } catch (IOException | RuntimeException e) {
+            request.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(cacheKey, request);
+        }
+    }
+
+    /**
+     * Tells how the cached copy of an object is encoded, so it can be decompressed when copied out of the cache.
+     *
+     * @param bucketName The name of the bucket containing the object.
+     * @param key        The key (path) of the object in the bucket.
+     * @return The Content-Encoding the object is stored with, or null if it is not compressed or not cached.
+     */
+    public String contentEncoding(String bucketName, String key) {
+        synchronized (index) {
+            Entry entry = index.get(new CacheKey(bucketName, key));
+            return entry == null ? null : entry.contentEncoding();
+        }
+    }
+
+    /**
+     * @return Hit, miss, saved bytes and eviction counters along with the current cache usage.
+     */
+    public Map<String, Number> stats() {
+        Map<String, Number> stats = new LinkedHashMap<>();
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        synchronized (index) {
+            stats.put("entries", index.size());
+            stats.put("bytes", totalBytes);
+        }
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRatio", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        stats.put("bytesSaved", bytesSaved.sum());
+        stats.put("evictions", evictions.sum());
+        return stats;
+    }
+
+    private Path fetch(CacheKey cacheKey) throws IOException {
+        Entry cached;
+        synchronized (index) {
+            cached = index.get(cacheKey);
+        }
+
+        GetObjectRequest getObjectRequest = GetObjectRequest.builder()
+                                                            .bucket(cacheKey.bucketName())
+                                                            .key(cacheKey.key())
+                                                            .ifNoneMatch(cached == null ? null : cached.eTag())
+                                                            .checksumMode(checksums.verifiesDownloads() ? ChecksumMode.ENABLED : null)
+                                                            .overrideConfiguration(S3Config.STREAMING_CALL)
+                                                            .build();
+        try (ResponseInputStream<GetObjectResponse> object = this.s3Client.getObject(getObjectRequest)) {
+            if (object.response().contentLength() > maxBytes) {
+                // It would evict everything else and still not fit: leave it uncached, along with any older copy.
+                object.abort();
+                misses.increment();
+                discard(cacheKey, cached);
+                return null;
+            }
+            // Write to a temporary file first so readers never see a partially written object, nor a corrupted one.
+            Path temp = Files.createTempFile(cacheDirectory, "fetch", ".tmp");
+            try {
+                GetObjectResponse response = object.response();
+                S3Checksums.Checksum expected = S3Checksums.stored(response.checksumCRC32C(), response.checksumSHA256());
+                InputStream verified = S3Checksums.verifying(object, expected, () -> partSize(cacheKey, response.eTag()), cacheKey.key());
+                long size = Files.copy(verified, temp, StandardCopyOption.REPLACE_EXISTING);
+                Path file = cacheDirectory.resolve(fileName(cacheKey));
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                misses.increment();
+                metrics.recordBytes("download", cacheKey.bucketName(), size);
+                store(cacheKey, new Entry(file, object.response().eTag(), size, object.response().contentEncoding()));
+                return file;
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (S3Exception e) {
+            if (e.statusCode() == 304 && cached != null) {
+                // Not modified: the cached copy is current and no bytes were transferred.
+                hits.increment();
+                bytesSaved.add(cached.size());
+                return cached.file();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Size of the parts of a multipart object, to check its composite checksum.
+     */
+    private long partSize(CacheKey cacheKey, String eTag) {
+        return this.s3Client.headObject(builder -> builder.bucket(cacheKey.bucketName()).key(cacheKey.key()).partNumber(1).ifMatch(eTag))
+                            .contentLength();
+    }
+
+    private void store(CacheKey cacheKey, Entry entry) throws IOException {
+        List<Entry> evicted = new ArrayList<>();
+        synchronized (index) {
+            Entry previous = index.put(cacheKey, entry);
+            if (previous != null) {
+                totalBytes -= previous.size();
+            }
+            totalBytes += entry.size();
+
+            // Evict least recently used entries, but never the one just stored.
+            Iterator<Map.Entry<CacheKey, Entry>> iterator = index.entrySet().iterator();
+            while (totalBytes > maxBytes && iterator.hasNext()) {
+                Map.Entry<CacheKey, Entry> eldest = iterator.next();
+                if (eldest.getKey().equals(cacheKey)) {
+                    continue;
+                }
+                iterator.remove();
+                totalBytes -= eldest.getValue().size();
+                evicted.add(eldest.getValue());
+            }
+        }
+        for (Entry evictedEntry : evicted) {
+            Files.deleteIfExists(evictedEntry.file());
+            evictions.increment();
+        }
+    }
+
+    private void discard(CacheKey cacheKey, Entry entry) throws IOException {
+        if (entry == null) {
+            return;
+        }
+        synchronized (index) {
+            if (!index.remove(cacheKey, entry)) {
+                return;
+            }
+            totalBytes -= entry.size();
+        }
+        Files.deleteIfExists(entry.file());
+    }
+
+    private static String fileName(CacheKey cacheKey) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest((cacheKey.bucketName() + '\u0000' + cacheKey.key()).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Path await(CompletableFuture<Path> request) throws IOException {
+        try {
+            return request.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a cached object", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+}
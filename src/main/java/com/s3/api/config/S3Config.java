@@ -1,25 +1,60 @@
 package com.s3.api.config;
 
+import com.s3.api.admission.S3AdmissionControl;
+import com.s3.api.metrics.MicrometerMetricPublisher;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.AwsCredentials;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.awscore.AwsRequestOverrideConfiguration;
+import software.amazon.awssdk.core.client.config.ClientAsyncConfiguration;
+import software.amazon.awssdk.core.client.config.ClientOverrideConfiguration;
+import software.amazon.awssdk.core.client.config.SdkAdvancedAsyncClientOption;
+import software.amazon.awssdk.core.retry.RetryMode;
+import software.amazon.awssdk.core.retry.RetryPolicy;
+import software.amazon.awssdk.http.SdkHttpClient;
+import software.amazon.awssdk.http.apache.ApacheHttpClient;
+import software.amazon.awssdk.http.async.SdkAsyncHttpClient;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
 import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.S3Configuration;
 import software.amazon.awssdk.services.s3.presigner.S3Presigner;
 
 import java.net.URI;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.Executors;
 
 /**
  * Configuration class for setting up AWS S3 clients.
- * This class defines beans for both synchronous and asynchronous S3 clients.
+ * This class defines beans for both synchronous and asynchronous S3 clients, and for the HTTP clients they run on.
+ * The HTTP clients are beans of their own, so their connection pools are created once, kept warm and closed
+ * with the application context, instead of being rebuilt by every S3 client.
  */
 @Configuration
 public class S3Config {
 
+    // The SDK rejects a zero timeout, so calls that must not time out get one they never reach.
+    private static final Duration UNBOUNDED = Duration.ofDays(365);
+
+    /**
+     * Request override for calls streaming an object body, whose duration grows with the object size and with the
+     * pace of the client on the other end. The call timeouts set on the clients would kill such transfers while they
+     * are still making progress, so they are lifted: the socket read and write timeouts still catch stalled transfers.
+     * Calls moving a bounded amount of data (metadata calls, parts and ranges) keep the client timeouts.
+     */
+    public static final AwsRequestOverrideConfiguration STREAMING_CALL = AwsRequestOverrideConfiguration.builder()
+                                                                                                     .apiCallTimeout(UNBOUNDED)
+                                                                                                     .apiCallAttemptTimeout(UNBOUNDED)
+                                                                                                     .build();
+
     // Injects the AWS access key from the application properties file.
     @Value("${aws.access.key}")
     private String awsAccessKey;
@@ -32,23 +67,154 @@ public class S3Config {
     @Value("${aws.region}")
     private String region;
 
+    // Injects the S3 endpoint, so a local S3-compatible stand-in can be used instead of AWS.
+    @Value("${aws.endpoint:https://s3.us-east-1.amazonaws.com}")
+    private String endpoint;
+
+    // Injects whether to address buckets by path instead of by virtual host (required by most local stand-ins).
+    @Value("${aws.path.style.access:false}")
+    private boolean pathStyleAccess;
+
+    // Injects the maximum number of pooled HTTP connections per client. With virtual threads, request concurrency
+    // is no longer capped by the servlet thread pool, so this pool is what bounds concurrent S3 calls.
+    @Value("${aws.http.max-connections:200}")
+    private int maxConnections;
+
+    // Injects how long a call waits for a pooled connection before failing.
+    @Value("${aws.http.connection-acquisition-timeout:10s}")
+    private Duration connectionAcquisitionTimeout;
+
+    // Injects the maximum number of calls the async client queues while waiting for a connection.
+    @Value("${aws.http.max-pending-connection-acquires:10000}")
+    private int maxPendingConnectionAcquires;
+
+    // Injects how long establishing a new connection (TCP and TLS) may take.
+    @Value("${aws.http.connection-timeout:2s}")
+    private Duration connectionTimeout;
+
+    // Injects how long a connection may stay silent while reading or writing before the attempt fails.
+    @Value("${aws.http.socket-timeout:30s}")
+    private Duration socketTimeout;
+
+    // Injects how long an idle connection is kept in the pool. S3 closes idle connections after about 20 seconds,
+    // so keeping them longer only leads to failed reuse.
+    @Value("${aws.http.connection-max-idle-time:15s}")
+    private Duration connectionMaxIdleTime;
+
+    // Injects the maximum lifetime of a pooled connection, so new connections follow S3 DNS changes and spread load
+    // across its front ends. Zero or negative keeps connections until they are idle for too long.
+    @Value("${aws.http.connection-ttl:5m}")
+    private Duration connectionTimeToLive;
+
+    // Injects whether a background thread closes idle and expired connections instead of the next caller.
+    @Value("${aws.http.use-idle-connection-reaper:true}")
+    private boolean useIdleConnectionReaper;
+
+    // Injects whether TCP keep-alive probes are sent on pooled connections.
+    @Value("${aws.http.tcp-keep-alive:true}")
+    private boolean tcpKeepAlive;
+
+    // Injects the total time allowed for an API call, retries included. Calls streaming an object body are exempt (see STREAMING_CALL).
+    @Value("${aws.client.api-call-timeout:2m}")
+    private Duration apiCallTimeout;
+
+    // Injects the time allowed for a single attempt of an API call. Calls streaming an object body are exempt (see STREAMING_CALL).
+    @Value("${aws.client.api-call-attempt-timeout:30s}")
+    private Duration apiCallAttemptTimeout;
+
+    // Injects the retry mode: "standard", or "adaptive" to also rate limit requests client-side while S3 throttles.
+    @Value("${aws.retry.mode:standard}")
+    private String retryMode;
+
+    // Injects the maximum number of retries of a failed API call.
+    @Value("${aws.retry.max-retries:3}")
+    private int maxRetries;
+
+    // Injects whether request handling runs on virtual threads.
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    // Autowires the registry the SDK request metrics are published to.
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Autowires the admission control, which shrinks its limits when S3 throttles.
+    @Autowired
+    private S3AdmissionControl admissionControl;
+
     /**
-     * Creates and configures a synchronous S3 client.
-     * This client is used for blocking operations with AWS S3.
+     * Credentials shared by the S3 clients and the presigner.
      *
-     * @return A configured instance of S3Client.
+     * @return A provider of the configured access key and secret key.
      */
     @Bean
-    public S3Client getS3Client() {
+    public AwsCredentialsProvider getAwsCredentialsProvider() {
         // Create AWS credentials using the access key and secret key.
         AwsCredentials basicCredentials = AwsBasicCredentials.create(awsAccessKey, awsSecretKey);
+        return StaticCredentialsProvider.create(basicCredentials);
+    }
 
+    /**
+     * Creates the pooled HTTP client used by the synchronous S3 client.
+     *
+     * @return A configured Apache HTTP client, closed with the application context.
+     */
+    @Bean(destroyMethod = "close")
+    public SdkHttpClient getSdkHttpClient() {
+        ApacheHttpClient.Builder builder = ApacheHttpClient.builder()
+                                                           .maxConnections(maxConnections) // Size the pool for the request concurrency.
+                                                           .connectionAcquisitionTimeout(connectionAcquisitionTimeout)
+                                                           .connectionTimeout(connectionTimeout)
+                                                           .socketTimeout(socketTimeout)
+                                                           .connectionMaxIdleTime(connectionMaxIdleTime)
+                                                           .useIdleConnectionReaper(useIdleConnectionReaper)
+                                                           .tcpKeepAlive(tcpKeepAlive);
+        if (connectionTimeToLive.isPositive()) {
+            builder.connectionTimeToLive(connectionTimeToLive);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Creates the pooled HTTP client used by the asynchronous S3 client.
+     *
+     * @return A configured Netty HTTP client, closed with the application context.
+     */
+    @Bean(destroyMethod = "close")
+    public SdkAsyncHttpClient getSdkAsyncHttpClient() {
+        NettyNioAsyncHttpClient.Builder builder = NettyNioAsyncHttpClient.builder()
+                                                                         .maxConcurrency(maxConnections) // Size the pool for the request concurrency.
+                                                                         .maxPendingConnectionAcquires(maxPendingConnectionAcquires)
+                                                                         .connectionAcquisitionTimeout(connectionAcquisitionTimeout)
+                                                                         .connectionTimeout(connectionTimeout)
+                                                                         .readTimeout(socketTimeout)
+                                                                         .writeTimeout(socketTimeout)
+                                                                         .connectionMaxIdleTime(connectionMaxIdleTime)
+                                                                         .useIdleConnectionReaper(useIdleConnectionReaper)
+                                                                         .tcpKeepAlive(tcpKeepAlive);
+        if (connectionTimeToLive.isPositive()) {
+            builder.connectionTimeToLive(connectionTimeToLive);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Creates and configures a synchronous S3 client.
+     * This client is used for blocking operations with AWS S3.
+     *
+     * @return A configured instance of S3Client.
+     */
+    @Bean
+    public S3Client getS3Client(SdkHttpClient sdkHttpClient, AwsCredentialsProvider credentialsProvider) {
         // Build and return the S3Client with the specified region, endpoint, and credentials.
         return S3Client.builder()
                        //.region(Region.US_EAST_1) // Example of hardcoding a region (commented out).
                        .region(Region.of(region)) // Use the region specified in the properties file.
-                       .endpointOverride(URI.create("https://s3.us-east-1.amazonaws.com")) // Override the default endpoint.
-                       .credentialsProvider(StaticCredentialsProvider.create(basicCredentials)) // Set the credentials provider.
+                       .endpointOverride(URI.create(endpoint)) // Override the default endpoint.
+                       .forcePathStyle(pathStyleAccess) // Use path-style bucket addressing if configured.
+                       .credentialsProvider(credentialsProvider) // Set the credentials provider.
+                       .httpClient(sdkHttpClient) // Use the shared connection pool.
+                       .overrideConfiguration(builder -> configureClient(builder, "sync")) // Timeouts, retries and metrics.
                        .build();
     }
 
@@ -59,28 +225,53 @@ public class S3Config {
      * @return A configured instance of S3AsyncClient.
      */
     @Bean
-    public S3AsyncClient getS3AsyncClient() {
-        // Create AWS credentials using the access key and secret key.
-        AwsCredentials basicCredentials = AwsBasicCredentials.create(awsAccessKey, awsSecretKey);
-
+    public S3AsyncClient getS3AsyncClient(SdkAsyncHttpClient sdkAsyncHttpClient, AwsCredentialsProvider credentialsProvider) {
         // Build and return the S3AsyncClient with the specified region, endpoint, and credentials.
         return S3AsyncClient.builder()
                             .region(Region.of(region)) // Use the region specified in the properties file.
-                            .endpointOverride(URI.create("https://s3.us-east-1.amazonaws.com")) // Override the default endpoint.
-                            .credentialsProvider(StaticCredentialsProvider.create(basicCredentials)) // Set the credentials provider.
+                            .endpointOverride(URI.create(endpoint)) // Override the default endpoint.
+                            .forcePathStyle(pathStyleAccess) // Use path-style bucket addressing if configured.
+                            .credentialsProvider(credentialsProvider) // Set the credentials provider.
+                            .httpClient(sdkAsyncHttpClient) // Use the shared connection pool.
+                            .asyncConfiguration(this::configureAsync) // Choose where response futures complete.
+                            .overrideConfiguration(builder -> configureClient(builder, "async")) // Timeouts, retries and metrics.
                             .build();
     }
 
+    /**
+     * Applies the settings shared by both S3 clients: call timeouts, the retry policy, the metric publisher and the
+     * throttling observer of the admission control.
+     */
+    private void configureClient(ClientOverrideConfiguration.Builder builder, String clientName) {
+        RetryMode mode = RetryMode.valueOf(retryMode.trim().toUpperCase(Locale.ROOT));
+        builder.apiCallTimeout(apiCallTimeout)
+               .apiCallAttemptTimeout(apiCallAttemptTimeout)
+               .retryPolicy(RetryPolicy.forRetryMode(mode).toBuilder().numRetries(maxRetries).build())
+               .addMetricPublisher(new MicrometerMetricPublisher(meterRegistry, clientName))
+               .addExecutionInterceptor(admissionControl.throttleObserver());
+    }
+
+    /**
+     * In virtual-thread mode, response futures complete on virtual threads, so callbacks that block
+     * (e.g. writing downloaded ranges to disk) do not tie up a small platform thread pool.
+     */
+    private void configureAsync(ClientAsyncConfiguration.Builder builder) {
+        if (virtualThreads) {
+            builder.advancedOption(SdkAdvancedAsyncClientOption.FUTURE_COMPLETION_EXECUTOR, Executors.newVirtualThreadPerTaskExecutor());
+        }
+    }
+
     /**
      * Object to sign URL's S3
      * @return
      */
     @Bean
-    public S3Presigner getS3Presigner() {
-        AwsCredentials basicCredentials = AwsBasicCredentials.create(awsAccessKey, awsSecretKey);
+    public S3Presigner getS3Presigner(AwsCredentialsProvider credentialsProvider) {
         return S3Presigner.builder()
                           .region(Region.of(region))
-                          .credentialsProvider(StaticCredentialsProvider.create(basicCredentials))
+                          .endpointOverride(URI.create(endpoint))
+                          .serviceConfiguration(S3Configuration.builder().pathStyleAccessEnabled(pathStyleAccess).build())
+                          .credentialsProvider(credentialsProvider)
                           .build();
     }
 }
@@ -1,19 +1,58 @@
 package com.s3.api.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.s3.api.admission.S3AdmissionControl;
+import com.s3.api.cache.BucketMetadataCache;
+import com.s3.api.cache.PresignedUrlCache;
+import com.s3.api.cache.S3DedupIndex;
+import com.s3.api.cache.S3ObjectCache;
+import com.s3.api.dto.BulkJobEvent;
+import com.s3.api.dto.ObjectListingEntry;
+import com.s3.api.dto.PresignRequest;
+import com.s3.api.dto.TransferJobStatus;
+import com.s3.api.service.ChecksumMismatchException;
 import com.s3.api.service.IS3Service;
+import com.s3.api.service.S3BulkOperations;
+import com.s3.api.service.S3Checksums;
+import com.s3.api.service.S3ContentEncoding;
+import com.s3.api.service.S3DirectorySync;
+import com.s3.api.service.S3TransferJobs;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.services.s3.model.CommonPrefix;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.S3Object;
 
+import java.io.BufferedReader;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * REST controller for handling S3-related operations.
@@ -24,14 +63,50 @@ import java.util.Objects;
 @RequestMapping("s3") // Base path for all endpoints in this controller
 public class AppController {
 
-    // Injects the destination folder for temporary file storage from the application properties file.
-    @Value("${spring.destination.folder}")
-    private String destinationFolder;
-
     // Autowires the S3 service to handle business logic.
     @Autowired
     private IS3Service s3Service;
 
+    // Autowires the presigned URL cache to expose its statistics.
+    @Autowired
+    private PresignedUrlCache presignedUrlCache;
+
+    // Autowires the bucket metadata cache to expose its statistics.
+    @Autowired
+    private BucketMetadataCache bucketCache;
+
+    // Autowires the local object cache to expose its statistics.
+    @Autowired
+    private S3ObjectCache objectCache;
+
+    // Autowires the index of uploaded content to expose its statistics.
+    @Autowired
+    private S3DedupIndex dedupIndex;
+
+    // Autowires the admission control to expose its statistics.
+    @Autowired
+    private S3AdmissionControl admissionControl;
+
+    // Autowires the bulk delete and copy engine, to tell whether a job is already running.
+    @Autowired
+    private S3BulkOperations bulkOperations;
+
+    // Autowires the directory sync engine.
+    @Autowired
+    private S3DirectorySync directorySync;
+
+    // Autowires the asynchronous transfer job queue.
+    @Autowired
+    private S3TransferJobs transferJobs;
+
+    // Autowires the JSON mapper used to stream large responses.
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Injects the maximum number of entries accepted by the batch presign endpoint.
+    @Value("${s3.presign.batch.max-size:10000}")
+    private int maxPresignBatchSize;
+
     /**
      * Endpoint to create a new S3 bucket.
      *
@@ -51,7 +126,12 @@ public class AppController {
      */
     @GetMapping("/check/{bucketName}")
     public ResponseEntity<String> checkBucket(@PathVariable String bucketName) {
-        return ResponseEntity.ok(s3Service.checkIfBucketExists(bucketName));
+        try {
+            return ResponseEntity.ok(s3Service.checkIfBucketExists(bucketName));
+        } catch (SdkException e) {
+            // S3 could not tell (throttling, server or network error): answer 503 rather than "does not exist".
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Could not check bucket " + bucketName + ": " + e.getMessage());
+        }
     }
 
     /**
@@ -64,42 +144,140 @@ public class AppController {
         return ResponseEntity.ok(s3Service.getAllBuckets());
     }
 
+    /**
+     * Endpoint to list the objects of a bucket as newline-delimited JSON.
+     * Each listing page is written and flushed as soon as S3 returns it, so the first results reach the client
+     * after the first page and memory stays flat whatever the number of keys. Every page ends with a "page" line
+     * holding the token to resume the listing from the next page.
+     *
+     * @param bucketName        The name of the bucket to list.
+     * @param prefix            Only keys starting with this prefix are listed.
+     * @param delimiter         Keys sharing a prefix up to this delimiter are rolled up into "prefix" lines.
+     * @param startAfter        Only keys after this one are listed.
+     * @param continuationToken Resumes a previous listing from the page this token points to.
+     * @param maxKeys           The maximum number of keys per page.
+     * @return A response streaming one JSON document per line.
+     */
+    @GetMapping(value = "/objects", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> listObjects(
+            @RequestParam String bucketName,
+            @RequestParam(required = false) String prefix,
+            @RequestParam(required = false) String delimiter,
+            @RequestParam(required = false) String startAfter,
+            @RequestParam(required = false) String continuationToken,
+            @RequestParam(required = false) Integer maxKeys) {
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                s3Service.listObjects(bucketName, prefix, delimiter, startAfter, continuationToken, maxKeys, page -> {
+                    try {
+                        for (S3Object object : page.contents()) {
+                            writeLine(generator, ObjectListingEntry.object(object));
+                        }
+                        for (CommonPrefix commonPrefix : page.commonPrefixes()) {
+                            writeLine(generator, ObjectListingEntry.prefix(commonPrefix));
+                        }
+                        writeLine(generator, ObjectListingEntry.page(page.nextContinuationToken()));
+                        // Push the page to the client before fetching the next one.
+                        generator.flush();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType("application/x-ndjson")).body(body);
+    }
+
     /**
      * Endpoint to upload a file to an S3 bucket.
+     * The multipart content is streamed straight into the S3 request, without a heap copy or a local staging file.
+     * With deduplication on, the file is hashed first, so content already stored is copied instead of being sent again.
      *
-     * @param bucketName The name of the bucket to upload the file to.
-     * @param key        The key (path) under which the file will be stored in the bucket.
-     * @param file       The file to upload.
-     * @return A response indicating the result of the file upload.
+     * @param bucketName     The name of the bucket to upload the file to.
+     * @param key            The key (path) under which the file will be stored in the bucket.
+     * @param file           The file to upload.
+     * @param checksumSha256 The optional base64 SHA-256 checksum of the file, checked before the object is stored.
+     * @return A response indicating the result of the file upload, or 400 if the file does not match its checksum.
      * @throws IOException If an error occurs while processing the file.
      */
     @PostMapping("/upload")
-    public ResponseEntity<String> uploadFile(@RequestParam String bucketName, @RequestParam String key, @RequestPart MultipartFile file) throws IOException {
+    public ResponseEntity<String> uploadFile(@RequestParam String bucketName, @RequestParam String key, @RequestPart MultipartFile file,
+                                             @RequestHeader(value = "x-amz-checksum-sha256", required = false) String checksumSha256) throws IOException {
         try {
-            // Ensure the destination directory exists.
-            Path staticDir = Paths.get(destinationFolder);
-            if (!Files.exists(staticDir)) {
-                Files.createDirectories(staticDir);
+            // The servlet container already spooled the file, so it can be read twice: once to hash it, once to send it.
+            String sha256 = checksumSha256 == null && dedupIndex.isEnabled() ? S3Checksums.sha256(file.getInputStream()) : checksumSha256;
+            try (InputStream inputStream = file.getInputStream()) {
+                // Upload the file content to the S3 bucket with its known size.
+                Boolean result = s3Service.uploadFile(bucketName, key, inputStream, file.getSize(), sha256);
+
+                if(result) {
+                    return ResponseEntity.ok("File uploaded successfully");
+                } else {
+                    return ResponseEntity.internalServerError().body("File upload to bucket failed");
+                }
             }
-            // Save the uploaded file to the local filesystem temporarily.
-            Path filePath = staticDir.resolve(Objects.requireNonNull(file.getOriginalFilename()));
-            Path finalPath = Files.write(filePath, file.getBytes());
-            s3Service.uploadFile(bucketName, key, finalPath);
-            // Upload the file to the S3 bucket.
-            Boolean result = s3Service.uploadFile(bucketName, key, finalPath);
-
-            // Delete the temporary file after upload.
+        } catch (ChecksumMismatchException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (S3Exception e) {
+            return badDigest(e);
+        } catch (IOException e) {
+            throw new IOException("Error while processing file... ", e);
+        }
+    }
+
+    /**
+     * Endpoint to upload the raw request body to an S3 bucket.
+     * Unlike the multipart endpoint, the servlet container never spools the body to disk: bytes are piped
+     * from the request input stream into the S3 request as they arrive, so heap usage does not grow with payload size.
+     *
+     * With deduplication on, a body whose announced SHA-256 checksum is already indexed is not read at all.
+     *
+     * @param bucketName     The name of the bucket to upload the content to.
+     * @param key            The key (path) under which the content will be stored in the bucket.
+     * @param checksumSha256 The optional base64 SHA-256 checksum of the body, checked before the object is stored.
+     * @param request        The incoming request whose body is the object content.
+     * @return A response indicating the result of the upload, or 400 if the body does not match its checksum.
+     * @throws IOException If an error occurs while reading the request body.
+     */
+    @PutMapping("/upload/stream")
+    public ResponseEntity<String> uploadStream(@RequestParam String bucketName, @RequestParam String key,
+                                               @RequestHeader(value = "x-amz-checksum-sha256", required = false) String checksumSha256,
+                                               HttpServletRequest request) throws IOException {
+        // S3 needs the content length up front, so chunked requests without a length are rejected.
+        long contentLength = request.getContentLengthLong();
+        if (contentLength < 0) {
+            return ResponseEntity.status(HttpStatus.LENGTH_REQUIRED).body("Content-Length header is required");
+        }
+
+        try (InputStream inputStream = request.getInputStream()) {
+            Boolean result = s3Service.uploadFile(bucketName, key, inputStream, contentLength, checksumSha256);
+
             if(result) {
-              Files.delete(finalPath);
-              return ResponseEntity.ok("File uploaded successfully");
+                return ResponseEntity.ok("File uploaded successfully");
             } else {
                 return ResponseEntity.internalServerError().body("File upload to bucket failed");
             }
+        } catch (ChecksumMismatchException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (S3Exception e) {
+            return badDigest(e);
         } catch (IOException e) {
             throw new IOException("Error while processing file... ", e);
         }
     }
 
+    /**
+     * S3 rejects content that does not match the checksum sent with it: that is the client's error. Anything else is rethrown.
+     */
+    private static ResponseEntity<String> badDigest(S3Exception e) {
+        if (e.awsErrorDetails() != null && "BadDigest".equals(e.awsErrorDetails().errorCode())) {
+            return ResponseEntity.badRequest().body("Content does not match its checksum");
+        }
+        throw e;
+    }
+
     /**
      * Endpoint to download a file from an S3 bucket.
      *
@@ -114,6 +292,115 @@ public class AppController {
         return ResponseEntity.ok("File downloaded successfully");
     }
 
+    /**
+     * Endpoint to stream an object from an S3 bucket straight back to the caller.
+     * The body is copied from S3 to the response as the client reads it, without staging it in the destination folder.
+     * Range and conditional headers are forwarded to S3, so media seeking, resumable downloads and
+     * revalidation only cost the bytes actually needed. Compressed objects are sent as they are stored, with their
+     * Content-Encoding, to clients that accept it, and decompressed while streaming for the others.
+     *
+     * @param bucketName      The name of the bucket containing the object.
+     * @param key             The key (path) of the object in the bucket.
+     * @param range           The optional Range request header.
+     * @param ifNoneMatch     The optional If-None-Match request header.
+     * @param ifModifiedSince The optional If-Modified-Since request header.
+     * @param acceptEncoding  The optional Accept-Encoding request header.
+     * @return A response streaming the object content, or an empty response for 304/404/412/416 outcomes.
+     */
+    @GetMapping("/object")
+    public ResponseEntity<StreamingResponseBody> getObject(
+            @RequestParam String bucketName,
+            @RequestParam String key,
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.IF_MODIFIED_SINCE, required = false) String ifModifiedSince,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        ResponseInputStream<GetObjectResponse> fetched;
+        try {
+            fetched = s3Service.getObject(bucketName, key, range, ifNoneMatch, parseHttpDate(ifModifiedSince));
+            if (range != null && mustDecode(fetched.response(), acceptEncoding)) {
+                // A range of compressed content cannot be decompressed on its own: send the whole object, as a server may for any Range request.
+                fetched.abort();
+                fetched = s3Service.getObject(bucketName, key, null, ifNoneMatch, parseHttpDate(ifModifiedSince));
+            }
+        } catch (S3Exception e) {
+            // Not modified, missing object, failed precondition and unsatisfiable range are answered with S3's own status.
+            int status = e.statusCode();
+            if (status == 304 || status == 404 || status == 412 || status == 416) {
+                return ResponseEntity.status(status).build();
+            }
+            throw e;
+        }
+        return objectResponse(fetched, acceptEncoding);
+    }
+
+    /**
+     * Builds the response streaming a fetched object: status, length, range, encoding and validators are taken from
+     * S3's response, and the body is decompressed while streaming for clients that do not accept its Content-Encoding.
+     * Shared with the non-blocking controller.
+     */
+    static ResponseEntity<StreamingResponseBody> objectResponse(ResponseInputStream<GetObjectResponse> object, String acceptEncoding) {
+        GetObjectResponse response = object.response();
+        boolean decode = mustDecode(response, acceptEncoding);
+        ResponseEntity.BodyBuilder builder = ResponseEntity.status(response.contentRange() != null ? HttpStatus.PARTIAL_CONTENT : HttpStatus.OK)
+                                                           .header(HttpHeaders.ACCEPT_RANGES, decode ? "none" : "bytes");
+        if (S3ContentEncoding.Encoding.of(response.contentEncoding()) != null) {
+            builder.varyBy(HttpHeaders.ACCEPT_ENCODING);
+        }
+        if (decode) {
+            // The decompressed length is only known from the size recorded at upload.
+            String originalSize = response.metadata().get(S3ContentEncoding.ORIGINAL_SIZE);
+            if (originalSize != null && originalSize.matches("\\d+")) {
+                builder.contentLength(Long.parseLong(originalSize));
+            }
+        } else {
+            if (response.contentLength() != null) {
+                builder.contentLength(response.contentLength());
+            }
+            if (response.contentEncoding() != null) {
+                builder.header(HttpHeaders.CONTENT_ENCODING, response.contentEncoding());
+            }
+        }
+        if (response.contentRange() != null) {
+            builder.header(HttpHeaders.CONTENT_RANGE, response.contentRange());
+        }
+        if (response.contentType() != null) {
+            builder.contentType(MediaType.parseMediaType(response.contentType()));
+        }
+        if (response.eTag() != null) {
+            builder.eTag(response.eTag());
+        }
+        if (response.lastModified() != null) {
+            builder.lastModified(response.lastModified());
+        }
+
+        // Copy the S3 stream to the client; the blocking copy paces S3 reads to the client's speed.
+        StreamingResponseBody body = outputStream -> {
+            try {
+                if (decode) {
+                    S3ContentEncoding.decode(object, response.contentEncoding()).transferTo(outputStream);
+                } else {
+                    object.transferTo(outputStream);
+                }
+            } catch (IOException e) {
+                // The client went away: drop the S3 connection instead of draining the rest of the object.
+                object.abort();
+                throw e;
+            } finally {
+                object.close();
+            }
+        };
+        return builder.body(body);
+    }
+
+    /**
+     * A compressed object is decompressed for clients that do not accept its Content-Encoding.
+     */
+    static boolean mustDecode(GetObjectResponse response, String acceptEncoding) {
+        return S3ContentEncoding.Encoding.of(response.contentEncoding()) != null
+                && !S3ContentEncoding.accepts(acceptEncoding, response.contentEncoding());
+    }
+
     /**
      * Endpoint to generate a presigned URL for uploading a file to an S3 bucket.
      *
@@ -153,4 +440,388 @@ public class AppController {
         // Generate and return the presigned URL.
         return ResponseEntity.ok(s3Service.generatePresignedDownloadUrl(bucketName, key, durationToLive));
     }
+
+    /**
+     * Endpoint to generate presigned URLs for many objects in one request.
+     * URLs are signed in parallel and written to the response as a JSON array while signing progresses,
+     * so large batches never build the whole response in memory.
+     *
+     * @param requests The objects, operations (GET or PUT) and expirations (in minutes) to sign URLs for.
+     * @return A response streaming one result per request, in request order.
+     */
+    @PostMapping("/presigned/batch")
+    public ResponseEntity<StreamingResponseBody> generatePresignedUrls(@RequestBody List<PresignRequest> requests) {
+        if (requests.size() > maxPresignBatchSize) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+        }
+
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.writeStartArray();
+                s3Service.generatePresignedUrls(requests, result -> {
+                    try {
+                        generator.writeObject(result);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                generator.writeEndArray();
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    /**
+     * Endpoint to delete many objects as a bulk job, reported as newline-delimited JSON.
+     * Keys are taken from the prefix listing, or from the request body (one key per line) when no prefix is given,
+     * and deleted in batches of up to 1000 keys. The report starts with the job id; sending the request again with
+     * that id resumes the job after its last checkpoint.
+     *
+     * @param bucketName The name of the bucket to delete from.
+     * @param prefix     The prefix of the keys to delete.
+     * @param jobId      The id of an interrupted job to resume.
+     * @param request    The incoming request, whose body lists the keys when no prefix is given.
+     * @return A response streaming the job start, per-key failures, progress and completion lines, or 409 if the job is already running.
+     * @throws IOException If the request body cannot be read.
+     */
+    @PostMapping(value = "/bulk/delete", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> deleteObjects(
+            @RequestParam String bucketName,
+            @RequestParam(required = false) String prefix,
+            @RequestParam(required = false) String jobId,
+            HttpServletRequest request) throws IOException {
+        if (!isValidBulkRequest(prefix, jobId, request)) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (jobId != null && bulkOperations.isRunning(jobId)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        Stream<String> keys = prefix == null ? keyStream(request) : null;
+        return bulkResponse(eventConsumer -> s3Service.deleteObjects(jobId, bucketName, prefix, keys, eventConsumer));
+    }
+
+    /**
+     * Endpoint to copy many objects server-side as a bulk job, reported as newline-delimited JSON.
+     * Keys are taken from the source prefix listing, or from the request body (one key per line) when no prefix is given.
+     * The source prefix of each key is replaced with the destination prefix. Sending the request again with the
+     * job id resumes the job after its last checkpoint.
+     *
+     * @param sourceBucketName      The name of the bucket to copy from.
+     * @param sourcePrefix          The prefix of the keys to copy.
+     * @param destinationBucketName The name of the bucket to copy to.
+     * @param destinationPrefix     The prefix replacing the source prefix in destination keys.
+     * @param jobId                 The id of an interrupted job to resume.
+     * @param request               The incoming request, whose body lists the keys when no prefix is given.
+     * @return A response streaming the job start, per-key failures, progress and completion lines, or 409 if the job is already running.
+     * @throws IOException If the request body cannot be read.
+     */
+    @PostMapping(value = "/bulk/copy", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> copyObjects(
+            @RequestParam String sourceBucketName,
+            @RequestParam(required = false) String sourcePrefix,
+            @RequestParam String destinationBucketName,
+            @RequestParam(required = false) String destinationPrefix,
+            @RequestParam(required = false) String jobId,
+            HttpServletRequest request) throws IOException {
+        if (!isValidBulkRequest(sourcePrefix, jobId, request)) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (sourceBucketName.equals(destinationBucketName) && Objects.toString(sourcePrefix, "").equals(Objects.toString(destinationPrefix, ""))) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (jobId != null && bulkOperations.isRunning(jobId)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        Stream<String> keys = sourcePrefix == null ? keyStream(request) : null;
+        return bulkResponse(eventConsumer -> s3Service.copyObjects(jobId, sourceBucketName, sourcePrefix, keys,
+                                                                   destinationBucketName, destinationPrefix, eventConsumer));
+    }
+
+    /**
+     * Endpoint to sync a directory of the destination folder with a bucket prefix, reported as newline-delimited JSON.
+     * Only new and changed files are transferred: files are compared by size and modification date, and by content
+     * hash against the ETag when the dates alone cannot tell.
+     *
+     * @param bucketName       The name of the bucket to sync with.
+     * @param prefix           The key prefix mirroring the directory.
+     * @param direction        UPLOAD to copy the directory to the bucket, DOWNLOAD to copy the bucket to the directory.
+     * @param localDirectory   The directory, relative to the destination folder; the destination folder itself if not set.
+     * @param dryRun           Whether to only report the changes without making them.
+     * @param deleteExtraneous Whether to delete files of the target side that do not exist on the source side.
+     * @return A response streaming one line per change and per failure, then a summary line.
+     */
+    @PostMapping(value = "/sync", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> syncDirectory(
+            @RequestParam String bucketName,
+            @RequestParam(required = false) String prefix,
+            @RequestParam S3DirectorySync.Direction direction,
+            @RequestParam(required = false) String localDirectory,
+            @RequestParam(defaultValue = "false") boolean dryRun,
+            @RequestParam(defaultValue = "false") boolean deleteExtraneous) {
+        Path directory = directorySync.resolveDirectory(localDirectory);
+        if (directory == null) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                directorySync.sync(direction, bucketName, prefix, directory, dryRun, deleteExtraneous, event -> {
+                    try {
+                        writeLine(generator, event);
+                        generator.flush();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType("application/x-ndjson")).body(body);
+    }
+
+    /**
+     * Endpoint to queue the upload of a file. The file is spooled to disk and the job id is returned right away,
+     * so the request does not stay open while the object is sent to S3.
+     *
+     * @param bucketName The name of the bucket to upload the file to.
+     * @param key        The key (path) under which the file will be stored in the bucket.
+     * @param file       The file to upload.
+     * @return A 202 response with the status of the queued job.
+     * @throws IOException If the file cannot be spooled.
+     */
+    @PostMapping("/transfers/upload")
+    public ResponseEntity<TransferJobStatus> submitUpload(@RequestParam String bucketName, @RequestParam String key,
+                                                          @RequestPart MultipartFile file) throws IOException {
+        try (InputStream inputStream = file.getInputStream()) {
+            return ResponseEntity.accepted().body(transferJobs.submitUpload(bucketName, key, inputStream, file.getSize()));
+        }
+    }
+
+    /**
+     * Endpoint to queue the upload of the raw request body, spooled to disk without a multipart parsing step.
+     *
+     * @param bucketName The name of the bucket to upload the content to.
+     * @param key        The key (path) under which the content will be stored in the bucket.
+     * @param request    The incoming request whose body is the object content.
+     * @return A 202 response with the status of the queued job, or 411 without a Content-Length.
+     * @throws IOException If the body cannot be spooled.
+     */
+    @PutMapping("/transfers/upload/stream")
+    public ResponseEntity<TransferJobStatus> submitUploadStream(@RequestParam String bucketName, @RequestParam String key,
+                                                                HttpServletRequest request) throws IOException {
+        long contentLength = request.getContentLengthLong();
+        if (contentLength < 0) {
+            return ResponseEntity.status(HttpStatus.LENGTH_REQUIRED).build();
+        }
+        try (InputStream inputStream = request.getInputStream()) {
+            return ResponseEntity.accepted().body(transferJobs.submitUpload(bucketName, key, inputStream, contentLength));
+        }
+    }
+
+    /**
+     * Endpoint to queue the download of an object to the destination folder.
+     *
+     * @param bucketName The name of the bucket from which to download the object.
+     * @param key        The key (path) of the object in the bucket.
+     * @return A 202 response with the status of the queued job.
+     * @throws IOException If the job cannot be saved.
+     */
+    @PostMapping("/transfers/download")
+    public ResponseEntity<TransferJobStatus> submitDownload(@RequestParam String bucketName, @RequestParam String key) throws IOException {
+        return ResponseEntity.accepted().body(transferJobs.submitDownload(bucketName, key));
+    }
+
+    /**
+     * Endpoint to list the transfer jobs: queued, running, failed, and recently finished.
+     *
+     * @return A response containing the status of each job.
+     */
+    @GetMapping("/transfers")
+    public ResponseEntity<List<TransferJobStatus>> listTransfers() {
+        return ResponseEntity.ok(transferJobs.statuses());
+    }
+
+    /**
+     * Endpoint to poll a transfer job.
+     *
+     * @param jobId The job id.
+     * @return A response containing the job state, transferred bytes, rate and ETA, or 404 if the job is unknown.
+     */
+    @GetMapping("/transfers/{jobId}")
+    public ResponseEntity<TransferJobStatus> transferStatus(@PathVariable String jobId) {
+        TransferJobStatus status = transferJobs.status(jobId);
+        return status == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(status);
+    }
+
+    /**
+     * Endpoint to follow a transfer job as server-sent events: one "progress" event per progress interval
+     * while the job runs, then the stream ends after the event carrying its final state.
+     *
+     * @param jobId The job id.
+     * @return An event stream, or 404 if the job is unknown.
+     */
+    @GetMapping(value = "/transfers/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> transferEvents(@PathVariable String jobId) {
+        // The stream lasts as long as the job; it ends with the job instead of a server timeout.
+        SseEmitter emitter = new SseEmitter(0L);
+        Runnable unsubscribe = transferJobs.subscribe(jobId, status -> {
+            try {
+                emitter.send(SseEmitter.event().name("progress").data(status, MediaType.APPLICATION_JSON));
+                if (status.isFinished()) {
+                    emitter.complete();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        if (unsubscribe == null) {
+            return ResponseEntity.notFound().build();
+        }
+        emitter.onCompletion(unsubscribe);
+        emitter.onError(error -> unsubscribe.run());
+        return ResponseEntity.ok(emitter);
+    }
+
+    /**
+     * Endpoint to cancel a transfer job and discard its partial transfer.
+     *
+     * @param jobId The job id.
+     * @return A response with the status of the job, 404 if it is unknown, or 409 if it already completed.
+     */
+    @DeleteMapping("/transfers/{jobId}")
+    public ResponseEntity<TransferJobStatus> cancelTransfer(@PathVariable String jobId) {
+        TransferJobStatus status = transferJobs.cancel(jobId);
+        if (status == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return "COMPLETED".equals(status.state()) ? ResponseEntity.status(HttpStatus.CONFLICT).body(status) : ResponseEntity.ok(status);
+    }
+
+    /**
+     * Endpoint to queue a failed transfer job again. Parts transferred before the failure are not sent again.
+     *
+     * @param jobId The job id.
+     * @return A 202 response with the status of the job, 404 if it is unknown, or 409 if it did not fail.
+     */
+    @PostMapping("/transfers/{jobId}/resume")
+    public ResponseEntity<TransferJobStatus> resumeTransfer(@PathVariable String jobId) {
+        try {
+            TransferJobStatus status = transferJobs.resume(jobId);
+            return status == null ? ResponseEntity.notFound().build() : ResponseEntity.accepted().body(status);
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(transferJobs.status(jobId));
+        }
+    }
+
+    /**
+     * A bulk job needs a prefix or a request body listing keys, and a job id that can name a checkpoint file.
+     */
+    private static boolean isValidBulkRequest(String prefix, String jobId, HttpServletRequest request) {
+        return (prefix != null || request.getContentLengthLong() != 0) && (jobId == null || S3BulkOperations.isValidJobId(jobId));
+    }
+
+    private static Stream<String> keyStream(HttpServletRequest request) throws IOException {
+        return new BufferedReader(new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8)).lines();
+    }
+
+    /**
+     * Streams the events of a bulk job as newline-delimited JSON, flushing after each progress line.
+     */
+    private ResponseEntity<StreamingResponseBody> bulkResponse(BulkJob job) {
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                job.run(event -> {
+                    try {
+                        writeLine(generator, event);
+                        if (!"failure".equals(event.type())) {
+                            generator.flush();
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType("application/x-ndjson")).body(body);
+    }
+
+    @FunctionalInterface
+    private interface BulkJob {
+        void run(Consumer<BulkJobEvent> eventConsumer) throws IOException;
+    }
+
+    /**
+     * Endpoint to report the presigned URL cache statistics.
+     *
+     * @return A response containing the cache size, hit/miss counters and hit ratio.
+     */
+    @GetMapping("/presigned/cache/stats")
+    public ResponseEntity<Map<String, Number>> presignedUrlCacheStats() {
+        return ResponseEntity.ok(presignedUrlCache.stats());
+    }
+
+    static void writeLine(JsonGenerator generator, Object value) throws IOException {
+        generator.writeObject(value);
+        generator.writeRaw('\n');
+    }
+
+    /**
+     * Endpoint to report the bucket metadata cache statistics.
+     *
+     * @return A response containing the cache size, hit/miss counters, collapsed misses, background refreshes and load failures.
+     */
+    @GetMapping("/bucket-cache/stats")
+    public ResponseEntity<Map<String, Number>> bucketCacheStats() {
+        return ResponseEntity.ok(bucketCache.stats());
+    }
+
+    /**
+     * Endpoint to report the local object cache statistics.
+     *
+     * @return A response containing the cache usage, hit/miss counters, saved bytes and evictions.
+     */
+    @GetMapping("/object-cache/stats")
+    public ResponseEntity<Map<String, Number>> objectCacheStats() {
+        return ResponseEntity.ok(objectCache.stats());
+    }
+
+    /**
+     * Endpoint to report the upload deduplication index statistics.
+     *
+     * @return A response containing the index size, hit/miss and stale entry counters, and the bytes not uploaded.
+     */
+    @GetMapping("/dedup/stats")
+    public ResponseEntity<Map<String, Number>> dedupStats() {
+        return ResponseEntity.ok(dedupIndex.stats());
+    }
+
+    /**
+     * Endpoint to report the admission control statistics.
+     *
+     * @return A response containing the admitted, queued and rejected requests, the throttling responses seen,
+     * the requests waiting and in flight, and the lowest limit factor among buckets.
+     */
+    @GetMapping("/admission/stats")
+    public ResponseEntity<Map<String, Number>> admissionStats() {
+        return ResponseEntity.ok(admissionControl.stats());
+    }
+
+    /**
+     * Parses an HTTP date header, ignoring invalid values as HTTP requires.
+     */
+    static Instant parseHttpDate(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
 }
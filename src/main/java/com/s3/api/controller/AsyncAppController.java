@@ -0,0 +1,322 @@
+package com.s3.api.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.s3.api.dto.ObjectListingEntry;
+import com.s3.api.dto.PresignRequest;
+import com.s3.api.service.IS3AsyncService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.services.s3.model.CommonPrefix;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * REST controller exposing the non-blocking S3 operations.
+ * Every endpoint returns a CompletableFuture, so the servlet thread is released while S3 works and the
+ * response is written when the future completes. Listings and batch presigns are streamed: their body is written
+ * by the S3AsyncClient as pages or signed chunks complete. It mirrors {@link AppController} under {@code /s3/async}
+ * and is only registered when {@code s3.async.enabled=true}.
+ */
+@RestController
+@RequestMapping("s3/async") // Base path for all endpoints in this controller
+@ConditionalOnProperty(name = "s3.async.enabled", havingValue = "true")
+public class AsyncAppController {
+
+    // Autowires the non-blocking S3 service.
+    @Autowired
+    private IS3AsyncService s3AsyncService;
+
+    // Autowires the JSON mapper used to stream large responses.
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Injects the maximum number of entries accepted by the batch presign endpoint.
+    @Value("${s3.presign.batch.max-size:10000}")
+    private int maxPresignBatchSize;
+
+    /**
+     * Endpoint to create a new S3 bucket.
+     *
+     * @param bucketName The name of the bucket to create.
+     * @return A future response indicating the result of the bucket creation.
+     */
+    @PostMapping("/create")
+    public CompletableFuture<ResponseEntity<String>> createBucket(@RequestParam String bucketName) {
+        return s3AsyncService.createBucket(bucketName).thenApply(ResponseEntity::ok);
+    }
+
+    /**
+     * Endpoint to check if a bucket exists.
+     *
+     * @param bucketName The name of the bucket to check.
+     * @return A future response indicating whether the bucket exists or not.
+     */
+    @GetMapping("/check/{bucketName}")
+    public CompletableFuture<ResponseEntity<String>> checkBucket(@PathVariable String bucketName) {
+        return s3AsyncService.checkIfBucketExists(bucketName)
+                             .thenApply(ResponseEntity::ok)
+                             // S3 could not tell (throttling, server or network error): answer 503 rather than "does not exist".
+                             .exceptionally(throwable -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                                                                       .body("Could not check bucket " + bucketName + ": " + throwable.getMessage()));
+    }
+
+    /**
+     * Endpoint to list all buckets in the S3 account.
+     *
+     * @return A future response containing a list of bucket names.
+     */
+    @GetMapping("/list")
+    public CompletableFuture<ResponseEntity<List<String>>> listBuckets() {
+        return s3AsyncService.getAllBuckets().thenApply(ResponseEntity::ok);
+    }
+
+    /**
+     * Endpoint to list the objects of a bucket as newline-delimited JSON, in the format of {@link AppController#listObjects}.
+     * Pages are written and flushed as the asynchronous paginator delivers them; the next page is only requested
+     * once the previous one was written, so a slow client paces the listing.
+     *
+     * @param bucketName        The name of the bucket to list.
+     * @param prefix            Only keys starting with this prefix are listed.
+     * @param delimiter         Keys sharing a prefix up to this delimiter are rolled up into "prefix" lines.
+     * @param startAfter        Only keys after this one are listed.
+     * @param continuationToken Resumes a previous listing from the page this token points to.
+     * @param maxKeys           The maximum number of keys per page.
+     * @return A response streaming one JSON document per line.
+     */
+    @GetMapping(value = "/objects", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> listObjects(
+            @RequestParam String bucketName,
+            @RequestParam(required = false) String prefix,
+            @RequestParam(required = false) String delimiter,
+            @RequestParam(required = false) String startAfter,
+            @RequestParam(required = false) String continuationToken,
+            @RequestParam(required = false) Integer maxKeys) {
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                s3AsyncService.listObjects(bucketName, prefix, delimiter, startAfter, continuationToken, maxKeys, page -> {
+                    try {
+                        for (S3Object object : page.contents()) {
+                            AppController.writeLine(generator, ObjectListingEntry.object(object));
+                        }
+                        for (CommonPrefix commonPrefix : page.commonPrefixes()) {
+                            AppController.writeLine(generator, ObjectListingEntry.prefix(commonPrefix));
+                        }
+                        AppController.writeLine(generator, ObjectListingEntry.page(page.nextContinuationToken()));
+                        generator.flush();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }).join();
+            } catch (CompletionException e) {
+                throw writeFailure(e);
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType("application/x-ndjson")).body(body);
+    }
+
+    /**
+     * Endpoint to stream an object from an S3 bucket straight back to the caller, as {@link AppController#getObject} does.
+     * The response is started as soon as S3 sent the object headers, without a thread waiting for them.
+     *
+     * @param bucketName      The name of the bucket containing the object.
+     * @param key             The key (path) of the object in the bucket.
+     * @param range           The optional Range request header.
+     * @param ifNoneMatch     The optional If-None-Match request header.
+     * @param ifModifiedSince The optional If-Modified-Since request header.
+     * @param acceptEncoding  The optional Accept-Encoding request header.
+     * @return A future response streaming the object content, or an empty response for 304/404/412/416 outcomes.
+     */
+    @GetMapping("/object")
+    public CompletableFuture<ResponseEntity<StreamingResponseBody>> getObject(
+            @RequestParam String bucketName,
+            @RequestParam String key,
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.IF_MODIFIED_SINCE, required = false) String ifModifiedSince,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        Instant modifiedSince = AppController.parseHttpDate(ifModifiedSince);
+        return s3AsyncService.getObject(bucketName, key, range, ifNoneMatch, modifiedSince)
+                             .thenCompose(fetched -> {
+                                 if (range != null && AppController.mustDecode(fetched.response(), acceptEncoding)) {
+                                     // A range of compressed content cannot be decompressed on its own: send the whole object.
+                                     fetched.abort();
+                                     return s3AsyncService.getObject(bucketName, key, null, ifNoneMatch, modifiedSince);
+                                 }
+                                 return CompletableFuture.<ResponseInputStream<GetObjectResponse>>completedFuture(fetched);
+                             })
+                             .thenApply(object -> AppController.objectResponse(object, acceptEncoding))
+                             .exceptionally(throwable -> {
+                                 // Not modified, missing object, failed precondition and unsatisfiable range are answered with S3's own status.
+                                 Throwable cause = unwrap(throwable);
+                                 if (cause instanceof S3Exception exception) {
+                                     int status = exception.statusCode();
+                                     if (status == 304 || status == 404 || status == 412 || status == 416) {
+                                         return ResponseEntity.status(status).build();
+                                     }
+                                 }
+                                 throw new CompletionException(cause);
+                             });
+    }
+
+    /**
+     * Endpoint to upload a file to an S3 bucket.
+     *
+     * @param bucketName The name of the bucket to upload the file to.
+     * @param key        The key (path) under which the file will be stored in the bucket.
+     * @param file       The file to upload.
+     * @return A future response indicating the result of the file upload.
+     * @throws IOException If an error occurs while processing the file.
+     */
+    @PostMapping("/upload")
+    public CompletableFuture<ResponseEntity<String>> uploadFile(@RequestParam String bucketName, @RequestParam String key, @RequestPart MultipartFile file) throws IOException {
+        return upload(bucketName, key, file.getInputStream(), file.getSize());
+    }
+
+    /**
+     * Endpoint to upload the raw request body to an S3 bucket.
+     *
+     * @param bucketName The name of the bucket to upload the content to.
+     * @param key        The key (path) under which the content will be stored in the bucket.
+     * @param request    The incoming request whose body is the object content.
+     * @return A future response indicating the result of the upload.
+     * @throws IOException If an error occurs while reading the request body.
+     */
+    @PutMapping("/upload/stream")
+    public CompletableFuture<ResponseEntity<String>> uploadStream(@RequestParam String bucketName, @RequestParam String key, HttpServletRequest request) throws IOException {
+        long contentLength = request.getContentLengthLong();
+        if (contentLength < 0) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.LENGTH_REQUIRED).body("Content-Length header is required"));
+        }
+        return upload(bucketName, key, request.getInputStream(), contentLength);
+    }
+
+    /**
+     * Endpoint to download a file from an S3 bucket.
+     *
+     * @param bucketName The name of the bucket from which to download the file.
+     * @param key        The key (path) of the file in the bucket.
+     * @return A future response indicating the result of the file download.
+     */
+    @PostMapping("/download")
+    public CompletableFuture<ResponseEntity<String>> downloadFile(@RequestParam String bucketName, @RequestParam String key) {
+        return s3AsyncService.downloadFile(bucketName, key).thenApply(ignored -> ResponseEntity.ok("File downloaded successfully"));
+    }
+
+    /**
+     * Endpoint to generate a presigned URL for uploading a file to an S3 bucket.
+     *
+     * @param bucketName The name of the bucket where the file will be uploaded.
+     * @param key        The key (path) under which the file will be stored in the bucket.
+     * @param expiration The duration (in minutes) for which the presigned URL will be valid.
+     * @return A future response containing the presigned URL for uploading the file.
+     */
+    @PostMapping("/upload/presigned")
+    public CompletableFuture<ResponseEntity<String>> generatePresignedUploadUrl(
+            @RequestParam String bucketName,
+            @RequestParam String key,
+            @RequestParam Long expiration) {
+        return s3AsyncService.generatePresignedUploadUrl(bucketName, key, Duration.ofMinutes(expiration)).thenApply(ResponseEntity::ok);
+    }
+
+    /**
+     * Endpoint to generate a presigned URL for downloading a file from an S3 bucket.
+     *
+     * @param bucketName The name of the bucket from which the file will be downloaded.
+     * @param key        The key (path) of the file in the bucket.
+     * @param expiration The duration (in minutes) for which the presigned URL will be valid.
+     * @return A future response containing the presigned URL for downloading the file.
+     */
+    @PostMapping("/download/presigned")
+    public CompletableFuture<ResponseEntity<String>> generatePresignedDownloadUrl(
+            @RequestParam String bucketName,
+            @RequestParam String key,
+            @RequestParam Long expiration) {
+        return s3AsyncService.generatePresignedDownloadUrl(bucketName, key, Duration.ofMinutes(expiration)).thenApply(ResponseEntity::ok);
+    }
+
+    /**
+     * Endpoint to generate presigned URLs for many objects in one request, streamed as a JSON array in request order.
+     *
+     * @param requests The objects, operations (GET or PUT) and expirations (in minutes) to sign URLs for.
+     * @return A response streaming one result per request, in request order.
+     */
+    @PostMapping("/presigned/batch")
+    public ResponseEntity<StreamingResponseBody> generatePresignedUrls(@RequestBody List<PresignRequest> requests) {
+        if (requests.size() > maxPresignBatchSize) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+        }
+
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.writeStartArray();
+                s3AsyncService.generatePresignedUrls(requests, result -> {
+                    try {
+                        generator.writeObject(result);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }).join();
+                generator.writeEndArray();
+            } catch (CompletionException e) {
+                throw writeFailure(e);
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    /**
+     * Starts an upload and closes the stream once it completes; the stream outlives this call, so it cannot be
+     * closed with try-with-resources.
+     */
+    private CompletableFuture<ResponseEntity<String>> upload(String bucketName, String key, InputStream inputStream, long contentLength) {
+        return s3AsyncService.uploadFile(bucketName, key, inputStream, contentLength)
+                             .whenComplete((result, throwable) -> closeQuietly(inputStream))
+                             .thenApply(result -> result
+                                     ? ResponseEntity.ok("File uploaded successfully")
+                                     : ResponseEntity.internalServerError().body("File upload to bucket failed"));
+    }
+
+    /**
+     * A streamed body that could not be written (the client went away) is reported as the IOException it was;
+     * any other failure is passed on.
+     */
+    private static IOException writeFailure(CompletionException e) {
+        if (unwrap(e) instanceof UncheckedIOException unchecked) {
+            return unchecked.getCause();
+        }
+        throw e;
+    }
+
+    private static Throwable unwrap(Throwable throwable) {
+        return throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+    }
+
+    private static void closeQuietly(InputStream inputStream) {
+        try {
+            inputStream.close();
+        } catch (IOException e) {
+            // Nothing left to read; the upload outcome has already been decided.
+        }
+    }
+}
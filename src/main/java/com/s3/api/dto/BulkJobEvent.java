@@ -0,0 +1,40 @@
+package com.s3.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * One line of a streamed bulk delete or copy job report.
+ * A "started" line opens the report (with the counters restored from a checkpoint when the job is resumed),
+ * a "failure" line reports a key that could not be processed, "progress" lines are written each time
+ * the job checkpoint is saved, and a "completed" line closes the report.
+ *
+ * @param type       The kind of line: started, failure, progress or completed.
+ * @param jobId      The job id, to pass again to resume the job after an interruption.
+ * @param key        The key that failed.
+ * @param errorCode  The S3 error code of the failure.
+ * @param message    The failure message.
+ * @param processed  The number of keys processed so far, successfully or not.
+ * @param succeeded  The number of keys deleted or copied so far.
+ * @param failed     The number of keys that failed so far.
+ * @param checkpoint The last key of the checkpoint: every key up to it has been processed.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BulkJobEvent(String type, String jobId, String key, String errorCode, String message,
+                           Long processed, Long succeeded, Long failed, String checkpoint) {
+
+    public static BulkJobEvent started(String jobId, long processed, long succeeded, long failed, String checkpoint) {
+        return new BulkJobEvent("started", jobId, null, null, null, processed, succeeded, failed, checkpoint);
+    }
+
+    public static BulkJobEvent failure(String jobId, String key, String errorCode, String message) {
+        return new BulkJobEvent("failure", jobId, key, errorCode, message, null, null, null, null);
+    }
+
+    public static BulkJobEvent progress(String jobId, long processed, long succeeded, long failed, String checkpoint) {
+        return new BulkJobEvent("progress", jobId, null, null, null, processed, succeeded, failed, checkpoint);
+    }
+
+    public static BulkJobEvent completed(String jobId, long processed, long succeeded, long failed, String checkpoint) {
+        return new BulkJobEvent("completed", jobId, null, null, null, processed, succeeded, failed, checkpoint);
+    }
+}
@@ -0,0 +1,39 @@
+package com.s3.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import software.amazon.awssdk.services.s3.model.CommonPrefix;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.time.Instant;
+
+/**
+ * One line of a streamed object listing.
+ * An "object" line describes an object, a "prefix" line a common prefix rolled up by the delimiter,
+ * and a "page" line closes each listing page with the token to resume the listing after it.
+ *
+ * @param type                  The kind of line: object, prefix or page.
+ * @param key                   The object key.
+ * @param size                  The object size in bytes.
+ * @param eTag                  The object ETag.
+ * @param lastModified          The object modification date.
+ * @param storageClass          The object storage class.
+ * @param prefix                The common prefix.
+ * @param nextContinuationToken The token to pass as continuationToken to resume after this page, if more pages exist.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ObjectListingEntry(String type, String key, Long size, String eTag, Instant lastModified, String storageClass,
+                                 String prefix, String nextContinuationToken) {
+
+    public static ObjectListingEntry object(S3Object object) {
+        return new ObjectListingEntry("object", object.key(), object.size(), object.eTag(), object.lastModified(),
+                                      object.storageClassAsString(), null, null);
+    }
+
+    public static ObjectListingEntry prefix(CommonPrefix commonPrefix) {
+        return new ObjectListingEntry("prefix", null, null, null, null, null, commonPrefix.prefix(), null);
+    }
+
+    public static ObjectListingEntry page(String nextContinuationToken) {
+        return new ObjectListingEntry("page", null, null, null, null, null, null, nextContinuationToken);
+    }
+}
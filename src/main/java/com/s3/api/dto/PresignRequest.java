@@ -0,0 +1,14 @@
+package com.s3.api.dto;
+
+import com.s3.api.cache.PresignedUrlCache;
+
+/**
+ * One entry of a batch presign request.
+ *
+ * @param bucketName The name of the bucket.
+ * @param key        The key (path) of the object in the bucket.
+ * @param operation  The operation the URL grants (GET to download, PUT to upload).
+ * @param expiration The duration (in minutes) for which the presigned URL will be valid.
+ */
+public record PresignRequest(String bucketName, String key, PresignedUrlCache.Operation operation, Long expiration) {
+}
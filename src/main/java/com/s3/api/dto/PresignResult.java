@@ -0,0 +1,17 @@
+package com.s3.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.s3.api.cache.PresignedUrlCache;
+
+/**
+ * One entry of a batch presign response. Exactly one of {@code url} and {@code error} is set.
+ *
+ * @param bucketName The name of the bucket.
+ * @param key        The key (path) of the object in the bucket.
+ * @param operation  The operation the URL grants.
+ * @param url        The presigned URL, if signing succeeded.
+ * @param error      The reason signing failed, otherwise.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record PresignResult(String bucketName, String key, PresignedUrlCache.Operation operation, String url, String error) {
+}
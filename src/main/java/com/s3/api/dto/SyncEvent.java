@@ -0,0 +1,42 @@
+package com.s3.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * One line of a streamed directory sync report.
+ * An "upload", "download" or "delete" line describes a change (made, or only planned in dry-run mode),
+ * a "failure" line a file that could not be synced, and a "summary" line closes the report.
+ *
+ * @param type        The kind of line: upload, download, delete, failure or summary.
+ * @param key         The path of the file, relative to the synced directory and prefix.
+ * @param size        The size of the transferred file in bytes.
+ * @param reason      Why the file is transferred: missing, size or content.
+ * @param errorCode   The error code of a failure.
+ * @param message     The failure message.
+ * @param dryRun      Whether changes were only planned.
+ * @param localFiles  The number of local files compared.
+ * @param remoteFiles The number of objects compared.
+ * @param transferred The number of files uploaded or downloaded.
+ * @param deleted     The number of extraneous files deleted.
+ * @param unchanged   The number of files already in sync.
+ * @param failed      The number of files that could not be synced.
+ * @param bytes       The number of bytes uploaded or downloaded.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record SyncEvent(String type, String key, Long size, String reason, String errorCode, String message, Boolean dryRun,
+                        Long localFiles, Long remoteFiles, Long transferred, Long deleted, Long unchanged, Long failed, Long bytes) {
+
+    public static SyncEvent change(String type, String key, Long size, String reason) {
+        return new SyncEvent(type, key, size, reason, null, null, null, null, null, null, null, null, null, null);
+    }
+
+    public static SyncEvent failure(String key, String errorCode, String message) {
+        return new SyncEvent("failure", key, null, null, errorCode, message, null, null, null, null, null, null, null, null);
+    }
+
+    public static SyncEvent summary(boolean dryRun, long localFiles, long remoteFiles, long transferred, long deleted,
+                                    long unchanged, long failed, long bytes) {
+        return new SyncEvent("summary", null, null, null, null, null, dryRun, localFiles, remoteFiles, transferred, deleted,
+                             unchanged, failed, bytes);
+    }
+}
@@ -0,0 +1,30 @@
+package com.s3.api.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Snapshot of an asynchronous transfer job, returned when polling a job and sent as each server-sent progress event.
+ *
+ * @param jobId            The job id.
+ * @param type             The kind of transfer: UPLOAD or DOWNLOAD.
+ * @param bucketName       The bucket the object is transferred to or from.
+ * @param key              The key of the object.
+ * @param state            QUEUED, RUNNING, COMPLETED, FAILED or CANCELLED.
+ * @param totalBytes       The size of the object, once known.
+ * @param transferredBytes The number of bytes transferred so far, including the parts kept from earlier runs.
+ * @param resumedBytes     The number of bytes kept from earlier runs of the job, which were not transferred again.
+ * @param bytesPerSecond   The transfer rate of the current run.
+ * @param etaSeconds       The estimated time left, while the job is running.
+ * @param error            Why the job failed.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record TransferJobStatus(String jobId, String type, String bucketName, String key, String state, Long totalBytes,
+                                long transferredBytes, long resumedBytes, Long bytesPerSecond, Long etaSeconds, String error) {
+
+    /**
+     * @return True once the job completed, failed or was cancelled.
+     */
+    public boolean isFinished() {
+        return "COMPLETED".equals(state) || "FAILED".equals(state) || "CANCELLED".equals(state);
+    }
+}
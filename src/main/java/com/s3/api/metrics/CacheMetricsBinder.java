@@ -0,0 +1,54 @@
+package com.s3.api.metrics;
+
+import com.s3.api.cache.BucketMetadataCache;
+import com.s3.api.cache.PresignedUrlCache;
+import com.s3.api.cache.S3DedupIndex;
+import com.s3.api.cache.S3ObjectCache;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Publishes the statistics of the presigned URL cache, the bucket metadata cache, the local object cache and the upload
+ * deduplication index as gauges ({@code s3.presign.cache.*}, {@code s3.bucket.cache.*}, {@code s3.object.cache.*} and
+ * {@code s3.dedup.*}), next to their JSON stats endpoints.
+ */
+@Component
+public class CacheMetricsBinder implements MeterBinder {
+
+    // Autowires the presigned URL cache.
+    @Autowired
+    private PresignedUrlCache presignedUrlCache;
+
+    // Autowires the bucket metadata cache.
+    @Autowired
+    private BucketMetadataCache bucketCache;
+
+    // Autowires the local object cache.
+    @Autowired
+    private S3ObjectCache objectCache;
+
+    // Autowires the upload deduplication index.
+    @Autowired
+    private S3DedupIndex dedupIndex;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        bind(registry, "s3.presign.cache", presignedUrlCache::stats);
+        bind(registry, "s3.bucket.cache", bucketCache::stats);
+        bind(registry, "s3.object.cache", objectCache::stats);
+        bind(registry, "s3.dedup", dedupIndex::stats);
+    }
+
+    private static void bind(MeterRegistry registry, String prefix, Supplier<Map<String, Number>> stats) {
+        for (String name : stats.get().keySet()) {
+            Gauge.builder(prefix + "." + name, stats, supplier -> supplier.get().getOrDefault(name, 0).doubleValue())
+                 .register(registry);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.s3.api.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import software.amazon.awssdk.core.metrics.CoreMetric;
+import software.amazon.awssdk.http.HttpMetric;
+import software.amazon.awssdk.metrics.MetricCollection;
+import software.amazon.awssdk.metrics.MetricPublisher;
+import software.amazon.awssdk.metrics.MetricRecord;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Forwards the AWS SDK's own request metrics to Micrometer.
+ * The SDK reports one metric collection per API call, with child collections per attempt and per HTTP request.
+ * Durations (API call, signing, connection acquire, time to first byte, ...) become {@code aws.sdk.*} timers tagged
+ * with the client and operation; retry counts become a distribution summary; and the connection pool
+ * figures (leased, available, pending acquires) become gauges showing pool utilization.
+ */
+public class MicrometerMetricPublisher implements MetricPublisher {
+
+    // HTTP client metrics describing the connection pool, published as gauges rather than distributions.
+    private static final Set<String> POOL_METRICS = Set.of(HttpMetric.LEASED_CONCURRENCY.name(),
+                                                           HttpMetric.AVAILABLE_CONCURRENCY.name(),
+                                                           HttpMetric.PENDING_CONCURRENCY_ACQUIRES.name(),
+                                                           HttpMetric.MAX_CONCURRENCY.name());
+
+    private final MeterRegistry meterRegistry;
+    private final String client;
+    private final Map<String, AtomicInteger> poolGauges = new ConcurrentHashMap<>();
+
+    /**
+     * @param meterRegistry The registry to publish to.
+     * @param client        The name of the SDK client the metrics come from, used as a tag (e.g. "sync", "async").
+     */
+    public MicrometerMetricPublisher(MeterRegistry meterRegistry, String client) {
+        this.meterRegistry = meterRegistry;
+        this.client = client;
+    }
+
+    @Override
+    public void publish(MetricCollection metricCollection) {
+        String operation = metricCollection.metricValues(CoreMetric.OPERATION_NAME).stream().findFirst().orElse("unknown");
+        publish(metricCollection, operation);
+    }
+
+    private void publish(MetricCollection collection, String operation) {
+        for (MetricRecord<?> metricRecord : collection) {
+            String name = metricRecord.metric().name();
+            Object value = metricRecord.value();
+            if (value instanceof Duration duration) {
+                Timer.builder("aws.sdk." + meterName(name))
+                     .tags("client", client, "operation", operation)
+                     .register(meterRegistry)
+                     .record(duration);
+            } else if (value instanceof Integer number && POOL_METRICS.contains(name)) {
+                poolGauges.computeIfAbsent(name, metric -> meterRegistry.gauge("aws.sdk.http.pool." + meterName(metric),
+                                                                                Tags.of("client", client), new AtomicInteger()))
+                          .set(number);
+            } else if (value instanceof Integer number && name.equals(CoreMetric.RETRY_COUNT.name())) {
+                DistributionSummary.builder("aws.sdk.retry.count")
+                                   .tags("client", client, "operation", operation)
+                                   .register(meterRegistry)
+                                   .record(number);
+            } else if (value instanceof Integer status && name.equals(HttpMetric.HTTP_STATUS_CODE.name())) {
+                meterRegistry.counter("aws.sdk.http.status", "client", client, "operation", operation, "status", Integer.toString(status))
+                             .increment();
+            }
+        }
+        for (MetricCollection child : collection.children()) {
+            publish(child, operation);
+        }
+    }
+
+    // Turns an SDK metric name such as "TimeToFirstByte" into a dotted meter name such as "time.to.first.byte".
+    private static String meterName(String sdkName) {
+        return sdkName.replaceAll("([a-z0-9])([A-Z])", "$1.$2").toLowerCase();
+    }
+
+    @Override
+    public void close() {
+        // Meters belong to the registry, which outlives the SDK clients.
+    }
+}
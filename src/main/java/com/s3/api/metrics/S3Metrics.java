@@ -0,0 +1,128 @@
+package com.s3.api.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Application-level metrics for S3 operations and transfers.
+ * <ul>
+ *     <li>{@code s3.operation}: timer per operation, bucket and outcome.</li>
+ *     <li>{@code s3.operation.active}: gauge of calls in flight per operation and bucket.</li>
+ *     <li>{@code s3.transfer.bytes}: counter of bytes uploaded and downloaded per bucket.</li>
+ *     <li>{@code s3.local.write}: timer of writes to the local filesystem (downloads, cache).</li>
+ * </ul>
+ * Bucket names come from callers, so a bucket is only used as a tag once a call to it succeeded, and for at most
+ * {@code s3.metrics.max-bucket-tags} buckets; other calls are tagged "other".
+ */
+@Component
+public class S3Metrics {
+
+    /**
+     * A call to measure, which may throw a checked exception.
+     */
+    @FunctionalInterface
+    public interface S3Call<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    // Maximum number of bucket names used as tags.
+    @Value("${s3.metrics.max-bucket-tags:1000}")
+    private int maxBucketTags;
+
+    // Autowires the registry the meters are published to.
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, AtomicInteger> activeCalls = new ConcurrentHashMap<>();
+    private final Set<String> knownBuckets = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Times a call and tracks it as in flight while it runs.
+     *
+     * @param operation  The S3 operation name, e.g. "putObject".
+     * @param bucketName The bucket the operation targets, or null for account-level operations.
+     * @param call       The call to measure.
+     * @return The result of the call.
+     * @throws E The exception thrown by the call, after it was recorded as an error.
+     */
+    public <T, E extends Exception> T record(String operation, String bucketName, S3Call<T, E> call) throws E {
+        String activeBucket = bucketTag(bucketName, false);
+        AtomicInteger active = activeCalls.computeIfAbsent(operation + "\0" + activeBucket,
+                ignored -> meterRegistry.gauge("s3.operation.active", Tags.of("operation", operation, "bucket", activeBucket), new AtomicInteger()));
+        active.incrementAndGet();
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            T result = call.call();
+            success = true;
+            return result;
+        } finally {
+            active.decrementAndGet();
+            Timer.builder("s3.operation")
+                 .tag("operation", operation)
+                 .tag("bucket", bucketTag(bucketName, success))
+                 .tag("outcome", success ? "success" : "error")
+                 .register(meterRegistry)
+                 .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Counts bytes transferred to or from S3, which tells the bucket exists.
+     *
+     * @param direction  "upload" or "download".
+     * @param bucketName The bucket the bytes were transferred to or from.
+     * @param bytes      The number of bytes.
+     */
+    public void recordBytes(String direction, String bucketName, long bytes) {
+        Counter.builder("s3.transfer.bytes")
+               .baseUnit("bytes")
+               .tag("direction", direction)
+               .tag("bucket", bucketTag(bucketName, true))
+               .register(meterRegistry)
+               .increment(bytes);
+    }
+
+    /**
+     * The tag of a bucket: its name once known, "other" otherwise, and "none" for account-level operations.
+     *
+     * @param succeeded Whether a call to the bucket just succeeded, which makes it known while there is room.
+     */
+    private String bucketTag(String bucketName, boolean succeeded) {
+        if (bucketName == null) {
+            return "none";
+        }
+        if (knownBuckets.contains(bucketName)) {
+            return bucketName;
+        }
+        if (succeeded && knownBuckets.size() < maxBucketTags) {
+            knownBuckets.add(bucketName);
+            return bucketName;
+        }
+        return "other";
+    }
+
+    /**
+     * Records the time spent writing to the local filesystem.
+     *
+     * @param target The kind of write, e.g. "download" or "cache".
+     * @param nanos  The time spent, in nanoseconds.
+     */
+    public void recordLocalWrite(String target, long nanos) {
+        Timer.builder("s3.local.write")
+             .tag("target", target)
+             .register(meterRegistry)
+             .record(nanos, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,52 @@
+package com.s3.api.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartException;
+import org.springframework.web.multipart.MultipartHttpServletRequest;
+import org.springframework.web.multipart.support.StandardServletMultipartResolver;
+import org.springframework.web.servlet.DispatcherServlet;
+
+/**
+ * Multipart resolver timing the parsing of multipart requests ({@code s3.multipart.parse}), which spools uploaded
+ * files to disk before the controller runs and is otherwise hidden inside the request latency.
+ * It replaces the resolver Spring Boot would register, so parsing still happens in the DispatcherServlet and size
+ * limit or parse failures are still reported as {@code MaxUploadSizeExceededException} or {@code MultipartException}.
+ * Only eager parsing is timed: with {@code spring.servlet.multipart.resolve-lazily=true} parts are parsed on first access.
+ */
+@Component(DispatcherServlet.MULTIPART_RESOLVER_BEAN_NAME)
+@ConditionalOnProperty(name = "spring.servlet.multipart.enabled", matchIfMissing = true)
+public class TimedMultipartResolver extends StandardServletMultipartResolver {
+
+    // Autowires the registry the timer is published to.
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Defers parsing until the parts are accessed, as Spring Boot's own resolver does.
+    @Value("${spring.servlet.multipart.resolve-lazily:false}")
+    private boolean resolveLazily;
+
+    @PostConstruct
+    void init() {
+        setResolveLazily(resolveLazily);
+    }
+
+    @Override
+    public MultipartHttpServletRequest resolveMultipart(HttpServletRequest request) throws MultipartException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            MultipartHttpServletRequest multipartRequest = super.resolveMultipart(request);
+            outcome = "success";
+            return multipartRequest;
+        } finally {
+            sample.stop(Timer.builder("s3.multipart.parse").tag("outcome", outcome).register(meterRegistry));
+        }
+    }
+}
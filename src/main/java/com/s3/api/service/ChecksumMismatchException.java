@@ -0,0 +1,12 @@
+package com.s3.api.service;
+
+/**
+ * Thrown when uploaded content does not match the checksum announced for it. Nothing is stored then, and the upload
+ * should be answered with 400 Bad Request.
+ */
+public class ChecksumMismatchException extends RuntimeException {
+
+    public ChecksumMismatchException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,52 @@
+package com.s3.api.service;
+
+import com.s3.api.dto.PresignRequest;
+import com.s3.api.dto.PresignResult;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+public interface IS3AsyncService {
+    // Create a bucket in S3
+    CompletableFuture<String> createBucket(String bucketName);
+
+    // Check existence of a bucket
+    CompletableFuture<String> checkIfBucketExists(String bucketName);
+
+    // List buckets
+    CompletableFuture<List<String>> getAllBuckets();
+
+    // List the objects of a bucket page by page, handing each page to the consumer as soon as it arrives
+    CompletableFuture<Void> listObjects(String bucketName, String prefix, String delimiter, String startAfter, String continuationToken,
+                                        Integer maxKeys, Consumer<ListObjectsV2Response> pageConsumer);
+
+    // Upload a file in a bucket
+    CompletableFuture<Boolean> uploadFile(String bucketName, String key, Path fileLocation);
+
+    // Upload a stream of known length in a bucket
+    CompletableFuture<Boolean> uploadFile(String bucketName, String key, InputStream inputStream, long contentLength);
+
+    // Download a file from a bucket
+    CompletableFuture<Void> downloadFile(String bucketName, String key);
+
+    // Open a stream on an object once its response headers arrive, optionally for a byte range and conditional on its ETag or modification date
+    CompletableFuture<ResponseInputStream<GetObjectResponse>> getObject(String bucketName, String key, String range, String ifNoneMatch,
+                                                                        Instant ifModifiedSince);
+
+    // Generate presigned URL to upload files
+    CompletableFuture<String> generatePresignedUploadUrl(String bucketName, String key, Duration expiration);
+
+    // Generate presigned URL to download files
+    CompletableFuture<String> generatePresignedDownloadUrl(String bucketName, String key, Duration expiration);
+
+    // Generate presigned URLs for a batch of objects, handing each result to the consumer in request order
+    CompletableFuture<Void> generatePresignedUrls(List<PresignRequest> requests, Consumer<PresignResult> resultConsumer);
+}
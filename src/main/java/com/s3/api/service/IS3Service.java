@@ -1,9 +1,20 @@
 package com.s3.api.service;
 
+import com.s3.api.dto.BulkJobEvent;
+import com.s3.api.dto.PresignRequest;
+import com.s3.api.dto.PresignResult;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Path;
 import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public interface IS3Service {
     // Create a bucket in S3
@@ -15,15 +26,38 @@ public interface IS3Service {
     // List buckets
     List<String> getAllBuckets();
 
+    // List the objects of a bucket page by page, handing each page to the consumer as soon as it arrives
+    void listObjects(String bucketName, String prefix, String delimiter, String startAfter, String continuationToken,
+                     Integer maxKeys, Consumer<ListObjectsV2Response> pageConsumer);
+
     // Upload a file in a bucket
     Boolean uploadFile(String bucketName, String key, Path fileLocation);
 
+    // Upload a stream of known length in a bucket, without buffering it in memory or on disk
+    Boolean uploadFile(String bucketName, String key, InputStream inputStream, long contentLength);
+
+    // Upload a stream checked against its SHA-256 checksum, skipping the transfer when deduplication finds the content already stored
+    Boolean uploadFile(String bucketName, String key, InputStream inputStream, long contentLength, String sha256);
+
     // Download a file from a bucket
     void downloadFile(String bucketName, String key) throws IOException;
 
+    // Open a stream on an object, optionally for a byte range and conditional on its ETag or modification date
+    ResponseInputStream<GetObjectResponse> getObject(String bucketName, String key, String range, String ifNoneMatch, Instant ifModifiedSince);
+
     // Generate presigned URL to upload files
     String generatePresignedUploadUrl(String bucketName, String key, Duration expiration);
 
     // Generate presigned URL to download files
     String generatePresignedDownloadUrl(String bucketName, String key, Duration expiration);
+
+    // Generate presigned URLs for a batch of objects, handing each result to the consumer in request order
+    void generatePresignedUrls(List<PresignRequest> requests, Consumer<PresignResult> resultConsumer);
+
+    // Delete the objects under a prefix or of a key stream in batches, as a resumable job reporting progress and per-key failures
+    void deleteObjects(String jobId, String bucketName, String prefix, Stream<String> keys, Consumer<BulkJobEvent> eventConsumer) throws IOException;
+
+    // Copy the objects under a prefix or of a key stream server-side, as a resumable job reporting progress and per-key failures
+    void copyObjects(String jobId, String sourceBucketName, String sourcePrefix, Stream<String> keys,
+                     String destinationBucketName, String destinationPrefix, Consumer<BulkJobEvent> eventConsumer) throws IOException;
 }
@@ -0,0 +1,134 @@
+package com.s3.api.service;
+
+import com.s3.api.dto.BulkJobEvent;
+import com.s3.api.dto.PresignRequest;
+import com.s3.api.dto.PresignResult;
+import com.s3.api.metrics.S3Metrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Records a timer, an in-flight gauge and transferred bytes for every operation of {@link S3ServiceIpml},
+ * tagged by operation and bucket. It is the primary {@link IS3Service}, so every caller is measured. Uploaded bytes
+ * are counted by {@link S3ServiceIpml} itself, which knows what was sent once deduplication and compression applied,
+ * and downloaded bytes by {@link S3RangedDownloader} and the object cache, which know what was received.
+ */
+@Service
+@Primary
+public class InstrumentedS3Service implements IS3Service {
+
+    // Autowires the service doing the actual work.
+    @Autowired
+    private S3ServiceIpml delegate;
+
+    // Autowires the S3 metrics.
+    @Autowired
+    private S3Metrics metrics;
+
+    @Override
+    public String createBucket(String bucketName) {
+        return metrics.record("createBucket", bucketName, () -> delegate.createBucket(bucketName));
+    }
+
+    @Override
+    public String checkIfBucketExists(String bucketName) {
+        return metrics.record("headBucket", bucketName, () -> delegate.checkIfBucketExists(bucketName));
+    }
+
+    @Override
+    public List<String> getAllBuckets() {
+        return metrics.record("listBuckets", null, delegate::getAllBuckets);
+    }
+
+    @Override
+    public void listObjects(String bucketName, String prefix, String delimiter, String startAfter, String continuationToken,
+                            Integer maxKeys, Consumer<ListObjectsV2Response> pageConsumer) {
+        metrics.record("listObjects", bucketName, () -> {
+            delegate.listObjects(bucketName, prefix, delimiter, startAfter, continuationToken, maxKeys, pageConsumer);
+            return null;
+        });
+    }
+
+    @Override
+    public Boolean uploadFile(String bucketName, String key, Path fileLocation) {
+        return metrics.record("putObject", bucketName, () -> delegate.uploadFile(bucketName, key, fileLocation));
+    }
+
+    @Override
+    public Boolean uploadFile(String bucketName, String key, InputStream inputStream, long contentLength) {
+        return metrics.record("putObject", bucketName, () -> delegate.uploadFile(bucketName, key, inputStream, contentLength));
+    }
+
+    @Override
+    public Boolean uploadFile(String bucketName, String key, InputStream inputStream, long contentLength, String sha256) {
+        return metrics.record("putObject", bucketName, () -> delegate.uploadFile(bucketName, key, inputStream, contentLength, sha256));
+    }
+
+    @Override
+    public void downloadFile(String bucketName, String key) throws IOException {
+        metrics.record("getObject", bucketName, () -> {
+            delegate.downloadFile(bucketName, key);
+            return null;
+        });
+    }
+
+    // Only the time to first byte is measured here: the body is read later by the caller.
+    @Override
+    public ResponseInputStream<GetObjectResponse> getObject(String bucketName, String key, String range, String ifNoneMatch, Instant ifModifiedSince) {
+        ResponseInputStream<GetObjectResponse> object = metrics.record("getObjectStream", bucketName,
+                                                                       () -> delegate.getObject(bucketName, key, range, ifNoneMatch, ifModifiedSince));
+        Long contentLength = object.response().contentLength();
+        if (contentLength != null) {
+            metrics.recordBytes("download", bucketName, contentLength);
+        }
+        return object;
+    }
+
+    @Override
+    public String generatePresignedUploadUrl(String bucketName, String key, Duration expiration) {
+        return metrics.record("presignPutObject", bucketName, () -> delegate.generatePresignedUploadUrl(bucketName, key, expiration));
+    }
+
+    @Override
+    public String generatePresignedDownloadUrl(String bucketName, String key, Duration expiration) {
+        return metrics.record("presignGetObject", bucketName, () -> delegate.generatePresignedDownloadUrl(bucketName, key, expiration));
+    }
+
+    @Override
+    public void generatePresignedUrls(List<PresignRequest> requests, Consumer<PresignResult> resultConsumer) {
+        metrics.record("presignBatch", null, () -> {
+            delegate.generatePresignedUrls(requests, resultConsumer);
+            return null;
+        });
+    }
+
+    @Override
+    public void deleteObjects(String jobId, String bucketName, String prefix, Stream<String> keys, Consumer<BulkJobEvent> eventConsumer) throws IOException {
+        metrics.record("bulkDelete", bucketName, () -> {
+            delegate.deleteObjects(jobId, bucketName, prefix, keys, eventConsumer);
+            return null;
+        });
+    }
+
+    @Override
+    public void copyObjects(String jobId, String sourceBucketName, String sourcePrefix, Stream<String> keys,
+                            String destinationBucketName, String destinationPrefix, Consumer<BulkJobEvent> eventConsumer) throws IOException {
+        metrics.record("bulkCopy", sourceBucketName, () -> {
+            delegate.copyObjects(jobId, sourceBucketName, sourcePrefix, keys, destinationBucketName, destinationPrefix, eventConsumer);
+            return null;
+        });
+    }
+}
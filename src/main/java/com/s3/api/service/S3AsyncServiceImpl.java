@@ -0,0 +1,307 @@
+package com.s3.api.service;
+
+import com.s3.api.cache.BucketMetadataCache;
+import com.s3.api.config.S3Config;
+import com.s3.api.dto.PresignRequest;
+import com.s3.api.dto.PresignResult;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.Bucket;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Non-blocking service implementation on top of the S3AsyncClient.
+ * Every operation returns a CompletableFuture, and object bodies are streamed with AsyncRequestBody and
+ * AsyncResponseTransformer, so no request thread waits on S3. Multipart and compressed uploads, and downloads, share
+ * the engines of the blocking service, run on virtual threads. It is only registered when {@code s3.async.enabled=true},
+ * alongside the blocking {@link S3ServiceIpml}, so both paths can be compared on the same instance.
+ */
+@Service
+@ConditionalOnProperty(name = "s3.async.enabled", havingValue = "true")
+public class S3AsyncServiceImpl implements IS3AsyncService {
+
+    // Injects the destination folder for downloaded files from the application properties file.
+    @Value("${spring.destination.folder}")
+    private String destinationFolder;
+
+    // Autowires the S3AsyncClient bean for non-blocking operations.
+    @Autowired
+    private S3AsyncClient s3AsyncClient;
+
+    // Autowires the blocking service, whose presigning (local CPU work, cached) is reused as is.
+    @Autowired
+    private IS3Service s3Service;
+
+    // Autowires the multipart engine, used for uploads above its threshold.
+    @Autowired
+    private S3MultipartUploader multipartUploader;
+
+    // Autowires the compression policy, to hand uploads it compresses to the blocking service.
+    @Autowired
+    private S3ContentEncoding contentEncoding;
+
+    // Autowires the ranged download engine, which decompresses compressed objects and checks their checksums.
+    @Autowired
+    private S3RangedDownloader rangedDownloader;
+
+    // Autowires the checksums sent with single-request uploads.
+    @Autowired
+    private S3Checksums checksums;
+
+    // Autowires the bucket cache shared with the blocking service, so a created bucket is not reported missing.
+    @Autowired
+    private BucketMetadataCache bucketCache;
+
+    // Reads blocking input streams (e.g. servlet request bodies) and drives multipart uploads.
+    private final ExecutorService blockingExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @PreDestroy
+    void shutdownExecutor() {
+        blockingExecutor.shutdown();
+    }
+
+    /**
+     * Creates a new S3 bucket with the specified name.
+     *
+     * @param bucketName The name of the bucket to create.
+     * @return A future message indicating the location of the created bucket.
+     */
+    @Override
+    public CompletableFuture<String> createBucket(String bucketName) {
+        return this.s3AsyncClient.createBucket(bucketBuilder -> bucketBuilder.bucket(bucketName))
+                                 .thenApply(response -> {
+                                     bucketCache.invalidate(bucketName);
+                                     return "Bucket created in location: " + response.location();
+                                 });
+    }
+
+    /**
+     * Checks if a bucket with the specified name exists.
+     *
+     * @param bucketName The name of the bucket to check.
+     * @return A future message indicating whether the bucket exists or not.
+     */
+    @Override
+    public CompletableFuture<String> checkIfBucketExists(String bucketName) {
+        return this.s3AsyncClient.headBucket(headBucketBuilder -> headBucketBuilder.bucket(bucketName))
+                                 .thenApply(response -> "Bucket does exist: " + bucketName)
+                                 .exceptionally(throwable -> {
+                                     // Only 404 and 403 say something about the bucket; throttling and other failures are passed on.
+                                     if (unwrap(throwable) instanceof S3Exception exception && exception.statusCode() == 404) {
+                                         return "Bucket does not exist: " + bucketName;
+                                     }
+                                     if (unwrap(throwable) instanceof S3Exception exception && exception.statusCode() == 403) {
+                                         return "Bucket does exist but access is denied: " + bucketName;
+                                     }
+                                     throw new CompletionException(unwrap(throwable));
+                                 });
+    }
+
+    /**
+     * Retrieves a list of all bucket names in the S3 account.
+     *
+     * @return A future list of bucket names, or an empty list if no buckets exist.
+     */
+    @Override
+    public CompletableFuture<List<String>> getAllBuckets() {
+        return this.s3AsyncClient.listBuckets()
+                                 .thenApply(bucketsResponse -> bucketsResponse.hasBuckets()
+                                         ? bucketsResponse.buckets().stream().map(Bucket::name).toList()
+                                         : List.of());
+    }
+
+    /**
+     * Lists the objects of a bucket through the asynchronous ListObjectsV2 paginator.
+     * The next page is only requested once the consumer returned from the previous one, so a slow consumer
+     * paces the listing and memory does not grow with the number of keys in the bucket.
+     *
+     * @param bucketName        The name of the bucket to list.
+     * @param prefix            Only keys starting with this prefix are listed, if set.
+     * @param delimiter         Keys sharing a prefix up to this delimiter are rolled up into common prefixes, if set.
+     * @param startAfter        Only keys after this one are listed, if set.
+     * @param continuationToken Resumes a previous listing from the page this token points to, if set.
+     * @param maxKeys           The maximum number of keys per page, if set.
+     * @param pageConsumer      Receives each listing page in order.
+     * @return A future completed once the last page was consumed.
+     */
+    @Override
+    public CompletableFuture<Void> listObjects(String bucketName, String prefix, String delimiter, String startAfter, String continuationToken,
+                                               Integer maxKeys, Consumer<ListObjectsV2Response> pageConsumer) {
+        ListObjectsV2Request listObjectsRequest = ListObjectsV2Request.builder()
+                                                                      .bucket(bucketName)
+                                                                      .prefix(prefix)
+                                                                      .delimiter(delimiter)
+                                                                      .startAfter(startAfter)
+                                                                      .continuationToken(continuationToken)
+                                                                      .maxKeys(maxKeys)
+                                                                      .build();
+        return this.s3AsyncClient.listObjectsV2Paginator(listObjectsRequest).subscribe(pageConsumer);
+    }
+
+    /**
+     * Uploads a file to the specified S3 bucket, streaming it from disk without blocking.
+     * Files above the multipart threshold are handed to the multipart engine on a virtual thread. Like with the
+     * blocking service, files are stored byte for byte, without compression.
+     *
+     * @param bucketName   The name of the bucket to upload the file to.
+     * @param key          The key (path) under which the file will be stored in the bucket.
+     * @param fileLocation The path to the file on the local filesystem.
+     * @return A future boolean indicating whether the upload was successful.
+     */
+    @Override
+    public CompletableFuture<Boolean> uploadFile(String bucketName, String key, Path fileLocation) {
+        long fileSize;
+        try {
+            fileSize = Files.size(fileLocation);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(new UncheckedIOException("Could not read file: " + fileLocation, e));
+        }
+        if (multipartUploader.shouldUpload(fileSize)) {
+            return CompletableFuture.supplyAsync(() -> s3Service.uploadFile(bucketName, key, fileLocation), blockingExecutor);
+        }
+
+        PutObjectRequest putObjectRequest = PutObjectRequest.builder()
+                                                            .bucket(bucketName)
+                                                            .key(key)
+                                                            .checksumAlgorithm(checksums.algorithm())
+                                                            .overrideConfiguration(S3Config.STREAMING_CALL)
+                                                            .build();
+        return this.s3AsyncClient.putObject(putObjectRequest, AsyncRequestBody.fromFile(fileLocation))
+                                 .thenApply(response -> response.sdkHttpResponse().isSuccessful());
+    }
+
+    /**
+     * Uploads the content of a stream to the specified S3 bucket.
+     * The blocking stream is read on a virtual thread and published to the SDK as it is read. Streams above the
+     * multipart threshold, and content matching the compression policy, go through the blocking service on a virtual
+     * thread, so they are stored the same way whichever API uploaded them.
+     *
+     * @param bucketName    The name of the bucket to upload the content to.
+     * @param key           The key (path) under which the content will be stored in the bucket.
+     * @param inputStream   The stream providing the object content.
+     * @param contentLength The exact number of bytes the stream will provide.
+     * @return A future boolean indicating whether the upload was successful.
+     */
+    @Override
+    public CompletableFuture<Boolean> uploadFile(String bucketName, String key, InputStream inputStream, long contentLength) {
+        if (multipartUploader.shouldUpload(contentLength) || contentEncoding.encodingFor(key, contentLength) != null) {
+            return CompletableFuture.supplyAsync(() -> s3Service.uploadFile(bucketName, key, inputStream, contentLength), blockingExecutor);
+        }
+
+        PutObjectRequest putObjectRequest = PutObjectRequest.builder()
+                                                            .bucket(bucketName)
+                                                            .key(key)
+                                                            .contentLength(contentLength)
+                                                            .checksumAlgorithm(checksums.algorithm())
+                                                            .overrideConfiguration(S3Config.STREAMING_CALL)
+                                                            .build();
+        return this.s3AsyncClient.putObject(putObjectRequest, AsyncRequestBody.fromInputStream(inputStream, contentLength, blockingExecutor))
+                                 .thenApply(response -> response.sdkHttpResponse().isSuccessful());
+    }
+
+    /**
+     * Downloads a file from the specified S3 bucket through the ranged download engine, on a virtual thread: large
+     * objects are fetched in parallel ranges, and compressed objects are decompressed while they are written.
+     *
+     * @param bucketName The name of the bucket from which to download the file.
+     * @param key        The key (path) of the file in the bucket.
+     * @return A future completed once the file is written.
+     */
+    @Override
+    public CompletableFuture<Void> downloadFile(String bucketName, String key) {
+        Path filePath = S3ServiceIpml.downloadPath(destinationFolder, key);
+        try {
+            Files.createDirectories(filePath.getParent());
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(new UncheckedIOException("Could not download file: " + e.getMessage(), e));
+        }
+        return CompletableFuture.runAsync(() -> {
+            try {
+                rangedDownloader.download(bucketName, key, filePath);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not download file: " + e.getMessage(), e);
+            }
+        }, blockingExecutor);
+    }
+
+    /**
+     * Opens a stream on an object without staging it on disk.
+     * The future completes as soon as S3 sent the response headers; the body is then read from the returned stream
+     * as it arrives. Range and conditional headers are passed through to GetObject.
+     *
+     * @param bucketName      The name of the bucket containing the object.
+     * @param key             The key (path) of the object in the bucket.
+     * @param range           An optional HTTP byte range, e.g. "bytes=0-1023".
+     * @param ifNoneMatch     An optional ETag; S3 answers 304 if the object still has it.
+     * @param ifModifiedSince An optional date; S3 answers 304 if the object was not modified since.
+     * @return A future object content stream, along with its response metadata. The caller must close it.
+     */
+    @Override
+    public CompletableFuture<ResponseInputStream<GetObjectResponse>> getObject(String bucketName, String key, String range, String ifNoneMatch,
+                                                                               Instant ifModifiedSince) {
+        GetObjectRequest getObjectRequest = GetObjectRequest.builder()
+                                                            .bucket(bucketName)
+                                                            .key(key)
+                                                            .range(range)
+                                                            .ifNoneMatch(ifNoneMatch)
+                                                            .ifModifiedSince(ifModifiedSince)
+                                                            .overrideConfiguration(S3Config.STREAMING_CALL)
+                                                            .build();
+        return this.s3AsyncClient.getObject(getObjectRequest, AsyncResponseTransformer.toBlockingInputStream());
+    }
+
+    // Presigning is local CPU work (and cached), so it completes immediately.
+    @Override
+    public CompletableFuture<String> generatePresignedUploadUrl(String bucketName, String key, Duration expiration) {
+        return CompletableFuture.completedFuture(s3Service.generatePresignedUploadUrl(bucketName, key, expiration));
+    }
+
+    // Presigning is local CPU work (and cached), so it completes immediately.
+    @Override
+    public CompletableFuture<String> generatePresignedDownloadUrl(String bucketName, String key, Duration expiration) {
+        return CompletableFuture.completedFuture(s3Service.generatePresignedDownloadUrl(bucketName, key, expiration));
+    }
+
+    /**
+     * Generates presigned URLs for a batch of objects on the blocking service's signing pool, handing results to the
+     * consumer in request order. The calling thread does not wait for the batch.
+     *
+     * @param requests       The objects and operations to sign URLs for.
+     * @param resultConsumer Receives one result per request, in request order.
+     * @return A future completed once every result was handed out.
+     */
+    @Override
+    public CompletableFuture<Void> generatePresignedUrls(List<PresignRequest> requests, Consumer<PresignResult> resultConsumer) {
+        return CompletableFuture.runAsync(() -> s3Service.generatePresignedUrls(requests, resultConsumer), blockingExecutor);
+    }
+
+    private static Throwable unwrap(Throwable throwable) {
+        return throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+    }
+}
@@ -0,0 +1,619 @@
+package com.s3.api.service;
+
+import com.s3.api.cache.PresignedUrlCache;
+import com.s3.api.dto.BulkJobEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.Delete;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.S3Error;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Bulk delete and copy engine.
+ * Keys come either from a prefix listing or from a caller-provided stream. Deletes are grouped into DeleteObjects
+ * requests of up to 1000 keys and copies run server-side (UploadPartCopy for large objects), with at most
+ * {@code maxInFlight} requests in flight, so throughput is bounded by the S3 request rate instead of one round trip per key.
+ * Jobs save a checkpoint to disk as they progress; a job started again with the same id resumes after its checkpoint.
+ * A job id runs at most once at a time, so two requests never process the same keys nor overwrite each other's checkpoint.
+ */
+@Component
+public class S3BulkOperations {
+
+    // S3 limits: DeleteObjects takes at most 1000 keys, CopyObject copies at most 5GB, and parts are 5MB to 5GB, 10,000 at most.
+    private static final int MAX_DELETE_BATCH = 1000;
+    private static final long MAX_COPY_OBJECT_SIZE = 5L * 1024 * 1024 * 1024;
+    private static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+    private static final int MAX_PARTS = 10_000;
+
+    private static final Pattern JOB_ID = Pattern.compile("[A-Za-z0-9._-]{1,64}");
+
+    // Maximum number of DeleteObjects batches or object copies in flight for a single job.
+    @Value("${s3.bulk.max-in-flight:16}")
+    private int maxInFlight;
+
+    // Objects larger than this size (in bytes) are copied part by part with UploadPartCopy.
+    @Value("${s3.bulk.copy.multipart-threshold:536870912}")
+    private long copyMultipartThreshold;
+
+    // Size (in bytes) of each copied part. Parts never transit through the application, so they can be large.
+    @Value("${s3.bulk.copy.part-size:268435456}")
+    private long copyPartSize;
+
+    // Maximum number of parts being copied at the same time for a single object.
+    @Value("${s3.bulk.copy.max-in-flight-parts:8}")
+    private int maxInFlightParts;
+
+    // Directory where job checkpoints are saved.
+    @Value("${s3.bulk.checkpoint-directory:${s3.work.directory:${java.io.tmpdir}/spring-boot-s3-app}/bulk-jobs}")
+    private String checkpointDirectory;
+
+    // Minimum time between two checkpoint saves of a job.
+    @Value("${s3.bulk.checkpoint-interval:1s}")
+    private Duration checkpointInterval;
+
+    // Autowires the S3Client bean, to list the keys under a prefix.
+    @Autowired
+    private S3Client s3Client;
+
+    // Autowires the S3AsyncClient bean, to send deletes and copies concurrently.
+    @Autowired
+    private S3AsyncClient s3AsyncClient;
+
+    // Autowires the cache of presigned URLs, to drop URLs of deleted and overwritten objects.
+    @Autowired
+    private PresignedUrlCache presignedUrlCache;
+
+    // Ids of the jobs currently running.
+    private final Set<String> runningJobs = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Tells whether a job id can be used to name a checkpoint.
+     *
+     * @param jobId The job id to check.
+     * @return True if the id is made of 1 to 64 letters, digits, dots, dashes or underscores.
+     */
+    public static boolean isValidJobId(String jobId) {
+        return JOB_ID.matcher(jobId).matches();
+    }
+
+    /**
+     * Tells whether a job is currently running, in which case it cannot be started again until it ends.
+     *
+     * @param jobId The job id to check.
+     * @return True if a job with this id is running.
+     */
+    public boolean isRunning(String jobId) {
+        return runningJobs.contains(jobId);
+    }
+
+    /**
+     * Deletes every key under a prefix, or every key of a stream.
+     *
+     * @param jobId         The id of the job to resume, or null to start a new job.
+     * @param bucketName    The bucket to delete from.
+     * @param prefix        The prefix of the keys to delete, when no key stream is given.
+     * @param keys          The keys to delete, or null to delete by prefix.
+     * @param eventConsumer Receives the job report: start, per-key failures, progress and completion.
+     * @throws IOException If the job checkpoint cannot be read or saved.
+     * @throws IllegalStateException If a job with the same id is already running.
+     */
+    public void delete(String jobId, String bucketName, String prefix, Stream<String> keys, Consumer<BulkJobEvent> eventConsumer) throws IOException {
+        if (keys == null && prefix == null) {
+            throw new IllegalArgumentException("A prefix or a key stream is required");
+        }
+        Job job = openJob(jobId, parameters("operation", "delete", "bucket", bucketName, "prefix", prefix), eventConsumer);
+        try {
+            if (!job.isCompleted()) {
+                run(job, items(job, bucketName, prefix, keys), MAX_DELETE_BATCH, (unit, batch) -> deleteBatch(job, unit, bucketName, batch));
+            }
+            job.reportCompleted();
+        } finally {
+            runningJobs.remove(job.id);
+        }
+    }
+
+    /**
+     * Copies every key under a prefix, or every key of a stream, server-side to another bucket or prefix.
+     * The source prefix of each key is replaced with the destination prefix.
+     *
+     * @param jobId                 The id of the job to resume, or null to start a new job.
+     * @param sourceBucketName      The bucket to copy from.
+     * @param sourcePrefix          The prefix of the keys to copy, when no key stream is given.
+     * @param keys                  The keys to copy, or null to copy by prefix.
+     * @param destinationBucketName The bucket to copy to.
+     * @param destinationPrefix     The prefix replacing the source prefix in destination keys.
+     * @param eventConsumer         Receives the job report: start, per-key failures, progress and completion.
+     * @throws IOException If the job checkpoint cannot be read or saved.
+     * @throws IllegalStateException If a job with the same id is already running.
+     */
+    public void copy(String jobId, String sourceBucketName, String sourcePrefix, Stream<String> keys,
+                     String destinationBucketName, String destinationPrefix, Consumer<BulkJobEvent> eventConsumer) throws IOException {
+        if (keys == null && sourcePrefix == null) {
+            throw new IllegalArgumentException("A source prefix or a key stream is required");
+        }
+        if (sourceBucketName.equals(destinationBucketName) && Objects.equals(Objects.toString(sourcePrefix, ""), Objects.toString(destinationPrefix, ""))) {
+            throw new IllegalArgumentException("Source and destination are the same");
+        }
+        Job job = openJob(jobId, parameters("operation", "copy", "bucket", sourceBucketName, "prefix", sourcePrefix,
+                                            "destinationBucket", destinationBucketName, "destinationPrefix", destinationPrefix), eventConsumer);
+        try {
+            if (!job.isCompleted()) {
+                run(job, items(job, sourceBucketName, sourcePrefix, keys), 1, (unit, batch) -> {
+                    Item item = batch.get(0);
+                    String destinationKey = destinationKey(item.key(), sourcePrefix, destinationPrefix);
+                    return copyObject(sourceBucketName, item.key(), item.size(), destinationBucketName, destinationKey)
+                            .thenRun(() -> {
+                                presignedUrlCache.invalidate(destinationBucketName, destinationKey);
+                                job.succeed(unit, 1);
+                            });
+                });
+            }
+            job.reportCompleted();
+        } finally {
+            runningJobs.remove(job.id);
+        }
+    }
+
+    /**
+     * Sends the items in batches, with at most {@code maxInFlight} batches in flight, and waits for all of them.
+     * A batch that fails as a whole reports each of its keys as failed; the job carries on with the next batch.
+     * A job whose report can no longer be delivered stops sending batches, and fails once the batches in flight are
+     * checkpointed, so it can be resumed.
+     */
+    private void run(Job job, Iterator<Item> items, int batchSize, BiFunction<Unit, List<Item>, CompletableFuture<?>> sender) throws IOException {
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        try {
+            List<Item> batch = new ArrayList<>(batchSize);
+            while (job.detachment() == null && items.hasNext()) {
+                batch.add(items.next());
+                if (batch.size() == batchSize || !items.hasNext()) {
+                    acquire(inFlight);
+                    Item last = batch.get(batch.size() - 1);
+                    Unit unit = job.begin(last.position(), last.key());
+                    List<Item> sent = batch;
+                    CompletableFuture<?> future;
+                    try {
+                        future = sender.apply(unit, sent);
+                    } catch (RuntimeException e) {
+                        future = CompletableFuture.failedFuture(e);
+                    }
+                    future.whenComplete((ignored, throwable) -> {
+                        try {
+                            try {
+                                if (throwable != null) {
+                                    sent.forEach(item -> job.fail(unit, item.key(), throwable));
+                                }
+                            } finally {
+                                job.complete(unit);
+                            }
+                        } finally {
+                            // Whatever happened above, or the wait for the requests in flight below never ends.
+                            inFlight.release();
+                        }
+                    });
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+        } finally {
+            // Let the requests in flight finish, so the checkpoint covers everything that was sent.
+            inFlight.acquireUninterruptibly(maxInFlight);
+            job.save();
+        }
+        if (job.detachment() != null) {
+            throw new IOException("Job " + job.id + " stopped: its report could not be delivered", job.detachment());
+        }
+        job.markCompleted();
+    }
+
+    /**
+     * Lists the items after the job checkpoint: the next page of the prefix listing, or the rest of the key stream.
+     */
+    private Iterator<Item> items(Job job, String bucketName, String prefix, Stream<String> keys) {
+        AtomicLong position = new AtomicLong(job.position());
+        if (keys != null) {
+            return keys.filter(key -> !key.isEmpty())
+                       .skip(job.position())
+                       .map(key -> new Item(position.incrementAndGet(), key, null))
+                       .iterator();
+        }
+        ListObjectsV2Request request = ListObjectsV2Request.builder()
+                                                           .bucket(bucketName)
+                                                           .prefix(prefix)
+                                                           .startAfter(job.checkpointKey())
+                                                           .build();
+        return this.s3Client.listObjectsV2Paginator(request)
+                            .contents()
+                            .stream()
+                            .map(object -> new Item(position.incrementAndGet(), object.key(), object.size()))
+                            .iterator();
+    }
+
+    /**
+     * Deletes a batch in a single quiet DeleteObjects request, which only reports the keys that could not be deleted.
+     */
+    private CompletableFuture<Void> deleteBatch(Job job, Unit unit, String bucketName, List<Item> batch) {
+        List<ObjectIdentifier> objects = batch.stream()
+                                              .map(item -> ObjectIdentifier.builder().key(item.key()).build())
+                                              .toList();
+        DeleteObjectsRequest deleteObjectsRequest = DeleteObjectsRequest.builder()
+                                                                        .bucket(bucketName)
+                                                                        .delete(Delete.builder().objects(objects).quiet(true).build())
+                                                                        .build();
+        return this.s3AsyncClient.deleteObjects(deleteObjectsRequest).thenAccept(response -> {
+            Set<String> failedKeys = new HashSet<>();
+            for (S3Error error : response.errors()) {
+                failedKeys.add(error.key());
+                job.fail(unit, error.key(), error.code(), error.message());
+            }
+            batch.stream()
+                 .map(Item::key)
+                 .filter(key -> !failedKeys.contains(key))
+                 .forEach(key -> presignedUrlCache.invalidate(bucketName, key));
+            job.succeed(unit, batch.size() - failedKeys.size());
+        });
+    }
+
+    /**
+     * Copies an object with a single CopyObject when it is small enough, or part by part otherwise.
+     * The size is looked up with a HEAD request when the key did not come from a listing.
+     */
+    CompletableFuture<Void> copyObject(String sourceBucketName, String sourceKey, Long size, String destinationBucketName, String destinationKey) {
+        if (size != null && size <= Math.min(copyMultipartThreshold, MAX_COPY_OBJECT_SIZE)) {
+            return this.s3AsyncClient.copyObject(builder -> builder.sourceBucket(sourceBucketName)
+                                                                   .sourceKey(sourceKey)
+                                                                   .destinationBucket(destinationBucketName)
+                                                                   .destinationKey(destinationKey))
+                                     .thenApply(response -> null);
+        }
+        return this.s3AsyncClient.headObject(builder -> builder.bucket(sourceBucketName).key(sourceKey))
+                                 .thenCompose(head -> head.contentLength() <= Math.min(copyMultipartThreshold, MAX_COPY_OBJECT_SIZE)
+                                         ? copyObject(sourceBucketName, sourceKey, head.contentLength(), destinationBucketName, destinationKey)
+                                         : copyParts(sourceBucketName, sourceKey, head, destinationBucketName, destinationKey));
+    }
+
+    /**
+     * Copies a large object with UploadPartCopy. Parts are copied in {@code maxInFlightParts} lanes, each lane copying
+     * its parts one after the other, and every part is pinned to the source ETag so a concurrent overwrite cannot mix versions.
+     * Unlike CopyObject, a multipart copy does not carry the object metadata over, so it is taken from the HEAD response.
+     */
+    private CompletableFuture<Void> copyParts(String sourceBucketName, String sourceKey, HeadObjectResponse head,
+                                              String destinationBucketName, String destinationKey) {
+        long size = head.contentLength();
+        long partSize = partSizeFor(size);
+        int partCount = (int) ((size + partSize - 1) / partSize);
+
+        return this.s3AsyncClient.createMultipartUpload(builder -> builder.bucket(destinationBucketName)
+                                                                          .key(destinationKey)
+                                                                          .contentType(head.contentType())
+                                                                          .contentEncoding(head.contentEncoding())
+                                                                          .contentDisposition(head.contentDisposition())
+                                                                          .cacheControl(head.cacheControl())
+                                                                          .metadata(head.metadata()))
+                                 .thenCompose(created -> {
+                                     String uploadId = created.uploadId();
+                                     CompletedPart[] parts = new CompletedPart[partCount];
+                                     int lanes = Math.min(Math.max(maxInFlightParts, 1), partCount);
+                                     CompletableFuture<?>[] laneFutures = new CompletableFuture<?>[lanes];
+                                     for (int lane = 0; lane < lanes; lane++) {
+                                         CompletableFuture<Void> chain = CompletableFuture.completedFuture(null);
+                                         for (int index = lane; index < partCount; index += lanes) {
+                                             int partNumber = index + 1;
+                                             String range = "bytes=" + index * partSize + "-" + (Math.min((index + 1) * partSize, size) - 1);
+                                             chain = chain.thenCompose(ignored -> this.s3AsyncClient.uploadPartCopy(builder -> builder.sourceBucket(sourceBucketName)
+                                                                                                                                      .sourceKey(sourceKey)
+                                                                                                                                      .destinationBucket(destinationBucketName)
+                                                                                                                                      .destinationKey(destinationKey)
+                                                                                                                                      .uploadId(uploadId)
+                                                                                                                                      .partNumber(partNumber)
+                                                                                                                                      .copySourceRange(range)
+                                                                                                                                      .copySourceIfMatch(head.eTag())))
+                                                          .thenAccept(response -> parts[partNumber - 1] = CompletedPart.builder()
+                                                                                                                      .partNumber(partNumber)
+                                                                                                                      .eTag(response.copyPartResult().eTag())
+                                                                                                                      .build());
+                                         }
+                                         laneFutures[lane] = chain;
+                                     }
+                                     return CompletableFuture.allOf(laneFutures)
+                                                             .thenCompose(ignored -> this.s3AsyncClient.completeMultipartUpload(builder -> builder.bucket(destinationBucketName)
+                                                                                                                                                  .key(destinationKey)
+                                                                                                                                                  .uploadId(uploadId)
+                                                                                                                                                  .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build())))
+                                                             .<Void>thenApply(response -> null)
+                                                             .whenComplete((ignored, throwable) -> {
+                                                                 if (throwable != null) {
+                                                                     // Abort so S3 discards the parts already copied for this upload.
+                                                                     this.s3AsyncClient.abortMultipartUpload(builder -> builder.bucket(destinationBucketName)
+                                                                                                                               .key(destinationKey)
+                                                                                                                               .uploadId(uploadId));
+                                                                 }
+                                                             });
+                                 });
+    }
+
+    /**
+     * Grows the configured part size when needed so the object fits within the S3 part count limit.
+     */
+    private long partSizeFor(long size) {
+        long minimumForLimit = (size + MAX_PARTS - 1) / MAX_PARTS;
+        return Math.min(Math.max(Math.max(copyPartSize, MIN_PART_SIZE), minimumForLimit), MAX_COPY_OBJECT_SIZE);
+    }
+
+    private static String destinationKey(String key, String sourcePrefix, String destinationPrefix) {
+        String relativeKey = sourcePrefix != null && key.startsWith(sourcePrefix) ? key.substring(sourcePrefix.length()) : key;
+        return Objects.toString(destinationPrefix, "") + relativeKey;
+    }
+
+    private Job openJob(String jobId, Map<String, String> parameters, Consumer<BulkJobEvent> eventConsumer) throws IOException {
+        String id = jobId == null ? UUID.randomUUID().toString() : jobId;
+        if (!isValidJobId(id)) {
+            throw new IllegalArgumentException("Invalid job id: " + id);
+        }
+        // Claimed before the checkpoint is read, and released by the caller once the job ends.
+        if (!runningJobs.add(id)) {
+            throw new IllegalStateException("Job " + id + " is already running");
+        }
+        try {
+            Path directory = Paths.get(checkpointDirectory);
+            Files.createDirectories(directory);
+            return Job.open(id, directory.resolve(id + ".properties"), parameters, checkpointInterval, eventConsumer);
+        } catch (IOException | RuntimeException e) {
+            runningJobs.remove(id);
+            throw e;
+        }
+    }
+
+    private static Map<String, String> parameters(String... namesAndValues) {
+        Map<String, String> parameters = new LinkedHashMap<>();
+        for (int i = 0; i < namesAndValues.length; i += 2) {
+            if (namesAndValues[i + 1] != null) {
+                parameters.put(namesAndValues[i], namesAndValues[i + 1]);
+            }
+        }
+        return parameters;
+    }
+
+    private static void acquire(Semaphore semaphore) throws IOException {
+        try {
+            semaphore.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a request slot", e);
+        }
+    }
+
+    /**
+     * A key to process, with its 1-based position in the job and its size when it came from a listing.
+     */
+    private record Item(long position, String key, Long size) {
+    }
+
+    /**
+     * A batch in flight: the position and key it ends at, and the outcome of its keys.
+     */
+    private static final class Unit {
+        private final long endPosition;
+        private final String lastKey;
+        private long succeeded;
+        private long failed;
+        private boolean done;
+
+        private Unit(long endPosition, String lastKey) {
+            this.endPosition = endPosition;
+            this.lastKey = lastKey;
+        }
+    }
+
+    /**
+     * Progress of a job and its checkpoint.
+     * Batches complete out of order, so the checkpoint only moves past a batch once every batch sent before it
+     * has completed: on resume, no key before the checkpoint is processed again, and no key after it is skipped.
+     * Counters only include checkpointed batches, so they stay exact across resumes.
+     */
+    private static final class Job {
+        private final String id;
+        private final Path checkpointFile;
+        private final Map<String, String> parameters;
+        private final long checkpointIntervalNanos;
+        private final Consumer<BulkJobEvent> eventConsumer;
+        private final Deque<Unit> units = new ArrayDeque<>();
+
+        private long position;
+        private String checkpointKey;
+        private long succeeded;
+        private long failed;
+        private boolean completed;
+        private long lastSaveNanos = System.nanoTime();
+        private IOException saveFailure;
+        private RuntimeException detachment;
+
+        private Job(String id, Path checkpointFile, Map<String, String> parameters, Duration checkpointInterval, Consumer<BulkJobEvent> eventConsumer) {
+            this.id = id;
+            this.checkpointFile = checkpointFile;
+            this.parameters = parameters;
+            this.checkpointIntervalNanos = checkpointInterval.toNanos();
+            this.eventConsumer = eventConsumer;
+        }
+
+        static Job open(String id, Path checkpointFile, Map<String, String> parameters, Duration checkpointInterval,
+                        Consumer<BulkJobEvent> eventConsumer) throws IOException {
+            Job job = new Job(id, checkpointFile, parameters, checkpointInterval, eventConsumer);
+            if (Files.exists(checkpointFile)) {
+                Properties checkpoint = new Properties();
+                try (Reader reader = Files.newBufferedReader(checkpointFile)) {
+                    checkpoint.load(reader);
+                }
+                for (String name : List.of("operation", "bucket", "prefix", "destinationBucket", "destinationPrefix")) {
+                    if (!Objects.equals(checkpoint.getProperty(name), parameters.get(name))) {
+                        throw new IllegalArgumentException("Job " + id + " was started with a different " + name);
+                    }
+                }
+                job.position = Long.parseLong(checkpoint.getProperty("position", "0"));
+                job.checkpointKey = checkpoint.getProperty("checkpointKey");
+                job.succeeded = Long.parseLong(checkpoint.getProperty("succeeded", "0"));
+                job.failed = Long.parseLong(checkpoint.getProperty("failed", "0"));
+                job.completed = Boolean.parseBoolean(checkpoint.getProperty("completed", "false"));
+            }
+            job.report(BulkJobEvent.started(id, job.position, job.succeeded, job.failed, job.checkpointKey));
+            return job;
+        }
+
+        /**
+         * Hands an event to the consumer. A consumer failure, such as a client that disconnected from the report,
+         * detaches the job: its later events are dropped and it stops sending batches.
+         */
+        synchronized void report(BulkJobEvent event) {
+            if (detachment != null) {
+                return;
+            }
+            try {
+                eventConsumer.accept(event);
+            } catch (RuntimeException e) {
+                detachment = e;
+            }
+        }
+
+        synchronized RuntimeException detachment() {
+            return detachment;
+        }
+
+        synchronized boolean isCompleted() {
+            return completed;
+        }
+
+        synchronized long position() {
+            return position;
+        }
+
+        synchronized String checkpointKey() {
+            return checkpointKey;
+        }
+
+        synchronized Unit begin(long endPosition, String lastKey) {
+            Unit unit = new Unit(endPosition, lastKey);
+            units.addLast(unit);
+            return unit;
+        }
+
+        synchronized void succeed(Unit unit, long count) {
+            unit.succeeded += count;
+        }
+
+        void fail(Unit unit, String key, Throwable throwable) {
+            Throwable cause = throwable;
+            while (cause instanceof CompletionException && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            String errorCode = cause instanceof AwsServiceException serviceException && serviceException.awsErrorDetails() != null
+                    ? serviceException.awsErrorDetails().errorCode()
+                    : cause.getClass().getSimpleName();
+            fail(unit, key, errorCode, cause.getMessage());
+        }
+
+        synchronized void fail(Unit unit, String key, String errorCode, String message) {
+            unit.failed++;
+            report(BulkJobEvent.failure(id, key, errorCode, message));
+        }
+
+        /**
+         * Marks a batch as done and moves the checkpoint past every leading batch that is done.
+         */
+        synchronized void complete(Unit unit) {
+            unit.done = true;
+            boolean advanced = false;
+            while (!units.isEmpty() && units.peekFirst().done) {
+                Unit head = units.removeFirst();
+                position = head.endPosition;
+                checkpointKey = head.lastKey;
+                succeeded += head.succeeded;
+                failed += head.failed;
+                advanced = true;
+            }
+            if (advanced && System.nanoTime() - lastSaveNanos >= checkpointIntervalNanos) {
+                try {
+                    save();
+                } catch (IOException e) {
+                    saveFailure = e;
+                }
+            }
+        }
+
+        synchronized void markCompleted() throws IOException {
+            completed = true;
+            save();
+        }
+
+        synchronized void reportCompleted() {
+            report(BulkJobEvent.completed(id, position, succeeded, failed, checkpointKey));
+        }
+
+        /**
+         * Writes the checkpoint to a temporary file and moves it in place, so a crash never leaves a truncated checkpoint.
+         */
+        synchronized void save() throws IOException {
+            if (saveFailure != null) {
+                IOException failure = saveFailure;
+                saveFailure = null;
+                throw failure;
+            }
+            Properties checkpoint = new Properties();
+            parameters.forEach(checkpoint::setProperty);
+            checkpoint.setProperty("position", Long.toString(position));
+            if (checkpointKey != null) {
+                checkpoint.setProperty("checkpointKey", checkpointKey);
+            }
+            checkpoint.setProperty("succeeded", Long.toString(succeeded));
+            checkpoint.setProperty("failed", Long.toString(failed));
+            checkpoint.setProperty("completed", Boolean.toString(completed));
+
+            Path temporary = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+            try (Writer writer = Files.newBufferedWriter(temporary)) {
+                checkpoint.store(writer, "Bulk job " + id);
+            }
+            Files.move(temporary, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            lastSaveNanos = System.nanoTime();
+            if (!completed) {
+                report(BulkJobEvent.progress(id, position, succeeded, failed, checkpointKey));
+            }
+        }
+    }
+}
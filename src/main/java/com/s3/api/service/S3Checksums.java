@@ -0,0 +1,362 @@
+package com.s3.api.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.services.s3.model.ChecksumAlgorithm;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Locale;
+import java.util.function.LongSupplier;
+import java.util.zip.CRC32C;
+
+/**
+ * Checksums guarding the integrity of transfers.
+ * Uploads carry an S3 flexible checksum (CRC32C or SHA-256) that S3 checks before storing the content: parts held in
+ * memory are checksummed here, and streamed bodies are checksummed by the SDK while they are sent. Downloads are
+ * checked against the checksum S3 returns for the object, either a whole-object checksum or, for multipart uploads,
+ * a composite one (the checksum of the part checksums, followed by the part count).
+ */
+@Component
+public class S3Checksums {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * A checksum value, base64 encoded as S3 sends it, along with its algorithm.
+     *
+     * @param algorithm The algorithm, or null when there is no checksum.
+     * @param value     The checksum, with a "-{part count}" suffix for composite checksums.
+     */
+    public record Checksum(ChecksumAlgorithm algorithm, String value) {
+
+        // No checksum: sent as no header at all.
+        public static final Checksum NONE = new Checksum(null, null);
+
+        /**
+         * @return The value if this is a CRC32C checksum, for the CRC32C field of S3 requests.
+         */
+        public String crc32c() {
+            return algorithm == ChecksumAlgorithm.CRC32_C ? value : null;
+        }
+
+        /**
+         * @return The value if this is a SHA-256 checksum, for the SHA-256 field of S3 requests.
+         */
+        public String sha256() {
+            return algorithm == ChecksumAlgorithm.SHA256 ? value : null;
+        }
+
+        /**
+         * @return The number of parts a composite checksum covers, or 0 for a whole-object checksum.
+         */
+        public int parts() {
+            int dash = value == null ? -1 : value.lastIndexOf('-');
+            return dash < 0 ? 0 : Integer.parseInt(value.substring(dash + 1));
+        }
+    }
+
+    // Flexible checksum sent with uploads: CRC32C, SHA256 or NONE.
+    @Value("${s3.checksum.algorithm:CRC32C}")
+    private String algorithmName;
+
+    // Checks downloaded objects against the checksum S3 stored for them, when they have one.
+    @Value("${s3.checksum.verify-downloads:true}")
+    private boolean verifyDownloads;
+
+    private ChecksumAlgorithm algorithm;
+
+    @PostConstruct
+    void init() {
+        algorithm = switch (algorithmName.trim().toUpperCase(Locale.ROOT)) {
+            case "CRC32C" -> ChecksumAlgorithm.CRC32_C;
+            case "SHA256", "SHA-256" -> ChecksumAlgorithm.SHA256;
+            case "NONE", "" -> null;
+            default -> throw new IllegalStateException("Unsupported s3.checksum.algorithm: " + algorithmName);
+        };
+    }
+
+    /**
+     * @return The algorithm of the checksums sent with uploads, or null if uploads carry none.
+     */
+    public ChecksumAlgorithm algorithm() {
+        return algorithm;
+    }
+
+    public boolean verifiesDownloads() {
+        return verifyDownloads;
+    }
+
+    /**
+     * Checksums content held in memory, such as a part, with the configured algorithm.
+     *
+     * @param data The content.
+     * @return Its checksum, or {@link Checksum#NONE} if uploads carry no checksum.
+     */
+    public Checksum of(byte[] data) {
+        if (algorithm == null) {
+            return Checksum.NONE;
+        }
+        Digest digest = new Digest(algorithm);
+        digest.update(data, 0, data.length);
+        return new Checksum(algorithm, Base64.getEncoder().encodeToString(digest.finish()));
+    }
+
+    /**
+     * Picks the checksum S3 returned for an object (on HEAD or GET with the checksum mode enabled).
+     *
+     * @param crc32c The CRC32C checksum of the response, if any.
+     * @param sha256 The SHA-256 checksum of the response, if any.
+     * @return The checksum this service can check, or {@link Checksum#NONE}.
+     */
+    public static Checksum stored(String crc32c, String sha256) {
+        if (crc32c != null) {
+            return new Checksum(ChecksumAlgorithm.CRC32_C, crc32c);
+        }
+        if (sha256 != null) {
+            return new Checksum(ChecksumAlgorithm.SHA256, sha256);
+        }
+        return Checksum.NONE;
+    }
+
+    /**
+     * Wraps the content of an object so that reaching its end fails with an IOException if it does not match the
+     * expected checksum. Composite checksums are computed over parts of equal size (except the last), as multipart
+     * uploaders write them; content whose part count does not fit that layout is not checked.
+     *
+     * @param source   The content of the object, from its first byte.
+     * @param expected The checksum S3 stored for the object.
+     * @param partSize Gives the size of the parts of a multipart object; only called for composite checksums.
+     * @param key      The key of the object, for the error message.
+     * @return A stream of the same content.
+     */
+    public static InputStream verifying(InputStream source, Checksum expected, LongSupplier partSize, String key) {
+        if (expected.algorithm() == null) {
+            return source;
+        }
+        return new VerifyingInputStream(source, new Verifier(expected, partSize, key));
+    }
+
+    /**
+     * Creates a checksum computation for content that is not read as a stream, such as ranges written to a file.
+     * It must be given the content in order, from its first byte.
+     *
+     * @param expected The checksum S3 stored for the object.
+     * @param partSize Gives the size of the parts of a multipart object; only called for composite checksums.
+     * @param key      The key of the object, for the error message.
+     * @return The computation, which {@link Verifier#verify()} compares once all the content went through it.
+     */
+    public static Verifier verifier(Checksum expected, LongSupplier partSize, String key) {
+        return new Verifier(expected, partSize, key);
+    }
+
+    /**
+     * @return A new SHA-256 digest, the checksum the deduplication index is keyed by.
+     */
+    public static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Reads a stream to its end.
+     *
+     * @param source The content, which is closed afterwards.
+     * @return The base64 SHA-256 checksum of the content.
+     * @throws IOException If the stream cannot be read.
+     */
+    public static String sha256(InputStream source) throws IOException {
+        MessageDigest digest = sha256();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = source) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return Base64.getEncoder().encodeToString(digest.digest());
+    }
+
+    /**
+     * A CRC32C or SHA-256 computation, behind one interface.
+     */
+    private static final class Digest {
+        private final CRC32C crc32c;
+        private final MessageDigest sha256;
+
+        private Digest(ChecksumAlgorithm algorithm) {
+            this.crc32c = algorithm == ChecksumAlgorithm.CRC32_C ? new CRC32C() : null;
+            this.sha256 = algorithm == ChecksumAlgorithm.SHA256 ? S3Checksums.sha256() : null;
+        }
+
+        void update(byte[] bytes, int offset, int length) {
+            if (crc32c != null) {
+                crc32c.update(bytes, offset, length);
+            } else {
+                sha256.update(bytes, offset, length);
+            }
+        }
+
+        void update(ByteBuffer buffer) {
+            if (crc32c != null) {
+                crc32c.update(buffer);
+            } else {
+                sha256.update(buffer);
+            }
+        }
+
+        byte[] finish() {
+            if (sha256 != null) {
+                return sha256.digest();
+            }
+            // S3 sends CRC32C values as their 4 big-endian bytes.
+            long value = crc32c.getValue();
+            return new byte[]{(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value};
+        }
+    }
+
+    /**
+     * Checksums content given in order, part by part for composite checksums, and compares once it has all been given.
+     */
+    public static final class Verifier {
+        private final Checksum expected;
+        private final LongSupplier partSizeSupplier;
+        private final String key;
+        private final int expectedParts;
+        private Digest digest;
+        private Digest composite;
+        private long partSize;
+        private long partBytes;
+        private int parts;
+        private boolean verified;
+
+        private Verifier(Checksum expected, LongSupplier partSize, String key) {
+            this.expected = expected;
+            this.partSizeSupplier = partSize;
+            this.key = key;
+            this.expectedParts = expected.parts();
+            this.digest = new Digest(expected.algorithm());
+        }
+
+        /**
+         * Adds the next bytes of the content, from the position to the limit of the buffer, which is consumed.
+         */
+        public void update(ByteBuffer buffer) {
+            if (expectedParts == 0) {
+                digest.update(buffer);
+                return;
+            }
+            if (composite == null) {
+                composite = new Digest(expected.algorithm());
+                partSize = partSizeSupplier.getAsLong();
+            }
+            while (buffer.hasRemaining()) {
+                int count = (int) Math.min(buffer.remaining(), partSize - partBytes);
+                digest.update(buffer.slice(buffer.position(), count));
+                buffer.position(buffer.position() + count);
+                partBytes += count;
+                if (partBytes == partSize) {
+                    closePart();
+                }
+            }
+        }
+
+        private void closePart() {
+            byte[] partChecksum = digest.finish();
+            composite.update(ByteBuffer.wrap(partChecksum));
+            digest = new Digest(expected.algorithm());
+            partBytes = 0;
+            parts++;
+        }
+
+        /**
+         * Compares the checksum of the content given so far with the expected one. Only the first call compares.
+         *
+         * @throws IOException If they differ.
+         */
+        public void verify() throws IOException {
+            if (verified) {
+                return;
+            }
+            verified = true;
+            String actual;
+            if (expectedParts == 0) {
+                actual = Base64.getEncoder().encodeToString(digest.finish());
+            } else {
+                if (composite == null) {
+                    // Empty content: nothing to compare part by part.
+                    return;
+                }
+                if (partBytes > 0) {
+                    closePart();
+                }
+                if (parts != expectedParts) {
+                    // The parts were not of equal size: the layout cannot be rebuilt from the content alone.
+                    return;
+                }
+                actual = Base64.getEncoder().encodeToString(composite.finish()) + "-" + parts;
+            }
+            if (!actual.equals(expected.value())) {
+                throw new IOException("Checksum mismatch for " + key + ": S3 stored " + expected.value() + " but the content has " + actual);
+            }
+        }
+    }
+
+    /**
+     * Checksums the content as it is read, and compares at the end of the stream.
+     */
+    private static final class VerifyingInputStream extends FilterInputStream {
+        private final Verifier verifier;
+
+        private VerifyingInputStream(InputStream source, Verifier verifier) {
+            super(source);
+            this.verifier = verifier;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            int read = super.read(bytes, offset, length);
+            if (read < 0) {
+                verifier.verify();
+            } else {
+                verifier.update(ByteBuffer.wrap(bytes, offset, read));
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // Skipped bytes would be missing from the checksum: read them instead.
+            byte[] buffer = new byte[(int) Math.min(BUFFER_SIZE, Math.max(n, 1))];
+            long skipped = 0;
+            while (skipped < n) {
+                int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+                if (read < 0) {
+                    break;
+                }
+                skipped += read;
+            }
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
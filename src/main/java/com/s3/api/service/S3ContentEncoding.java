@@ -0,0 +1,262 @@
+package com.s3.api.service;
+
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streaming compression of uploaded objects, and decompression of downloaded ones.
+ * Objects whose content type (guessed from the key) and size match the policy are compressed while they are read,
+ * chunk by chunk, so an object is never held in memory as a whole. Compressed objects are stored with a
+ * {@code Content-Encoding} header and their original size in the {@code original-size} metadata entry.
+ */
+@Component
+public class S3ContentEncoding {
+
+    // Metadata entry (x-amz-meta-original-size) holding the size of a compressed object before compression.
+    public static final String ORIGINAL_SIZE = "original-size";
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * Supported content codings, by their Content-Encoding token.
+     */
+    public enum Encoding {
+        GZIP("gzip"),
+        ZSTD("zstd");
+
+        private final String token;
+
+        Encoding(String token) {
+            this.token = token;
+        }
+
+        public String token() {
+            return token;
+        }
+
+        /**
+         * @param contentEncoding A Content-Encoding header value.
+         * @return The matching encoding, or null if the value is missing or not supported.
+         */
+        public static Encoding of(String contentEncoding) {
+            if (contentEncoding == null) {
+                return null;
+            }
+            return switch (contentEncoding.trim().toLowerCase(Locale.ROOT)) {
+                case "gzip", "x-gzip" -> GZIP;
+                case "zstd" -> ZSTD;
+                default -> null;
+            };
+        }
+    }
+
+    // Enables compression of uploads; downloads of compressed objects are decompressed either way.
+    @Value("${s3.compression.enabled:false}")
+    private boolean enabled;
+
+    // Content coding of compressed uploads: gzip or zstd.
+    @Value("${s3.compression.encoding:gzip}")
+    private String encoding;
+
+    // Compression level of gzip (1 to 9).
+    @Value("${s3.compression.gzip-level:6}")
+    private int gzipLevel;
+
+    // Compression level of zstd (1 to 22).
+    @Value("${s3.compression.zstd-level:3}")
+    private int zstdLevel;
+
+    // Objects smaller than this size (in bytes) are stored as they are: compression would save too little.
+    @Value("${s3.compression.min-size:1024}")
+    private long minSize;
+
+    // Content types worth compressing, guessed from the key extension. A type ending with "/*" matches its whole family.
+    @Value("${s3.compression.content-types:text/*,application/json,application/x-ndjson,application/xml,application/javascript,application/x-yaml}")
+    private List<String> contentTypes;
+
+    /**
+     * Tells how an upload should be compressed.
+     *
+     * @param key  The key of the object, whose extension gives its content type.
+     * @param size The size of the object in bytes.
+     * @return The encoding to compress the object with, or null to store it as it is.
+     */
+    public Encoding encodingFor(String key, long size) {
+        if (!enabled || size < minSize) {
+            return null;
+        }
+        MediaType contentType = contentTypeOf(key);
+        if (contentType == null || contentTypes.stream().noneMatch(type -> MediaType.parseMediaType(type.trim()).includes(contentType))) {
+            return null;
+        }
+        return Encoding.of(encoding);
+    }
+
+    /**
+     * @param key The key of an object.
+     * @return The content type guessed from the key extension, or null if it is unknown.
+     */
+    public MediaType contentTypeOf(String key) {
+        return MediaTypeFactory.getMediaType(key).orElse(null);
+    }
+
+    /**
+     * Wraps a stream so that reading it yields the compressed content.
+     *
+     * @param source   The uncompressed content.
+     * @param encoding The encoding to compress with.
+     * @return A stream of the compressed content. Closing it closes the source.
+     * @throws IOException If the compressor cannot be created.
+     */
+    public InputStream encode(InputStream source, Encoding encoding) throws IOException {
+        return new EncodingInputStream(source, encoding == Encoding.ZSTD ? zstdLevel : gzipLevel, encoding);
+    }
+
+    /**
+     * Wraps a stream of stored content so that reading it yields the decompressed content.
+     *
+     * @param source          The stored content.
+     * @param contentEncoding The Content-Encoding of the stored content.
+     * @return A stream of the decompressed content, or the source itself if the encoding is not supported.
+     * @throws IOException If the compressed content is malformed.
+     */
+    public static InputStream decode(InputStream source, String contentEncoding) throws IOException {
+        Encoding encoding = Encoding.of(contentEncoding);
+        if (encoding == null) {
+            return source;
+        }
+        return encoding == Encoding.ZSTD ? new ZstdInputStream(source) : new GZIPInputStream(source, CHUNK_SIZE);
+    }
+
+    /**
+     * Tells whether a client accepts a content coding, following the Accept-Encoding rules: the coding must be listed
+     * without {@code q=0}, or, if it is not listed at all, {@code *} must be (RFC 9110, section 12.5.3).
+     *
+     * @param acceptEncoding  The Accept-Encoding request header, if any.
+     * @param contentEncoding The content coding of the response.
+     * @return True if the client can receive the content as it is stored.
+     */
+    public static boolean accepts(String acceptEncoding, String contentEncoding) {
+        if (acceptEncoding == null || contentEncoding == null) {
+            return false;
+        }
+        Encoding wanted = Encoding.of(contentEncoding);
+        boolean listed = false;
+        boolean refusedCoding = false;
+        boolean wildcard = false;
+        for (String entry : acceptEncoding.split(",")) {
+            String[] parameters = entry.split(";");
+            String coding = parameters[0].trim();
+            boolean refused = false;
+            for (int i = 1; i < parameters.length; i++) {
+                String parameter = parameters[i].trim().replace(" ", "");
+                if (parameter.startsWith("q=") && parameter.substring(2).matches("0(\\.0*)?")) {
+                    refused = true;
+                }
+            }
+            if ("*".equals(coding)) {
+                wildcard |= !refused;
+            } else if (wanted != null && wanted == Encoding.of(coding)) {
+                listed = true;
+                refusedCoding |= refused;
+            }
+        }
+        // A coding the client names, refused or not, is not covered by the wildcard.
+        return listed ? !refusedCoding : wildcard;
+    }
+
+    /**
+     * Compresses its source as it is read: each chunk read from the source is pushed through the compressor,
+     * and whatever compressed bytes come out are served before the next chunk is read. Memory stays bounded
+     * by the chunk size and the compressor window, whatever the object size.
+     */
+    private static final class EncodingInputStream extends InputStream {
+        private final InputStream source;
+        private final Buffer buffer = new Buffer();
+        private final OutputStream compressor;
+        private final byte[] chunk = new byte[CHUNK_SIZE];
+        private int position;
+        private boolean finished;
+
+        private EncodingInputStream(InputStream source, int level, Encoding encoding) throws IOException {
+            this.source = source;
+            this.compressor = encoding == Encoding.ZSTD
+                    ? new ZstdOutputStream(buffer, level)
+                    : new GZIPOutputStream(buffer, CHUNK_SIZE) {
+                        {
+                            def.setLevel(level);
+                        }
+                    };
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            while (position == buffer.size()) {
+                if (finished) {
+                    return -1;
+                }
+                buffer.reset();
+                position = 0;
+                int read = source.read(chunk);
+                if (read < 0) {
+                    // Closing the compressor flushes its last block and trailer into the buffer.
+                    compressor.close();
+                    finished = true;
+                } else {
+                    compressor.write(chunk, 0, read);
+                }
+            }
+            int count = Math.min(length, buffer.size() - position);
+            System.arraycopy(buffer.bytes(), position, bytes, offset, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (!finished) {
+                    // Release the compressor (native memory for zstd) when the upload stops early.
+                    compressor.close();
+                }
+            } finally {
+                source.close();
+            }
+        }
+    }
+
+    /**
+     * Byte buffer whose content can be read without a copy.
+     */
+    private static final class Buffer extends ByteArrayOutputStream {
+        private Buffer() {
+            super(CHUNK_SIZE);
+        }
+
+        byte[] bytes() {
+            return buf;
+        }
+    }
+}
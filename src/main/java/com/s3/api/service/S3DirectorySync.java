@@ -0,0 +1,406 @@
+package com.s3.api.service;
+
+import com.s3.api.dto.SyncEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Incremental sync of a directory tree with a bucket prefix, in either direction.
+ * The local tree and the bucket listing are scanned concurrently. Files are compared by presence and size first,
+ * then by modification date; only when the size matches but the copy being replaced looks older is the content hashed
+ * and compared with the ETag. A re-sync of an unchanged tree therefore costs one listing and one directory walk,
+ * without reading any file. Changed files go through a pipeline of at most {@code parallelism} transfers.
+ * Hidden files and directories (whose name starts with a dot) are left out, such as the temporary files of
+ * downloads in progress.
+ */
+@Service
+public class S3DirectorySync {
+
+    /**
+     * Which side is the source of the sync.
+     */
+    public enum Direction {
+        // The local directory is copied to the bucket prefix.
+        UPLOAD,
+        // The bucket prefix is copied to the local directory.
+        DOWNLOAD
+    }
+
+    // Injects the destination folder: synced directories are resolved against it and must stay inside it.
+    @Value("${spring.destination.folder}")
+    private String destinationFolder;
+
+    // Maximum number of files being hashed or transferred at the same time.
+    @Value("${s3.sync.parallelism:16}")
+    private int parallelism;
+
+    // Autowires the S3 service used to list, upload and delete objects.
+    @Autowired
+    private IS3Service s3Service;
+
+    // Autowires the ranged download engine.
+    @Autowired
+    private S3RangedDownloader rangedDownloader;
+
+    // Autowires the multipart engine, to compute the ETag a local file would get once uploaded.
+    @Autowired
+    private S3MultipartUploader multipartUploader;
+
+    /**
+     * Resolves a directory against the destination folder.
+     *
+     * @param localDirectory A directory relative to the destination folder, or null for the destination folder itself.
+     * @return The absolute directory, or null if it points outside of the destination folder.
+     */
+    public Path resolveDirectory(String localDirectory) {
+        Path root = Paths.get(destinationFolder).toAbsolutePath().normalize();
+        Path directory = localDirectory == null ? root : root.resolve(localDirectory).normalize();
+        return directory.startsWith(root) ? directory : null;
+    }
+
+    /**
+     * Syncs a local directory with a bucket prefix.
+     *
+     * @param direction        Whether local files are uploaded or objects are downloaded.
+     * @param bucketName       The name of the bucket to sync with.
+     * @param prefix           The key prefix mirroring the directory; a trailing slash is added if missing.
+     * @param directory        The local directory, as returned by {@link #resolveDirectory(String)}.
+     * @param dryRun           Whether to only report the changes without making them.
+     * @param deleteExtraneous Whether to delete files of the target side that do not exist on the source side.
+     * @param eventConsumer    Receives each change, each failure and the final summary.
+     * @throws IOException If the local directory cannot be walked.
+     */
+    public void sync(Direction direction, String bucketName, String prefix, Path directory, boolean dryRun, boolean deleteExtraneous,
+                     Consumer<SyncEvent> eventConsumer) throws IOException {
+        String keyPrefix = prefix == null || prefix.isEmpty() || prefix.endsWith("/") ? Objects.toString(prefix, "") : prefix + "/";
+        Sync sync = new Sync(eventConsumer);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            // List the bucket while the local tree is walked.
+            CompletableFuture<Map<String, S3Object>> remoteListing = CompletableFuture.supplyAsync(() -> listRemote(bucketName, keyPrefix), executor);
+            Map<String, LocalFile> localFiles = walkLocal(directory, direction == Direction.DOWNLOAD);
+            Map<String, S3Object> remoteObjects = join(remoteListing);
+            sync.localFiles = localFiles.size();
+            sync.remoteFiles = remoteObjects.size();
+
+            Semaphore inFlight = new Semaphore(parallelism);
+            if (direction == Direction.UPLOAD) {
+                localFiles.forEach((path, local) -> {
+                    S3Object remote = remoteObjects.get(path);
+                    String reason = remote == null ? "missing" : remote.size() != local.size() ? "size" : null;
+                    if (reason == null && !local.lastModified().isAfter(remote.lastModified())) {
+                        sync.unchanged();
+                        return;
+                    }
+                    submit(executor, inFlight, sync, path, () -> {
+                        // Same size, but the local file changed since the upload: compare contents before uploading.
+                        if (reason == null && eTagOf(local.file(), local.size()).equals(stripQuotes(remote.eTag()))) {
+                            sync.unchanged();
+                            return;
+                        }
+                        sync.change("upload", path, local.size(), reason == null ? "content" : reason);
+                        if (!dryRun) {
+                            if (Boolean.TRUE.equals(s3Service.uploadFile(bucketName, keyPrefix + path, local.file()))) {
+                                sync.transferred(local.size());
+                            } else {
+                                sync.failure(path, "UploadFailed", "Upload was not acknowledged");
+                            }
+                        }
+                    });
+                });
+                if (deleteExtraneous) {
+                    List<String> extraneous = remoteObjects.keySet().stream().filter(path -> !localFiles.containsKey(path)).toList();
+                    deleteRemote(bucketName, keyPrefix, extraneous, dryRun, sync);
+                }
+            } else {
+                remoteObjects.forEach((path, remote) -> {
+                    Path target = directory.resolve(path).normalize();
+                    if (!target.startsWith(directory)) {
+                        sync.failure(path, "InvalidKey", "Key resolves outside of the directory");
+                        return;
+                    }
+                    LocalFile local = localFiles.get(path);
+                    String reason = local == null ? "missing" : remote.size() != local.size() ? "size" : null;
+                    if (reason == null && !remote.lastModified().isAfter(local.lastModified())) {
+                        sync.unchanged();
+                        return;
+                    }
+                    submit(executor, inFlight, sync, path, () -> {
+                        // Same size, but the object changed since the download: compare contents before downloading.
+                        if (reason == null && eTagOf(local.file(), local.size()).equals(stripQuotes(remote.eTag()))) {
+                            if (!dryRun) {
+                                // Align the modification dates so the next sync does not hash the file again.
+                                Files.setLastModifiedTime(local.file(), FileTime.from(remote.lastModified()));
+                            }
+                            sync.unchanged();
+                            return;
+                        }
+                        sync.change("download", path, remote.size(), reason == null ? "content" : reason);
+                        if (!dryRun) {
+                            download(bucketName, keyPrefix + path, target, remote.lastModified());
+                            sync.transferred(remote.size());
+                        }
+                    });
+                });
+                if (deleteExtraneous) {
+                    localFiles.forEach((path, local) -> {
+                        if (!remoteObjects.containsKey(path)) {
+                            submit(executor, inFlight, sync, path, () -> {
+                                sync.change("delete", path, null, null);
+                                if (!dryRun) {
+                                    Files.deleteIfExists(local.file());
+                                    sync.deleted(1);
+                                }
+                            });
+                        }
+                    });
+                }
+            }
+            // Wait for the transfers in flight.
+            inFlight.acquireUninterruptibly(parallelism);
+        }
+        sync.summary(dryRun);
+    }
+
+    /**
+     * Lists the objects under the prefix, keyed by their path relative to it. Folder markers are left out.
+     */
+    private Map<String, S3Object> listRemote(String bucketName, String keyPrefix) {
+        Map<String, S3Object> objects = new HashMap<>();
+        s3Service.listObjects(bucketName, keyPrefix, null, null, null, null, page -> {
+            for (S3Object object : page.contents()) {
+                String path = object.key().substring(keyPrefix.length());
+                if (!path.isEmpty() && !path.endsWith("/") && !isHidden(path)) {
+                    objects.put(path, object);
+                }
+            }
+        });
+        return objects;
+    }
+
+    /**
+     * Walks the local directory, keyed by the path of each file relative to it with '/' separators.
+     * The size and modification date come from the walk itself, without an extra call per file.
+     */
+    private Map<String, LocalFile> walkLocal(Path directory, boolean createIfMissing) throws IOException {
+        Map<String, LocalFile> files = new HashMap<>();
+        if (!Files.isDirectory(directory)) {
+            if (createIfMissing) {
+                Files.createDirectories(directory);
+            }
+            return files;
+        }
+        Files.walkFileTree(directory, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) {
+                return !dir.equals(directory) && dir.getFileName().toString().startsWith(".") ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                if (attributes.isRegularFile() && !file.getFileName().toString().startsWith(".")) {
+                    String path = directory.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/");
+                    files.put(path, new LocalFile(file, attributes.size(), attributes.lastModifiedTime().toInstant()));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return files;
+    }
+
+    /**
+     * Deletes extraneous objects through the bulk delete engine, in batches of up to 1000 keys.
+     */
+    private void deleteRemote(String bucketName, String keyPrefix, List<String> paths, boolean dryRun, Sync sync) {
+        paths.forEach(path -> sync.change("delete", path, null, null));
+        if (dryRun || paths.isEmpty()) {
+            return;
+        }
+        try {
+            s3Service.deleteObjects(null, bucketName, null, paths.stream().map(path -> keyPrefix + path), event -> {
+                switch (event.type()) {
+                    case "failure" -> sync.failure(event.key().substring(keyPrefix.length()), event.errorCode(), event.message());
+                    case "completed" -> sync.deleted(event.succeeded());
+                    default -> {
+                    }
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            sync.failure(keyPrefix, e.getClass().getSimpleName(), e.getMessage());
+        }
+    }
+
+    /**
+     * Downloads into a hidden temporary file next to the target and moves it in place, so an interrupted
+     * download never replaces a good file. The file takes the object date, so the next sync sees it as unchanged.
+     */
+    private void download(String bucketName, String key, Path target, Instant lastModified) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path temporary = target.resolveSibling("." + target.getFileName() + ".sync");
+        rangedDownloader.download(bucketName, key, temporary);
+        Files.setLastModifiedTime(temporary, FileTime.from(lastModified));
+        Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Computes the ETag S3 gives the file when it is uploaded by this application: the MD5 of the content for single
+     * uploads, or the MD5 of the part MD5s followed by the part count for multipart uploads.
+     */
+    String eTagOf(Path file, long size) throws IOException {
+        MessageDigest content = md5();
+        if (!multipartUploader.shouldUpload(size)) {
+            try (InputStream in = Files.newInputStream(file)) {
+                digest(in, content, Long.MAX_VALUE);
+            }
+            return HexFormat.of().formatHex(content.digest());
+        }
+        int partSize = multipartUploader.partSizeFor(size);
+        MessageDigest parts = md5();
+        int partCount = 0;
+        try (InputStream in = Files.newInputStream(file)) {
+            while (digest(in, content, partSize) > 0) {
+                parts.update(content.digest());
+                partCount++;
+            }
+        }
+        return HexFormat.of().formatHex(parts.digest()) + "-" + partCount;
+    }
+
+    private static long digest(InputStream in, MessageDigest digest, long limit) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        long total = 0;
+        int read;
+        while (total < limit && (read = in.read(buffer, 0, (int) Math.min(buffer.length, limit - total))) > 0) {
+            digest.update(buffer, 0, read);
+            total += read;
+        }
+        return total;
+    }
+
+    private static void submit(ExecutorService executor, Semaphore inFlight, Sync sync, String path, Task task) {
+        inFlight.acquireUninterruptibly();
+        executor.execute(() -> {
+            try {
+                task.run();
+            } catch (IOException | RuntimeException e) {
+                Throwable cause = e instanceof UncheckedIOException || e instanceof CompletionException ? e.getCause() : e;
+                String errorCode = cause instanceof AwsServiceException serviceException && serviceException.awsErrorDetails() != null
+                        ? serviceException.awsErrorDetails().errorCode()
+                        : cause.getClass().getSimpleName();
+                sync.failure(path, errorCode, cause.getMessage());
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    private static boolean isHidden(String path) {
+        return path.startsWith(".") || path.contains("/.");
+    }
+
+    private static String stripQuotes(String eTag) {
+        return eTag == null ? "" : eTag.replace("\"", "");
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    private static MessageDigest md5() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Task {
+        void run() throws IOException;
+    }
+
+    private record LocalFile(Path file, long size, Instant lastModified) {
+    }
+
+    /**
+     * Counters and report of a sync run. Events are handed out one at a time, whatever the thread reporting them.
+     */
+    private static final class Sync {
+        private final Consumer<SyncEvent> eventConsumer;
+        private long localFiles;
+        private long remoteFiles;
+        private final AtomicLong transferred = new AtomicLong();
+        private final AtomicLong deleted = new AtomicLong();
+        private final AtomicLong unchanged = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+
+        private Sync(Consumer<SyncEvent> eventConsumer) {
+            this.eventConsumer = eventConsumer;
+        }
+
+        void unchanged() {
+            unchanged.incrementAndGet();
+        }
+
+        void transferred(long size) {
+            transferred.incrementAndGet();
+            bytes.addAndGet(size);
+        }
+
+        void deleted(long count) {
+            deleted.addAndGet(count);
+        }
+
+        synchronized void change(String type, String path, Long size, String reason) {
+            eventConsumer.accept(SyncEvent.change(type, path, size, reason));
+        }
+
+        synchronized void failure(String path, String errorCode, String message) {
+            failed.incrementAndGet();
+            eventConsumer.accept(SyncEvent.failure(path, errorCode, message));
+        }
+
+        synchronized void summary(boolean dryRun) {
+            eventConsumer.accept(SyncEvent.summary(dryRun, localFiles, remoteFiles, transferred.get(), deleted.get(),
+                                                   unchanged.get(), failed.get(), bytes.get()));
+        }
+    }
+}
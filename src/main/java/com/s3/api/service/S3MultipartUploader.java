@@ -0,0 +1,323 @@
+package com.s3.api.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.exception.SdkServiceException;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Multipart upload engine for large objects.
+ * The content is cut into parts that are sent concurrently through the S3AsyncClient, with at most
+ * {@code maxInFlightParts} parts buffered at a time, so memory stays bounded by (in-flight parts x part size)
+ * whatever the object size. Failed parts are retried, and a failed upload is aborted so no orphan parts are left behind.
+ * Each part carries the flexible checksum configured in {@link S3Checksums}, computed from the buffered part, so S3
+ * rejects parts corrupted in transit. A stream that does not deliver the announced number of bytes aborts the upload
+ * rather than storing a truncated object.
+ */
+@Component
+public class S3MultipartUploader {
+
+    // S3 limits: parts must be at least 5MB (except the last one) and an upload holds at most 10,000 parts.
+    private static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+    private static final int MAX_PARTS = 10_000;
+
+    // Objects larger than this size (in bytes) are uploaded in parts instead of a single PutObject.
+    @Value("${s3.multipart.threshold:16777216}")
+    private long threshold;
+
+    // Size (in bytes) of each uploaded part.
+    @Value("${s3.multipart.part-size:8388608}")
+    private long partSize;
+
+    // Maximum number of parts being uploaded at the same time for a single object.
+    @Value("${s3.multipart.max-in-flight-parts:8}")
+    private int maxInFlightParts;
+
+    // Number of times a failed part is retried before the whole upload is aborted.
+    @Value("${s3.multipart.part-retries:3}")
+    private int partRetries;
+
+    // Base delay (in milliseconds) between part retries, doubled on each attempt.
+    @Value("${s3.multipart.retry-backoff-ms:200}")
+    private long retryBackoffMillis;
+
+    // Autowires the S3AsyncClient bean for concurrent part uploads.
+    @Autowired
+    private S3AsyncClient s3AsyncClient;
+
+    // Autowires the checksums sent with each part.
+    @Autowired
+    private S3Checksums checksums;
+
+    /**
+     * Tells whether an object of the given size should go through the multipart engine.
+     *
+     * @param contentLength The size of the object in bytes.
+     * @return True if the object is larger than the configured threshold.
+     */
+    public boolean shouldUpload(long contentLength) {
+        return contentLength > threshold;
+    }
+
+    /**
+     * Uploads the content of a stream as a multipart upload.
+     *
+     * @param bucketName    The name of the bucket to upload the content to.
+     * @param key           The key (path) under which the content will be stored in the bucket.
+     * @param inputStream   The stream providing the object content.
+     * @param contentLength The exact number of bytes the stream will provide; a stream ending sooner or going on longer
+     *                      aborts the upload.
+     * @param contentCheck  Runs once the stream was read in full, before the upload is completed; an exception it throws
+     *                      aborts the upload. May be null.
+     * @return The ETag of the stored object.
+     */
+    public String upload(String bucketName, String key, InputStream inputStream, long contentLength, Runnable contentCheck) {
+        String uploadId = join(key, this.s3AsyncClient.createMultipartUpload(builder -> builder.bucket(bucketName)
+                                                                                                .key(key)
+                                                                                                .checksumAlgorithm(checksums.algorithm())))
+                .uploadId();
+        try {
+            List<CompletedPart> parts = uploadParts(bucketName, key, uploadId, inputStream, partSizeFor(contentLength), null, contentLength);
+            return complete(bucketName, key, uploadId, parts, contentCheck);
+        } catch (RuntimeException | IOException e) {
+            // Abort so S3 discards the parts already stored for this upload.
+            abort(bucketName, key, uploadId);
+            throw failure(key, e);
+        }
+    }
+
+    /**
+     * Uploads a stream whose final size is not known up front, such as compressed content, along with its headers.
+     * The first part is read before anything is sent: if the stream ends within it, the object is stored with a single
+     * PutObject; otherwise a multipart upload is started with that part. Either way, at most {@code maxInFlightParts}
+     * parts are held in memory.
+     *
+     * @param bucketName      The name of the bucket to upload the content to.
+     * @param key             The key (path) under which the content will be stored in the bucket.
+     * @param inputStream     The stream providing the object content.
+     * @param sizeHint        An upper bound of the stream size, used to size the parts.
+     * @param contentType     The Content-Type to store, if any.
+     * @param contentEncoding The Content-Encoding to store, if any.
+     * @param metadata        The user metadata to store.
+     * @param contentCheck    Runs once the stream was read in full, before the object is stored or the upload completed;
+     *                        an exception it throws cancels the upload. May be null.
+     * @return The ETag of the stored object.
+     * @throws IOException If the stream cannot be read.
+     */
+    public String upload(String bucketName, String key, InputStream inputStream, long sizeHint, String contentType,
+                         String contentEncoding, Map<String, String> metadata, Runnable contentCheck) throws IOException {
+        int partSize = partSizeFor(sizeHint);
+        byte[] firstPart = inputStream.readNBytes(partSize);
+        if (firstPart.length < partSize) {
+            if (contentCheck != null) {
+                contentCheck.run();
+            }
+            S3Checksums.Checksum checksum = checksums.of(firstPart);
+            PutObjectRequest putObjectRequest = PutObjectRequest.builder()
+                                                                .bucket(bucketName)
+                                                                .key(key)
+                                                                .contentType(contentType)
+                                                                .contentEncoding(contentEncoding)
+                                                                .metadata(metadata)
+                                                                .contentLength((long) firstPart.length)
+                                                                .checksumCRC32C(checksum.crc32c())
+                                                                .checksumSHA256(checksum.sha256())
+                                                                .build();
+            return join(key, this.s3AsyncClient.putObject(putObjectRequest, AsyncRequestBody.fromBytesUnsafe(firstPart))).eTag();
+        }
+
+        String uploadId = join(key, this.s3AsyncClient.createMultipartUpload(builder -> builder.bucket(bucketName)
+                                                                                                .key(key)
+                                                                                                .contentType(contentType)
+                                                                                                .contentEncoding(contentEncoding)
+                                                                                                .metadata(metadata)
+                                                                                                .checksumAlgorithm(checksums.algorithm())))
+                .uploadId();
+        try {
+            List<CompletedPart> parts = uploadParts(bucketName, key, uploadId, inputStream, partSize, firstPart, -1);
+            return complete(bucketName, key, uploadId, parts, contentCheck);
+        } catch (RuntimeException | IOException e) {
+            // Abort so S3 discards the parts already stored for this upload.
+            abort(bucketName, key, uploadId);
+            throw failure(key, e);
+        }
+    }
+
+    /**
+     * Runs the content check, then assembles the parts into the object.
+     */
+    private String complete(String bucketName, String key, String uploadId, List<CompletedPart> parts, Runnable contentCheck) {
+        if (contentCheck != null) {
+            contentCheck.run();
+        }
+        CompletedMultipartUpload completedUpload = CompletedMultipartUpload.builder().parts(parts).build();
+        return this.s3AsyncClient.completeMultipartUpload(builder -> builder.bucket(bucketName)
+                                                                            .key(key)
+                                                                            .uploadId(uploadId)
+                                                                            .multipartUpload(completedUpload))
+                                 .join()
+                                 .eTag();
+    }
+
+    /**
+     * Reads the stream part by part and uploads each part as soon as it is read, starting with {@code firstPart} if it was read already.
+     * The semaphore blocks the reader while {@code maxInFlightParts} parts are still in transit.
+     * With a known {@code contentLength} (-1 otherwise), exactly that many bytes must be read, or the upload fails.
+     */
+    private List<CompletedPart> uploadParts(String bucketName, String key, String uploadId, InputStream inputStream, int partSize,
+                                            byte[] firstPart, long contentLength) throws IOException {
+        Semaphore inFlight = new Semaphore(maxInFlightParts);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<CompletableFuture<CompletedPart>> futures = new ArrayList<>();
+
+        int partNumber = 1;
+        long remaining = contentLength < 0 ? Long.MAX_VALUE : contentLength;
+        while (failure.get() == null && remaining > 0) {
+            acquire(inFlight);
+            int length = (int) Math.min(partSize, remaining);
+            byte[] data = partNumber == 1 && firstPart != null ? firstPart : inputStream.readNBytes(length);
+            if (contentLength >= 0 && data.length < length) {
+                inFlight.release();
+                throw new IOException("Content of " + key + " ended after " + (contentLength - remaining + data.length) + " of "
+                                      + contentLength + " bytes");
+            }
+            if (data.length == 0 && partNumber > 1) {
+                inFlight.release();
+                break;
+            }
+            CompletableFuture<CompletedPart> future = uploadPart(bucketName, key, uploadId, partNumber, data, checksums.of(data), 0);
+            future.whenComplete((part, throwable) -> {
+                if (throwable != null) {
+                    failure.compareAndSet(null, throwable);
+                }
+                inFlight.release();
+            });
+            futures.add(future);
+            partNumber++;
+            remaining -= data.length;
+            if (data.length < partSize) {
+                break;
+            }
+        }
+        if (contentLength >= 0 && failure.get() == null && inputStream.read() >= 0) {
+            throw new IOException("Content of " + key + " is longer than " + contentLength + " bytes");
+        }
+
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+        return futures.stream()
+                      .map(CompletableFuture::join)
+                      .sorted(Comparator.comparing(CompletedPart::partNumber))
+                      .toList();
+    }
+
+    /**
+     * Uploads a single part, retrying with exponential backoff when it fails.
+     */
+    private CompletableFuture<CompletedPart> uploadPart(String bucketName, String key, String uploadId, int partNumber, byte[] data,
+                                                        S3Checksums.Checksum checksum, int attempt) {
+        UploadPartRequest uploadPartRequest = UploadPartRequest.builder()
+                                                               .bucket(bucketName)
+                                                               .key(key)
+                                                               .uploadId(uploadId)
+                                                               .partNumber(partNumber)
+                                                               .contentLength((long) data.length)
+                                                               .checksumCRC32C(checksum.crc32c())
+                                                               .checksumSHA256(checksum.sha256())
+                                                               .build();
+        return this.s3AsyncClient.uploadPart(uploadPartRequest, AsyncRequestBody.fromBytesUnsafe(data))
+                                 .thenApply(response -> CompletedPart.builder()
+                                                                     .partNumber(partNumber)
+                                                                     .eTag(response.eTag())
+                                                                     .checksumCRC32C(checksum.crc32c())
+                                                                     .checksumSHA256(checksum.sha256())
+                                                                     .build())
+                                 .exceptionallyCompose(throwable -> {
+                                     if (attempt >= partRetries) {
+                                         return CompletableFuture.failedFuture(throwable);
+                                     }
+                                     Executor delayed = CompletableFuture.delayedExecutor(retryBackoffMillis << attempt, TimeUnit.MILLISECONDS);
+                                     return CompletableFuture.supplyAsync(() -> attempt + 1, delayed)
+                                                             .thenCompose(nextAttempt -> uploadPart(bucketName, key, uploadId, partNumber, data, checksum, nextAttempt));
+                                 });
+    }
+
+    /**
+     * Grows the configured part size when needed so the object fits within the S3 part count limit.
+     */
+    int partSizeFor(long contentLength) {
+        long size = Math.max(partSize, MIN_PART_SIZE);
+        long minimumForLimit = (contentLength + MAX_PARTS - 1) / MAX_PARTS;
+        return (int) Math.min(Math.max(size, minimumForLimit), Integer.MAX_VALUE - 8);
+    }
+
+    private void abort(String bucketName, String key, String uploadId) {
+        try {
+            this.s3AsyncClient.abortMultipartUpload(builder -> builder.bucket(bucketName).key(key).uploadId(uploadId)).join();
+        } catch (CompletionException e) {
+            // The original failure is more relevant to the caller than the abort failure.
+        }
+    }
+
+    private static void acquire(Semaphore semaphore) throws IOException {
+        try {
+            semaphore.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for an upload slot", e);
+        }
+    }
+
+    /**
+     * Waits for a request that is not part of an upload in progress, failing like the upload would.
+     */
+    private static <T> T join(String key, CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw failure(key, e);
+        }
+    }
+
+    /**
+     * Content rejected by its check and errors answered by S3 (with the status callers map) are reported as such;
+     * any other failure as a failed upload.
+     */
+    private static RuntimeException failure(String key, Exception e) {
+        Throwable cause = rootCause(e);
+        if (cause instanceof ChecksumMismatchException checksumMismatchException) {
+            return checksumMismatchException;
+        }
+        if (cause instanceof SdkServiceException serviceException) {
+            return serviceException;
+        }
+        return SdkClientException.create("Multipart upload of " + key + " failed: " + cause.getMessage(), cause);
+    }
+
+    private static Throwable rootCause(Throwable throwable) {
+        Throwable cause = throwable;
+        while (cause instanceof CompletionException && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+}
@@ -0,0 +1,298 @@
+package com.s3.api.service;
+
+import com.s3.api.config.S3Config;
+import com.s3.api.metrics.S3Metrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.FileTransformerConfiguration;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.ChecksumMode;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+/**
+ * Download engine for S3 objects.
+ * Small objects are streamed straight to disk. Large objects are split into byte ranges that are fetched
+ * concurrently through the S3AsyncClient and written into a preallocated file with positional writes,
+ * so peak memory is bounded by (parallelism x range size) instead of the object size.
+ * Compressed objects (stored with a gzip or zstd Content-Encoding) are decompressed while they are written.
+ * Objects stored with a CRC32C or SHA-256 checksum are checked against it while they are written: streamed objects
+ * as they stream to disk (before decompression for compressed ones), and ranged downloads of whole-object checksums
+ * as their ranges are written, in object order. Only ranged downloads of composite checksums read the file back.
+ * The bytes received are counted in {@code s3.transfer.bytes} once the object is downloaded.
+ */
+@Component
+public class S3RangedDownloader {
+
+    // Objects larger than this size (in bytes) are downloaded as parallel byte ranges.
+    @Value("${s3.download.threshold:16777216}")
+    private long threshold;
+
+    // Size (in bytes) of each downloaded range.
+    @Value("${s3.download.range-size:8388608}")
+    private long rangeSize;
+
+    // Maximum number of ranges being downloaded at the same time for a single object.
+    @Value("${s3.download.parallelism:8}")
+    private int parallelism;
+
+    // Autowires the S3AsyncClient bean for concurrent range downloads.
+    @Autowired
+    private S3AsyncClient s3AsyncClient;
+
+    // Autowires the S3 metrics, to time writes to the local disk apart from the network transfer and count the bytes received.
+    @Autowired
+    private S3Metrics metrics;
+
+    // Autowires the checksums downloads are checked against.
+    @Autowired
+    private S3Checksums checksums;
+
+    /**
+     * Downloads an object into the given file, replacing it if it already exists.
+     *
+     * @param bucketName The name of the bucket from which to download the object.
+     * @param key        The key (path) of the object in the bucket.
+     * @param target     The file to write the object to.
+     * @throws IOException If the object cannot be written to the file, or does not match its checksum.
+     */
+    public void download(String bucketName, String key, Path target) throws IOException {
+        boolean verify = checksums.verifiesDownloads();
+        HeadObjectResponse head = join(this.s3AsyncClient.headObject(builder -> builder.bucket(bucketName)
+                                                                                      .key(key)
+                                                                                      .checksumMode(verify ? ChecksumMode.ENABLED : null)));
+        long size = head.contentLength();
+        S3Checksums.Checksum expected = verify ? S3Checksums.stored(head.checksumCRC32C(), head.checksumSHA256()) : S3Checksums.Checksum.NONE;
+        LongSupplier partSize = () -> this.s3AsyncClient.headObject(builder -> builder.bucket(bucketName).key(key).partNumber(1).ifMatch(head.eTag()))
+                                                        .join()
+                                                        .contentLength();
+
+        try {
+            if (S3ContentEncoding.Encoding.of(head.contentEncoding()) != null) {
+                downloadDecoded(bucketName, key, head, expected, partSize, target);
+                metrics.recordBytes("download", bucketName, size);
+                return;
+            }
+            if (size <= threshold) {
+                // Small objects are streamed to disk as they arrive, pinned to the ETag seen by the HEAD request.
+                GetObjectRequest getObjectRequest = GetObjectRequest.builder()
+                                                                    .bucket(bucketName)
+                                                                    .key(key)
+                                                                    .ifMatch(head.eTag())
+                                                                    .overrideConfiguration(S3Config.STREAMING_CALL)
+                                                                    .build();
+                if (expected.algorithm() == null) {
+                    join(this.s3AsyncClient.getObject(getObjectRequest,
+                                                      AsyncResponseTransformer.toFile(target, FileTransformerConfiguration.defaultCreateOrReplaceExisting())));
+                } else {
+                    try (InputStream object = join(this.s3AsyncClient.getObject(getObjectRequest, AsyncResponseTransformer.toBlockingInputStream()));
+                         InputStream verified = S3Checksums.verifying(object, expected, partSize, key)) {
+                        Files.copy(verified, target, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                }
+            } else if (expected.parts() == 0) {
+                S3Checksums.Verifier verifier = expected.algorithm() != null ? S3Checksums.verifier(expected, partSize, key) : null;
+                downloadRanges(bucketName, key, head.eTag(), size, target, verifier);
+                if (verifier != null) {
+                    verifier.verify();
+                }
+            } else {
+                downloadRanges(bucketName, key, head.eTag(), size, target, null);
+                // A composite checksum is made of part checksums, and the parts S3 stored need not line up with the
+                // ranges: the file is read back once written, so the parts are checksummed in order.
+                try (InputStream in = S3Checksums.verifying(Files.newInputStream(target), expected, partSize, key)) {
+                    in.transferTo(OutputStream.nullOutputStream());
+                }
+            }
+            metrics.recordBytes("download", bucketName, size);
+        } catch (IOException | RuntimeException e) {
+            // Do not leave a partially written file behind.
+            Files.deleteIfExists(target);
+            throw e;
+        }
+    }
+
+    /**
+     * Streams a compressed object through its decompressor to disk. Ranges of compressed content cannot be
+     * decompressed independently, so the object is read in a single request. The checksum covers the stored,
+     * compressed content, so it is checked before decompression.
+     */
+    private void downloadDecoded(String bucketName, String key, HeadObjectResponse head, S3Checksums.Checksum expected, LongSupplier partSize,
+                                 Path target) throws IOException {
+        GetObjectRequest getObjectRequest = GetObjectRequest.builder()
+                                                            .bucket(bucketName)
+                                                            .key(key)
+                                                            .ifMatch(head.eTag())
+                                                            .overrideConfiguration(S3Config.STREAMING_CALL)
+                                                            .build();
+        try (ResponseInputStream<GetObjectResponse> object = join(this.s3AsyncClient.getObject(getObjectRequest, AsyncResponseTransformer.toBlockingInputStream()));
+             InputStream verified = S3Checksums.verifying(object, expected, partSize, key);
+             InputStream decoded = S3ContentEncoding.decode(verified, head.contentEncoding())) {
+            Files.copy(decoded, target, StandardCopyOption.REPLACE_EXISTING);
+            // The decompressor may stop at the end of its frame: read what is left so the checksum covers all of it.
+            verified.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+
+    /**
+     * Fetches the object range by range. The semaphore keeps at most {@code parallelism} ranges in memory.
+     * Given a verifier, the ranges are also checksummed in object order once written.
+     */
+    private void downloadRanges(String bucketName, String key, String eTag, long size, Path target, S3Checksums.Verifier verifier) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(target.toFile(), "rw")) {
+            // Preallocate the file so each range can be written at its own position as soon as it arrives.
+            file.setLength(size);
+            FileChannel channel = file.getChannel();
+
+            Semaphore inFlight = new Semaphore(parallelism);
+            OrderedChecksum checksum = verifier != null ? new OrderedChecksum(verifier, inFlight) : null;
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+
+            for (long start = 0; start < size && failure.get() == null; start += rangeSize) {
+                acquire(inFlight);
+                long position = start;
+                long end = Math.min(start + rangeSize, size) - 1;
+
+                // Every range is pinned to the same ETag so a concurrent overwrite cannot mix two versions.
+                GetObjectRequest getObjectRequest = GetObjectRequest.builder()
+                                                                    .bucket(bucketName)
+                                                                    .key(key)
+                                                                    .range("bytes=" + start + "-" + end)
+                                                                    .ifMatch(eTag)
+                                                                    .build();
+                CompletableFuture<Void> future = this.s3AsyncClient.getObject(getObjectRequest, AsyncResponseTransformer.toBytes())
+                                                                   .thenAccept(bytes -> {
+                                                                       ByteBuffer range = bytes.asByteBuffer();
+                                                                       write(channel, range.duplicate(), position);
+                                                                       if (checksum != null) {
+                                                                           checksum.written(position, range);
+                                                                       }
+                                                                   });
+                future.whenComplete((ignored, throwable) -> {
+                    if (throwable != null) {
+                        failure.compareAndSet(null, throwable);
+                        if (checksum != null) {
+                            checksum.failed();
+                        }
+                    }
+                    // A checksummed range releases its slot once its turn to be checksummed came.
+                    if (throwable != null || checksum == null) {
+                        inFlight.release();
+                    }
+                });
+                futures.add(future);
+            }
+
+            join(CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)));
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Feeds the ranges to a verifier in object order, whatever order they arrive in. A range keeps its download slot
+     * until it is checksummed, so no more than {@code parallelism} ranges are held in memory.
+     */
+    private static final class OrderedChecksum {
+        private final S3Checksums.Verifier verifier;
+        private final Semaphore inFlight;
+        private final TreeMap<Long, ByteBuffer> pending = new TreeMap<>();
+        private long next;
+        private boolean failed;
+
+        private OrderedChecksum(S3Checksums.Verifier verifier, Semaphore inFlight) {
+            this.verifier = verifier;
+            this.inFlight = inFlight;
+        }
+
+        synchronized void written(long position, ByteBuffer range) {
+            if (failed) {
+                inFlight.release();
+                return;
+            }
+            pending.put(position, range);
+            while (!pending.isEmpty() && pending.firstKey() == next) {
+                ByteBuffer buffer = pending.pollFirstEntry().getValue();
+                next += buffer.remaining();
+                verifier.update(buffer);
+                inFlight.release();
+            }
+        }
+
+        /**
+         * A range failed, so the ranges after it will never be checksummed: their slots are released.
+         */
+        synchronized void failed() {
+            failed = true;
+            inFlight.release(pending.size());
+            pending.clear();
+        }
+    }
+
+    private void write(FileChannel channel, ByteBuffer buffer, long position) {
+        long start = System.nanoTime();
+        try {
+            long offset = position;
+            while (buffer.hasRemaining()) {
+                offset += channel.write(buffer, offset);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            metrics.recordLocalWrite("download", System.nanoTime() - start);
+        }
+    }
+
+    private static void acquire(Semaphore semaphore) throws IOException {
+        try {
+            semaphore.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a download slot", e);
+        }
+    }
+
+    /**
+     * Waits for a future, unwrapping I/O failures so callers see them as IOException.
+     */
+    private static <T> T join(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException uncheckedIOException) {
+                throw uncheckedIOException.getCause();
+            }
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+}
@@ -1,9 +1,23 @@
 package com.s3.api.service;
 
+import com.s3.api.cache.BucketMetadataCache;
+import com.s3.api.cache.BucketMetadataCache.BucketStatus;
+import com.s3.api.cache.PresignedUrlCache;
+import com.s3.api.cache.S3DedupIndex;
+import com.s3.api.cache.S3ObjectCache;
+import com.s3.api.config.S3Config;
+import com.s3.api.dto.BulkJobEvent;
+import com.s3.api.dto.PresignRequest;
+import com.s3.api.dto.PresignResult;
+import com.s3.api.metrics.S3Metrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
-import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.*;
 import software.amazon.awssdk.services.s3.presigner.S3Presigner;
@@ -12,14 +26,26 @@ import software.amazon.awssdk.services.s3.presigner.model.PresignedGetObjectRequ
 import software.amazon.awssdk.services.s3.presigner.model.PresignedPutObjectRequest;
 import software.amazon.awssdk.services.s3.presigner.model.PutObjectPresignRequest;
 
-import java.io.File;
-import java.io.FileOutputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * Service implementation for interacting with AWS S3.
@@ -29,6 +55,9 @@ import java.util.List;
 @Service
 public class S3ServiceIpml implements IS3Service{
 
+    // A single CopyObject request copies at most 5GB.
+    private static final long MAX_COPY_OBJECT_SIZE = 5L * 1024 * 1024 * 1024;
+
     // Injects the destination folder for downloaded files from the application properties file.
     @Value("${spring.destination.folder}")
     private String destinationFolder;
@@ -37,6 +66,10 @@ public class S3ServiceIpml implements IS3Service{
     @Autowired
     private S3Client s3Client;
 
+    // Autowires the S3 metrics, to time local disk writes and count the bytes uploads actually send.
+    @Autowired
+    private S3Metrics metrics;
+
     @Autowired
     private S3Presigner presigner;
     @Autowired
@@ -46,6 +79,63 @@ public class S3ServiceIpml implements IS3Service{
     //@Autowired
     //private S3AsyncClient s3AsyncClient;
 
+    // Autowires the multipart engine used for large uploads.
+    @Autowired
+    private S3MultipartUploader multipartUploader;
+
+    // Autowires the compression policy and codecs.
+    @Autowired
+    private S3ContentEncoding contentEncoding;
+
+    // Autowires the checksums sent with uploads.
+    @Autowired
+    private S3Checksums checksums;
+
+    // Autowires the index of uploaded content, to skip uploads of content a bucket already holds.
+    @Autowired
+    private S3DedupIndex dedupIndex;
+
+    // Autowires the ranged download engine.
+    @Autowired
+    private S3RangedDownloader rangedDownloader;
+
+    // Autowires the bulk delete and copy engine.
+    @Autowired
+    private S3BulkOperations bulkOperations;
+
+    // Autowires the local disk cache of downloaded objects.
+    @Autowired
+    private S3ObjectCache objectCache;
+
+    // Autowires the cache of presigned URLs.
+    @Autowired
+    private PresignedUrlCache presignedUrlCache;
+
+    // Autowires the cache of bucket existence and of the bucket list.
+    @Autowired
+    private BucketMetadataCache bucketCache;
+
+    // Number of threads signing batch presign requests (0 means one per available processor).
+    @Value("${s3.presign.batch.parallelism:0}")
+    private int batchParallelism;
+
+    // Number of batch presign requests signed together before their results are handed out.
+    @Value("${s3.presign.batch.chunk-size:1024}")
+    private int batchChunkSize;
+
+    // Pool signing batch presign requests; S3Presigner is thread-safe.
+    private ForkJoinPool presignPool;
+
+    @PostConstruct
+    void initPresignPool() {
+        presignPool = new ForkJoinPool(batchParallelism > 0 ? batchParallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    @PreDestroy
+    void shutdownPresignPool() {
+        presignPool.shutdown();
+    }
+
     /**
      * Creates a new S3 bucket with the specified name.
      *
@@ -55,32 +145,58 @@ public class S3ServiceIpml implements IS3Service{
     @Override
     public String createBucket(String bucketName) {
         CreateBucketResponse response = this.s3Client.createBucket(bucketBuilder -> bucketBuilder.bucket(bucketName));
+        bucketCache.invalidate(bucketName);
         return "Bucket created in location: " + response.location();
     }
 
     /**
-     * Checks if a bucket with the specified name exists.
+     * Checks if a bucket with the specified name exists, through the bucket metadata cache.
      *
      * @param bucketName The name of the bucket to check.
      * @return A message indicating whether the bucket exists or not.
+     * @throws software.amazon.awssdk.core.exception.SdkException If S3 could not tell, e.g. when throttled or unreachable.
      */
     @Override
     public String checkIfBucketExists(String bucketName) {
+        return switch (bucketCache.status(bucketName, () -> headBucket(bucketName))) {
+            case EXISTS -> "Bucket does exist: " + bucketName;
+            case FORBIDDEN -> "Bucket does exist but access is denied: " + bucketName;
+            case NOT_FOUND -> "Bucket does not exist: " + bucketName;
+        };
+    }
+
+    /**
+     * Asks S3 whether a bucket exists. Only answers that say something about the bucket are returned;
+     * any other failure (throttling, server or network errors) is thrown so it is not mistaken for a missing bucket.
+     */
+    private BucketStatus headBucket(String bucketName) {
         try {
             this.s3Client.headBucket(headBucketBuilder -> headBucketBuilder.bucket(bucketName));
-            return "Bucket does exist: " + bucketName;
+            return BucketStatus.EXISTS;
+        } catch (NoSuchBucketException exception) {
+            return BucketStatus.NOT_FOUND;
         } catch (S3Exception exception) {
-            return "Bucket does not exist: " + bucketName;
+            if (exception.statusCode() == 404) {
+                return BucketStatus.NOT_FOUND;
+            }
+            if (exception.statusCode() == 403) {
+                return BucketStatus.FORBIDDEN;
+            }
+            throw exception;
         }
     }
 
     /**
-     * Retrieves a list of all bucket names in the S3 account.
+     * Retrieves a list of all bucket names in the S3 account, through the bucket metadata cache.
      *
      * @return A list of bucket names, or an empty list if no buckets exist.
      */
     @Override
     public List<String> getAllBuckets() {
+        return bucketCache.buckets(this::listBuckets);
+    }
+
+    private List<String> listBuckets() {
         ListBucketsResponse bucketsResponse = this.s3Client.listBuckets();
         if(bucketsResponse.hasBuckets()) {
             return bucketsResponse.buckets()
@@ -94,8 +210,38 @@ public class S3ServiceIpml implements IS3Service{
         }
     }
 
+    /**
+     * Lists the objects of a bucket through the ListObjectsV2 paginator.
+     * Pages are fetched lazily, one at a time, and handed to the consumer as they arrive,
+     * so memory does not grow with the number of keys in the bucket.
+     *
+     * @param bucketName        The name of the bucket to list.
+     * @param prefix            Only keys starting with this prefix are listed, if set.
+     * @param delimiter         Keys sharing a prefix up to this delimiter are rolled up into common prefixes, if set.
+     * @param startAfter        Only keys after this one are listed, if set.
+     * @param continuationToken Resumes a previous listing from the page this token points to, if set.
+     * @param maxKeys           The maximum number of keys per page, if set.
+     * @param pageConsumer      Receives each listing page in order.
+     */
+    @Override
+    public void listObjects(String bucketName, String prefix, String delimiter, String startAfter, String continuationToken,
+                            Integer maxKeys, Consumer<ListObjectsV2Response> pageConsumer) {
+        ListObjectsV2Request listObjectsRequest = ListObjectsV2Request.builder()
+                                                                      .bucket(bucketName)
+                                                                      .prefix(prefix)
+                                                                      .delimiter(delimiter)
+                                                                      .startAfter(startAfter)
+                                                                      .continuationToken(continuationToken)
+                                                                      .maxKeys(maxKeys)
+                                                                      .build();
+        this.s3Client.listObjectsV2Paginator(listObjectsRequest).forEach(pageConsumer);
+    }
+
     /**
      * Uploads a file to the specified S3 bucket.
+     * Files above the multipart threshold are uploaded in parallel parts. Files are stored byte for byte, without
+     * compression, so directory syncs can compare their size and ETag with the local copy. With deduplication on,
+     * the file is hashed first, and content a bucket already holds is copied server-side instead of being sent again.
      *
      * @param bucketName   The name of the bucket to upload the file to.
      * @param key          The key (path) under which the file will be stored in the bucket.
@@ -104,18 +250,265 @@ public class S3ServiceIpml implements IS3Service{
      */
     @Override
     public Boolean uploadFile(String bucketName, String key, Path fileLocation) {
+        long fileSize = fileSize(fileLocation);
+        presignedUrlCache.invalidate(bucketName, key);
+        String sha256 = null;
+        if (dedupIndex.isEnabled()) {
+            try {
+                sha256 = S3Checksums.sha256(Files.newInputStream(fileLocation));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read file: " + fileLocation, e);
+            }
+            if (storeDuplicate(bucketName, key, sha256, fileSize)) {
+                return true;
+            }
+        }
+
+        // Large files go through the parallel multipart engine.
+        if (multipartUploader.shouldUpload(fileSize)) {
+            // The file is hashed again while it is sent, so a file modified since the first pass is not indexed.
+            ContentDigest contentDigest = sha256 == null ? null : new ContentDigest(sha256);
+            try (InputStream inputStream = Files.newInputStream(fileLocation)) {
+                String eTag = multipartUploader.upload(bucketName, key, contentDigest == null ? inputStream : contentDigest.wrap(inputStream), fileSize,
+                                                       contentDigest == null ? null : () -> contentDigest.check(key));
+                indexContent(sha256, fileSize, bucketName, key, eTag);
+                metrics.recordBytes("upload", bucketName, fileSize);
+                return eTag != null;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read file: " + fileLocation, e);
+            }
+        }
 
+        // S3 checks the SHA-256 of the first pass, if any, and the configured checksum otherwise.
         PutObjectRequest putObjectRequest = PutObjectRequest.builder()
                                                             .bucket(bucketName)
                                                             .key(key)
+                                                            .checksumAlgorithm(sha256 == null ? checksums.algorithm() : null)
+                                                            .checksumSHA256(sha256)
+                                                            .overrideConfiguration(S3Config.STREAMING_CALL)
                                                             .build();
         PutObjectResponse putObjectResponse = this.s3Client.putObject(putObjectRequest, fileLocation);
+        indexContent(sha256, fileSize, bucketName, key, putObjectResponse.eTag());
+        metrics.recordBytes("upload", bucketName, fileSize);
         //return putObjectResponse.sdkHttpResponse().statusCode() == 200;
         return putObjectResponse.sdkHttpResponse().isSuccessful();
     }
 
+    /**
+     * Uploads the content of a stream to the specified S3 bucket.
+     * The stream is piped directly into the PutObject request, so the payload is never held in memory as a whole.
+     * Streams above the multipart threshold are uploaded in parallel parts. Content matching the compression policy
+     * is compressed on the fly and stored with its Content-Encoding and original size.
+     *
+     * @param bucketName    The name of the bucket to upload the content to.
+     * @param key           The key (path) under which the content will be stored in the bucket.
+     * @param inputStream   The stream providing the object content.
+     * @param contentLength The exact number of bytes the stream will provide.
+     * @return A boolean indicating whether the upload was successful.
+     */
+    @Override
+    public Boolean uploadFile(String bucketName, String key, InputStream inputStream, long contentLength) {
+        return uploadFile(bucketName, key, inputStream, contentLength, null);
+    }
+
+    /**
+     * Uploads the content of a stream whose SHA-256 checksum the caller may know up front.
+     * The content is hashed while it is sent and checked against that checksum before the object is stored. With
+     * deduplication on, content a bucket already holds is copied server-side without reading the stream, and the
+     * checksum of every uploaded stream is indexed for the next uploads of the same content.
+     *
+     * @param bucketName    The name of the bucket to upload the content to.
+     * @param key           The key (path) under which the content will be stored in the bucket.
+     * @param inputStream   The stream providing the object content.
+     * @param contentLength The exact number of bytes the stream will provide.
+     * @param sha256        The base64 SHA-256 checksum of the content, if known.
+     * @return A boolean indicating whether the upload was successful.
+     * @throws ChecksumMismatchException If the content does not match the checksum; nothing is stored then.
+     */
+    @Override
+    public Boolean uploadFile(String bucketName, String key, InputStream inputStream, long contentLength, String sha256) {
+        presignedUrlCache.invalidate(bucketName, key);
+        if (sha256 != null && dedupIndex.isEnabled() && storeDuplicate(bucketName, key, sha256, contentLength)) {
+            return true;
+        }
+
+        ContentDigest contentDigest = sha256 != null || dedupIndex.isEnabled() ? new ContentDigest(sha256) : null;
+        InputStream content = contentDigest == null ? inputStream : contentDigest.wrap(inputStream);
+        Runnable contentCheck = contentDigest == null ? null : () -> contentDigest.check(key);
+
+        String eTag;
+        S3ContentEncoding.Encoding encoding = contentEncoding.encodingFor(key, contentLength);
+        if (encoding != null) {
+            eTag = uploadEncoded(bucketName, key, content, contentLength, encoding, contentCheck);
+        } else if (multipartUploader.shouldUpload(contentLength)) {
+            // Large streams go through the parallel multipart engine.
+            eTag = multipartUploader.upload(bucketName, key, content, contentLength, contentCheck);
+            metrics.recordBytes("upload", bucketName, contentLength);
+        } else {
+            // S3 checks the announced SHA-256 itself, if any, and the configured checksum otherwise.
+            PutObjectRequest putObjectRequest = PutObjectRequest.builder()
+                                                                .bucket(bucketName)
+                                                                .key(key)
+                                                                .contentLength(contentLength)
+                                                                .checksumAlgorithm(sha256 == null ? checksums.algorithm() : null)
+                                                                .checksumSHA256(sha256)
+                                                                .overrideConfiguration(S3Config.STREAMING_CALL)
+                                                                .build();
+            PutObjectResponse putObjectResponse = this.s3Client.putObject(putObjectRequest, RequestBody.fromInputStream(content, contentLength));
+            eTag = putObjectResponse.sdkHttpResponse().isSuccessful() ? putObjectResponse.eTag() : null;
+            if (contentCheck != null) {
+                contentCheck.run();
+            }
+            metrics.recordBytes("upload", bucketName, contentLength);
+        }
+        if (contentDigest != null) {
+            indexContent(contentDigest.value(), contentLength, bucketName, key, eTag);
+        }
+        return eTag != null;
+    }
+
+    /**
+     * Compresses a stream while it is uploaded. The compressed size is only known at the end, so the content goes
+     * through the multipart engine, which stores it with a single PutObject when it fits in one part. The compressed
+     * bytes are counted as they are sent.
+     */
+    private String uploadEncoded(String bucketName, String key, InputStream inputStream, long contentLength, S3ContentEncoding.Encoding encoding,
+                                 Runnable contentCheck) {
+        MediaType contentType = contentEncoding.contentTypeOf(key);
+        try (CountingInputStream encoded = new CountingInputStream(contentEncoding.encode(inputStream, encoding))) {
+            String eTag = multipartUploader.upload(bucketName, key, encoded, contentLength, contentType == null ? null : contentType.toString(),
+                                                   encoding.token(), Map.of(S3ContentEncoding.ORIGINAL_SIZE, Long.toString(contentLength)), contentCheck);
+            metrics.recordBytes("upload", bucketName, encoded.count());
+            return eTag;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not compress " + key, e);
+        }
+    }
+
+    /**
+     * Stores content a bucket already holds without transferring it: nothing is sent when the key itself holds it,
+     * otherwise the indexed object is copied server-side, along with its metadata and encoding. Both requests are
+     * pinned to the indexed ETag, so an object changed since it was indexed is never taken for the content: its entry
+     * is dropped and the caller uploads the content instead.
+     *
+     * @return True if the key now holds the content.
+     */
+    private boolean storeDuplicate(String bucketName, String key, String sha256, long size) {
+        S3DedupIndex.Entry entry = dedupIndex.find(sha256, size);
+        if (entry == null) {
+            return false;
+        }
+        boolean sameObject = entry.bucketName().equals(bucketName) && entry.key().equals(key);
+        if (!sameObject && size > MAX_COPY_OBJECT_SIZE) {
+            return false;
+        }
+        try {
+            if (sameObject) {
+                this.s3Client.headObject(builder -> builder.bucket(bucketName).key(key).ifMatch(entry.eTag()));
+            } else {
+                CopyObjectRequest copyObjectRequest = CopyObjectRequest.builder()
+                                                                       .sourceBucket(entry.bucketName())
+                                                                       .sourceKey(entry.key())
+                                                                       .copySourceIfMatch(entry.eTag())
+                                                                       .destinationBucket(bucketName)
+                                                                       .destinationKey(key)
+                                                                       .checksumAlgorithm(checksums.algorithm())
+                                                                       .build();
+                this.s3Client.copyObject(copyObjectRequest);
+            }
+        } catch (S3Exception e) {
+            if (e.statusCode() == 404 || e.statusCode() == 412) {
+                dedupIndex.forget(sha256, size, entry);
+            }
+            // Any other refusal, such as a copy from a bucket that cannot be read, falls back to an upload.
+            return false;
+        }
+        dedupIndex.hit(size);
+        return true;
+    }
+
+    /**
+     * Indexes uploaded content for the next uploads of the same content, when deduplication is on.
+     */
+    private void indexContent(String sha256, long size, String bucketName, String key, String eTag) {
+        if (dedupIndex.isEnabled() && sha256 != null && eTag != null) {
+            dedupIndex.record(sha256, size, bucketName, key, eTag);
+        }
+    }
+
+    /**
+     * SHA-256 of an upload, computed while the upload reads its content, and checked against the checksum announced for it.
+     */
+    private static final class ContentDigest {
+        private final MessageDigest digest = S3Checksums.sha256();
+        private final String expected;
+        private String value;
+
+        private ContentDigest(String expected) {
+            this.expected = expected;
+        }
+
+        InputStream wrap(InputStream inputStream) {
+            return new DigestInputStream(inputStream, digest);
+        }
+
+        String value() {
+            if (value == null) {
+                value = Base64.getEncoder().encodeToString(digest.digest());
+            }
+            return value;
+        }
+
+        void check(String key) {
+            if (expected != null && !expected.equals(value())) {
+                throw new ChecksumMismatchException("Content of " + key + " does not match its SHA-256 checksum " + expected);
+            }
+        }
+    }
+
+    /**
+     * Counts the bytes read from a stream.
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        private CountingInputStream(InputStream inputStream) {
+            super(inputStream);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = super.read();
+            if (read >= 0) {
+                count++;
+            }
+            return read;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            int read = super.read(bytes, offset, length);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        long count() {
+            return count;
+        }
+    }
+
     /**
      * Downloads a file from the specified S3 bucket.
+     * The object is streamed to disk, in parallel byte ranges when it is large, without holding it in memory.
      *
      * @param bucketName The name of the bucket from which to download the file.
      * @param key        The key (path) of the file in the bucket.
@@ -123,15 +516,26 @@ public class S3ServiceIpml implements IS3Service{
      */
     @Override
     public void downloadFile(String bucketName, String key) throws IOException {
-        // Build the request to download the file.
-        GetObjectRequest getObjectRequest = GetObjectRequest.builder()
-                                                            .bucket(bucketName)
-                                                            .key(key)
-                                                            .build();
+        // Construct the full file path for saving the downloaded file, and ensure its parent directory exists.
+        Path filePath = downloadPath(destinationFolder, key);
+        Files.createDirectories(filePath.getParent());
 
-        // Retrieve the file as a byte array.
-        ResponseBytes<GetObjectResponse> objectBytes = this.s3Client.getObjectAsBytes(getObjectRequest);
+        // Stream the object to the local filesystem, through the local object cache if it is enabled.
+        try {
+            if (objectCache.isEnabled()) {
+                copyFromCache(bucketName, key, filePath);
+            } else {
+                rangedDownloader.download(bucketName, key, filePath);
+            }
+        } catch (IOException e) {
+            throw new IOException("Could not download file: " + e.getMessage(), e);
+        }
+    }
 
+    /**
+     * Resolves where a downloaded object is saved: its file name (the last segment of the key) in the destination folder.
+     */
+    static Path downloadPath(String destinationFolder, String key) {
         // Extract the file name from the key.
         String fileName;
         if(key.contains("/")) {
@@ -139,27 +543,123 @@ public class S3ServiceIpml implements IS3Service{
         } else {
             fileName = key;
         }
+        return Paths.get(destinationFolder, fileName);
+    }
 
-        // Construct the full file path for saving the downloaded file.
-        //String filePath = destinationFolder + File.separator + fileName;
-        //String filePath = Paths.get(destinationFolder, fileName).toFile().getAbsolutePath();
-        String filePath = Paths.get(destinationFolder, fileName).toString();
-
-        // Ensure the parent directory exists.
-        File file = new File(filePath);
-        file.getParentFile().mkdir();
+    /**
+     * Copies an object from the local object cache, which only transfers it from S3 when it changed.
+     * Objects too large for the cache are downloaded directly.
+     */
+    private void copyFromCache(String bucketName, String key, Path filePath) throws IOException {
+        Path cached = objectCache.get(bucketName, key);
+        if (cached == null) {
+            rangedDownloader.download(bucketName, key, filePath);
+            return;
+        }
+        try {
+            copyLocally(cached, objectCache.contentEncoding(bucketName, key), filePath);
+        } catch (NoSuchFileException e) {
+            // The cached copy was evicted between lookup and copy: fetch it again.
+            cached = objectCache.get(bucketName, key);
+            if (cached == null) {
+                rangedDownloader.download(bucketName, key, filePath);
+                return;
+            }
+            copyLocally(cached, objectCache.contentEncoding(bucketName, key), filePath);
+        }
+    }
 
-        // Write the file to the local filesystem.
-        try(FileOutputStream fos = new FileOutputStream(file)) {
-            fos.write(objectBytes.asByteArray());
-        } catch (IOException e) {
-            throw new IOException("Could not download file: " + e.getCause());
+    /**
+     * Copies a cached object, decompressing it if it is stored compressed.
+     */
+    private void copyLocally(Path source, String encoding, Path target) throws IOException {
+        long start = System.nanoTime();
+        try (InputStream in = S3ContentEncoding.decode(Files.newInputStream(source), encoding)) {
+            Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            metrics.recordLocalWrite("cache-copy", System.nanoTime() - start);
         }
     }
 
+    /**
+     * Opens a stream on an object without staging it on disk.
+     * Range and conditional headers are passed through to GetObject, so partial and unchanged
+     * content is served by S3 without transferring the full object.
+     *
+     * @param bucketName      The name of the bucket containing the object.
+     * @param key             The key (path) of the object in the bucket.
+     * @param range           An optional HTTP byte range, e.g. "bytes=0-1023".
+     * @param ifNoneMatch     An optional ETag; S3 answers 304 if the object still has it.
+     * @param ifModifiedSince An optional date; S3 answers 304 if the object was not modified since.
+     * @return The object content stream, along with its response metadata. The caller must close it.
+     */
+    @Override
+    public ResponseInputStream<GetObjectResponse> getObject(String bucketName, String key, String range, String ifNoneMatch, Instant ifModifiedSince) {
+        GetObjectRequest getObjectRequest = GetObjectRequest.builder()
+                                                            .bucket(bucketName)
+                                                            .key(key)
+                                                            .range(range)
+                                                            .ifNoneMatch(ifNoneMatch)
+                                                            .ifModifiedSince(ifModifiedSince)
+                                                            .overrideConfiguration(S3Config.STREAMING_CALL)
+                                                            .build();
+        return this.s3Client.getObject(getObjectRequest);
+    }
+
     // Create presigned URL that gives access to a User or App so temporary objects can be uploaded with no credentials needed
     @Override
     public String generatePresignedUploadUrl(String bucketName, String key, Duration expiration) {
+        // Hand out a cached URL for hot keys instead of signing again.
+        return presignedUrlCache.get(PresignedUrlCache.Operation.PUT, bucketName, key, expiration,
+                                     () -> presignUploadUrl(bucketName, key, expiration));
+    }
+
+    // Create presigned URL to give temporary access for files download
+    @Override
+    public String generatePresignedDownloadUrl(String bucketName, String key, Duration expiration) {
+        // Hand out a cached URL for hot keys instead of signing again.
+        return presignedUrlCache.get(PresignedUrlCache.Operation.GET, bucketName, key, expiration,
+                                     () -> presignDownloadUrl(bucketName, key, expiration));
+    }
+
+    /**
+     * Generates presigned URLs for a batch of objects.
+     * The batch is signed chunk by chunk on a dedicated pool, so signing is spread across cores
+     * while results are handed to the consumer in request order as soon as their chunk is done.
+     * A request that cannot be signed yields a result carrying the error instead of failing the batch.
+     *
+     * @param requests       The objects and operations to sign URLs for.
+     * @param resultConsumer Receives one result per request, in request order.
+     */
+    @Override
+    public void generatePresignedUrls(List<PresignRequest> requests, Consumer<PresignResult> resultConsumer) {
+        for (int from = 0; from < requests.size(); from += batchChunkSize) {
+            List<PresignRequest> chunk = requests.subList(from, Math.min(from + batchChunkSize, requests.size()));
+            List<PresignResult> results = presignPool.submit(() -> chunk.parallelStream()
+                                                                        .map(this::presign)
+                                                                        .toList())
+                                                     .join();
+            results.forEach(resultConsumer);
+        }
+    }
+
+    private PresignResult presign(PresignRequest request) {
+        try {
+            if (request.bucketName() == null || request.key() == null || request.operation() == null || request.expiration() == null) {
+                throw new IllegalArgumentException("bucketName, key, operation and expiration are required");
+            }
+            Duration durationToLive = Duration.ofMinutes(request.expiration());
+            String url = switch (request.operation()) {
+                case GET -> generatePresignedDownloadUrl(request.bucketName(), request.key(), durationToLive);
+                case PUT -> generatePresignedUploadUrl(request.bucketName(), request.key(), durationToLive);
+            };
+            return new PresignResult(request.bucketName(), request.key(), request.operation(), url, null);
+        } catch (RuntimeException e) {
+            return new PresignResult(request.bucketName(), request.key(), request.operation(), null, e.getMessage());
+        }
+    }
+
+    private String presignUploadUrl(String bucketName, String key, Duration expiration) {
         // Build a PutObjectRequest to specify the bucket and key (file path) for the upload.
         PutObjectRequest putObjectRequest = PutObjectRequest.builder()
                                                             .bucket(bucketName)
@@ -182,9 +682,7 @@ public class S3ServiceIpml implements IS3Service{
         return presignedUrl.toString();
     }
 
-    // Create presigned URL to give temporary access for files download
-    @Override
-    public String generatePresignedDownloadUrl(String bucketName, String key, Duration expiration) {
+    private String presignDownloadUrl(String bucketName, String key, Duration expiration) {
         // Build a GetObjectRequest to specify the bucket and key (file path) for the download.
         GetObjectRequest getObjectRequest = GetObjectRequest.builder()
                                                             .bucket(bucketName)
@@ -206,4 +704,45 @@ public class S3ServiceIpml implements IS3Service{
         // Return the presigned URL as a string.
         return presignedUrl.toString();
     }
+
+    private static long fileSize(Path fileLocation) {
+        try {
+            return Files.size(fileLocation);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read file: " + fileLocation, e);
+        }
+    }
+
+    /**
+     * Deletes the objects under a prefix, or the objects of a key stream, in DeleteObjects batches of up to 1000 keys.
+     *
+     * @param jobId         The id of the job to resume, or null to start a new job.
+     * @param bucketName    The name of the bucket to delete from.
+     * @param prefix        The prefix of the keys to delete, when no key stream is given.
+     * @param keys          The keys to delete, or null to delete by prefix.
+     * @param eventConsumer Receives the job start, per-key failures, progress and completion.
+     * @throws IOException If the job checkpoint cannot be read or saved.
+     */
+    @Override
+    public void deleteObjects(String jobId, String bucketName, String prefix, Stream<String> keys, Consumer<BulkJobEvent> eventConsumer) throws IOException {
+        bulkOperations.delete(jobId, bucketName, prefix, keys, eventConsumer);
+    }
+
+    /**
+     * Copies the objects under a prefix, or the objects of a key stream, server-side. The data never transits through the application.
+     *
+     * @param jobId                 The id of the job to resume, or null to start a new job.
+     * @param sourceBucketName      The name of the bucket to copy from.
+     * @param sourcePrefix          The prefix of the keys to copy, when no key stream is given.
+     * @param keys                  The keys to copy, or null to copy by prefix.
+     * @param destinationBucketName The name of the bucket to copy to.
+     * @param destinationPrefix     The prefix replacing the source prefix in destination keys.
+     * @param eventConsumer         Receives the job start, per-key failures, progress and completion.
+     * @throws IOException If the job checkpoint cannot be read or saved.
+     */
+    @Override
+    public void copyObjects(String jobId, String sourceBucketName, String sourcePrefix, Stream<String> keys,
+                            String destinationBucketName, String destinationPrefix, Consumer<BulkJobEvent> eventConsumer) throws IOException {
+        bulkOperations.copy(jobId, sourceBucketName, sourcePrefix, keys, destinationBucketName, destinationPrefix, eventConsumer);
+    }
 }
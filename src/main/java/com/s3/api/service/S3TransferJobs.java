@@ -0,0 +1,1055 @@
+package com.s3.api.service;
+
+import com.s3.api.cache.PresignedUrlCache;
+import com.s3.api.dto.TransferJobStatus;
+import com.s3.api.metrics.S3Metrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.ChecksumMode;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchUploadException;
+import software.amazon.awssdk.services.s3.model.Part;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Queue of asynchronous uploads and downloads.
+ * A submitted job is answered with its id right away and runs in the background, at most {@code maxConcurrentJobs}
+ * jobs at a time and {@code maxJobsPerBucket} per bucket; the other jobs wait in the queue in submission order.
+ * Objects are transferred in parts, {@code maxInFlightParts} at a time, and each job keeps a checkpoint on disk:
+ * the multipart upload id for uploads (S3 lists the parts it already holds), and the ranges written to the partial
+ * file for downloads. A job interrupted by a restart is queued again on startup, and a failed job can be resumed;
+ * either way, only the parts that were not transferred yet are sent again.
+ * Uploads matching the compression policy are compressed once spooled, and compressed objects are decompressed once
+ * all their ranges are downloaded, like direct uploads and downloads. Uploads carry the configured flexible checksum,
+ * computed part by part, and downloads are checked against the checksum S3 stored for their object once complete.
+ */
+@Service
+public class S3TransferJobs {
+
+    /**
+     * Which way a job transfers its object.
+     */
+    public enum Type {
+        // A spooled request body is uploaded to the bucket.
+        UPLOAD,
+        // The object is downloaded to the destination folder.
+        DOWNLOAD
+    }
+
+    /**
+     * Lifecycle of a job.
+     */
+    public enum State {
+        // Waiting for a free slot.
+        QUEUED,
+        // Transferring.
+        RUNNING,
+        // The object was transferred.
+        COMPLETED,
+        // The transfer failed; the job keeps its checkpoint and can be resumed.
+        FAILED,
+        // The job was cancelled and its partial transfer discarded.
+        CANCELLED
+    }
+
+    // Injects the destination folder, where downloaded objects are saved.
+    @Value("${spring.destination.folder}")
+    private String destinationFolder;
+
+    // Maximum number of jobs transferring at the same time.
+    @Value("${s3.transfer.max-concurrent-jobs:4}")
+    private int maxConcurrentJobs;
+
+    // Maximum number of jobs transferring to or from the same bucket at the same time.
+    @Value("${s3.transfer.max-jobs-per-bucket:2}")
+    private int maxJobsPerBucket;
+
+    // Maximum number of parts being transferred at the same time for a single job.
+    @Value("${s3.transfer.max-in-flight-parts:4}")
+    private int maxInFlightParts;
+
+    // Directory holding job checkpoints, spooled uploads and partial downloads.
+    @Value("${s3.transfer.directory:${s3.work.directory:${java.io.tmpdir}/spring-boot-s3-app}/transfer-jobs}")
+    private String directory;
+
+    // Minimum time between two checkpoint saves of a download.
+    @Value("${s3.transfer.checkpoint-interval:1s}")
+    private Duration checkpointInterval;
+
+    // Time between two progress events sent to the subscribers of a running job.
+    @Value("${s3.transfer.progress-interval:1s}")
+    private Duration progressInterval;
+
+    // How long finished jobs can still be polled.
+    @Value("${s3.transfer.retention:1h}")
+    private Duration retention;
+
+    // How long failed jobs can be resumed; past it, their spooled data, checkpoint and multipart upload are discarded.
+    @Value("${s3.transfer.failed-retention:7d}")
+    private Duration failedRetention;
+
+    // Autowires the S3Client bean, for single-request uploads and part listings.
+    @Autowired
+    private S3Client s3Client;
+
+    // Autowires the S3AsyncClient bean, to transfer the parts of a job concurrently.
+    @Autowired
+    private S3AsyncClient s3AsyncClient;
+
+    // Autowires the multipart engine, so jobs cut objects into the same parts as direct uploads.
+    @Autowired
+    private S3MultipartUploader multipartUploader;
+
+    // Autowires the cache of presigned URLs, to drop URLs of uploaded objects.
+    @Autowired
+    private PresignedUrlCache presignedUrlCache;
+
+    // Autowires the S3 metrics, to count transferred bytes.
+    @Autowired
+    private S3Metrics metrics;
+
+    // Autowires the compression policy, applied to spooled uploads.
+    @Autowired
+    private S3ContentEncoding contentEncoding;
+
+    // Autowires the checksums sent with uploads and checked on downloads.
+    @Autowired
+    private S3Checksums checksums;
+
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+
+    // Guarded by this: jobs waiting for a slot, and the slots taken overall and per bucket.
+    private final Deque<Job> queue = new ArrayDeque<>();
+    private final Map<String, Integer> runningPerBucket = new HashMap<>();
+    private int running;
+
+    private ExecutorService executor;
+    private ScheduledExecutorService ticker;
+    private volatile boolean stopping;
+
+    /**
+     * Queues the jobs left unfinished by the previous run, and starts sending progress events.
+     */
+    @PostConstruct
+    void start() throws IOException {
+        Path jobDirectory = Paths.get(directory);
+        Files.createDirectories(jobDirectory);
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        ticker = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("transfer-progress").daemon().factory());
+        long interval = Math.max(progressInterval.toMillis(), 1);
+        ticker.scheduleAtFixedRate(this::tick, interval, interval, TimeUnit.MILLISECONDS);
+
+        try (DirectoryStream<Path> checkpoints = Files.newDirectoryStream(jobDirectory, "*.properties")) {
+            for (Path checkpoint : checkpoints) {
+                Job job = Job.load(checkpoint);
+                jobs.put(job.id, job);
+                if (job.state != State.FAILED) {
+                    enqueue(job);
+                }
+            }
+        }
+        dispatch();
+    }
+
+    /**
+     * Stops the running jobs without discarding their checkpoints, so they resume on the next start.
+     */
+    @PreDestroy
+    void stop() {
+        stopping = true;
+        ticker.shutdownNow();
+        jobs.values().forEach(Job::interrupt);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Spools a request body to disk and queues its upload. The caller is answered as soon as the body is spooled,
+     * instead of waiting for the upload to S3.
+     *
+     * @param bucketName    The name of the bucket to upload to.
+     * @param key           The key (path) under which the content will be stored.
+     * @param inputStream   The stream providing the object content.
+     * @param contentLength The exact number of bytes the stream will provide.
+     * @return The status of the queued job.
+     * @throws IOException If the content cannot be spooled.
+     */
+    public TransferJobStatus submitUpload(String bucketName, String key, InputStream inputStream, long contentLength) throws IOException {
+        Job job = new Job(UUID.randomUUID().toString(), Type.UPLOAD, bucketName, key, Paths.get(directory));
+        Path encodedFile = job.dataFile.resolveSibling(job.dataFile.getFileName() + ".encoded");
+        try {
+            long spooled = Files.copy(inputStream, job.dataFile, StandardCopyOption.REPLACE_EXISTING);
+            if (spooled != contentLength) {
+                throw new IOException("Expected " + contentLength + " bytes but received " + spooled);
+            }
+            S3ContentEncoding.Encoding encoding = contentEncoding.encodingFor(key, contentLength);
+            if (encoding != null) {
+                // Compressed once spooled, so the parts of the stored content are known before the upload starts.
+                try (InputStream encoded = contentEncoding.encode(Files.newInputStream(job.dataFile), encoding)) {
+                    Files.copy(encoded, encodedFile, StandardCopyOption.REPLACE_EXISTING);
+                }
+                Files.move(encodedFile, job.dataFile, StandardCopyOption.REPLACE_EXISTING);
+                job.encoding = encoding.token();
+                job.originalSize = contentLength;
+            }
+            job.size = Files.size(job.dataFile);
+            job.partSize = multipartUploader.partSizeFor(job.size);
+            job.save();
+        } catch (IOException e) {
+            Files.deleteIfExists(encodedFile);
+            job.deleteFiles();
+            throw e;
+        }
+        return submit(job);
+    }
+
+    /**
+     * Queues the download of an object to the destination folder.
+     *
+     * @param bucketName The name of the bucket to download from.
+     * @param key        The key (path) of the object.
+     * @return The status of the queued job.
+     * @throws IOException If the job checkpoint cannot be saved.
+     */
+    public TransferJobStatus submitDownload(String bucketName, String key) throws IOException {
+        Job job = new Job(UUID.randomUUID().toString(), Type.DOWNLOAD, bucketName, key, Paths.get(directory));
+        job.target = S3ServiceIpml.downloadPath(destinationFolder, key);
+        job.save();
+        return submit(job);
+    }
+
+    /**
+     * @return The status of every known job, oldest first.
+     */
+    public List<TransferJobStatus> statuses() {
+        return jobs.values().stream()
+                   .sorted(Comparator.comparingLong(job -> job.createdNanos))
+                   .map(Job::status)
+                   .toList();
+    }
+
+    /**
+     * @param jobId The job id.
+     * @return The status of the job, or null if it is unknown.
+     */
+    public TransferJobStatus status(String jobId) {
+        Job job = jobs.get(jobId);
+        return job == null ? null : job.status();
+    }
+
+    /**
+     * Cancels a job: a queued job is dropped, a running job stops its transfers. The partial transfer is discarded
+     * (the multipart upload is aborted, the partial download deleted).
+     *
+     * @param jobId The job id.
+     * @return The status of the job, or null if it is unknown.
+     */
+    public TransferJobStatus cancel(String jobId) {
+        Job job = jobs.get(jobId);
+        if (job == null) {
+            return null;
+        }
+        boolean queued;
+        synchronized (this) {
+            queued = queue.remove(job);
+        }
+        if (job.cancel() && (queued || job.state == State.FAILED)) {
+            // Nothing is running for this job: discard it now rather than when its transfer stops.
+            finish(job, State.CANCELLED, null);
+        }
+        return job.status();
+    }
+
+    /**
+     * Queues a failed job again. It carries on from its checkpoint.
+     *
+     * @param jobId The job id.
+     * @return The status of the job, or null if it is unknown.
+     * @throws IllegalStateException If the job did not fail.
+     */
+    public TransferJobStatus resume(String jobId) {
+        Job job = jobs.get(jobId);
+        if (job == null) {
+            return null;
+        }
+        synchronized (job) {
+            if (job.state != State.FAILED || job.cancelled) {
+                throw new IllegalStateException("Job " + jobId + " is " + job.state + " and cannot be resumed");
+            }
+            job.state = State.QUEUED;
+            job.error = null;
+        }
+        enqueue(job);
+        dispatch();
+        return job.status();
+    }
+
+    /**
+     * Sends the status of a job to a subscriber every {@code progressInterval} while it runs, and once more when it finishes.
+     *
+     * @param jobId      The job id.
+     * @param subscriber Receives the statuses.
+     * @return Unsubscribes, or null if the job is unknown.
+     */
+    public Runnable subscribe(String jobId, Consumer<TransferJobStatus> subscriber) {
+        Job job = jobs.get(jobId);
+        if (job == null) {
+            return null;
+        }
+        job.subscribers.add(subscriber);
+        TransferJobStatus status = job.status();
+        subscriber.accept(status);
+        if (status.isFinished()) {
+            job.subscribers.remove(subscriber);
+        }
+        return () -> job.subscribers.remove(subscriber);
+    }
+
+    private TransferJobStatus submit(Job job) {
+        jobs.put(job.id, job);
+        enqueue(job);
+        dispatch();
+        return job.status();
+    }
+
+    private synchronized void enqueue(Job job) {
+        queue.addLast(job);
+    }
+
+    /**
+     * Starts the oldest queued jobs whose bucket has a free slot, as long as there are free slots overall.
+     */
+    private synchronized void dispatch() {
+        Iterator<Job> iterator = queue.iterator();
+        while (!stopping && running < maxConcurrentJobs && iterator.hasNext()) {
+            Job job = iterator.next();
+            if (runningPerBucket.getOrDefault(job.bucketName, 0) >= maxJobsPerBucket) {
+                continue;
+            }
+            iterator.remove();
+            running++;
+            runningPerBucket.merge(job.bucketName, 1, Integer::sum);
+            executor.execute(() -> run(job));
+        }
+    }
+
+    private void run(Job job) {
+        try {
+            if (!job.begin()) {
+                // Cancelled between being taken off the queue and starting.
+                if (job.cancelled) {
+                    finish(job, State.CANCELLED, null);
+                }
+                return;
+            }
+            publish(job);
+            if (job.type == Type.UPLOAD) {
+                upload(job);
+            } else {
+                download(job);
+            }
+            finish(job, State.COMPLETED, null);
+        } catch (IOException | RuntimeException e) {
+            Throwable cause = rootCause(e);
+            if (job.cancelled) {
+                finish(job, State.CANCELLED, null);
+            } else if (!stopping) {
+                finish(job, State.FAILED, cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName());
+            }
+        } finally {
+            synchronized (this) {
+                running--;
+                runningPerBucket.computeIfPresent(job.bucketName, (bucket, count) -> count > 1 ? count - 1 : null);
+            }
+            dispatch();
+        }
+    }
+
+    /**
+     * Uploads the spooled file: in a single request when it fits in one part, part by part otherwise.
+     * A resumed job asks S3 which parts its multipart upload already holds and only sends the others.
+     */
+    private void upload(Job job) throws IOException {
+        if (job.size <= job.partSize) {
+            presignedUrlCache.invalidate(job.bucketName, job.key);
+            this.s3Client.putObject(builder -> builder.bucket(job.bucketName)
+                                                      .key(job.key)
+                                                      .checksumAlgorithm(checksums.algorithm())
+                                                      .contentType(contentTypeOf(job))
+                                                      .contentEncoding(job.encoding)
+                                                      .metadata(metadataOf(job)),
+                                    RequestBody.fromFile(job.dataFile));
+            job.transferred(job.size);
+            metrics.recordBytes("upload", job.bucketName, job.size);
+            return;
+        }
+
+        Map<Integer, CompletedPart> parts = job.uploadId == null ? null : listParts(job);
+        if (parts == null) {
+            job.uploadId = this.s3Client.createMultipartUpload(builder -> builder.bucket(job.bucketName)
+                                                                                 .key(job.key)
+                                                                                 .checksumAlgorithm(checksums.algorithm())
+                                                                                 .contentType(contentTypeOf(job))
+                                                                                 .contentEncoding(job.encoding)
+                                                                                 .metadata(metadataOf(job)))
+                                        .uploadId();
+            job.save();
+            parts = new ConcurrentHashMap<>();
+        }
+        int partCount = (int) ((job.size + job.partSize - 1) / job.partSize);
+        long resumed = 0;
+        for (int partNumber : parts.keySet()) {
+            resumed += partLength(job, partNumber - 1);
+        }
+        job.resumed(resumed);
+
+        Map<Integer, CompletedPart> completed = parts;
+        try (FileChannel channel = FileChannel.open(job.dataFile, StandardOpenOption.READ)) {
+            transferParts(job, partCount, index -> completed.containsKey(index + 1), index -> {
+                int partNumber = index + 1;
+                ByteBuffer buffer = ByteBuffer.allocate((int) partLength(job, index));
+                read(channel, buffer, index * job.partSize);
+                S3Checksums.Checksum checksum = checksums.of(buffer.array());
+                UploadPartRequest uploadPartRequest = UploadPartRequest.builder()
+                                                                       .bucket(job.bucketName)
+                                                                       .key(job.key)
+                                                                       .uploadId(job.uploadId)
+                                                                       .partNumber(partNumber)
+                                                                       .contentLength((long) buffer.capacity())
+                                                                       .checksumCRC32C(checksum.crc32c())
+                                                                       .checksumSHA256(checksum.sha256())
+                                                                       .build();
+                return this.s3AsyncClient.uploadPart(uploadPartRequest, AsyncRequestBody.fromBytesUnsafe(buffer.array()))
+                                         .thenAccept(response -> {
+                                             completed.put(partNumber, CompletedPart.builder()
+                                                                                    .partNumber(partNumber)
+                                                                                    .eTag(response.eTag())
+                                                                                    .checksumCRC32C(checksum.crc32c())
+                                                                                    .checksumSHA256(checksum.sha256())
+                                                                                    .build());
+                                             job.transferred(buffer.capacity());
+                                             metrics.recordBytes("upload", job.bucketName, buffer.capacity());
+                                         });
+            });
+        }
+
+        List<CompletedPart> completedParts = completed.values().stream()
+                                                      .sorted(Comparator.comparing(CompletedPart::partNumber))
+                                                      .toList();
+        presignedUrlCache.invalidate(job.bucketName, job.key);
+        this.s3Client.completeMultipartUpload(builder -> builder.bucket(job.bucketName)
+                                                                .key(job.key)
+                                                                .uploadId(job.uploadId)
+                                                                .multipartUpload(CompletedMultipartUpload.builder().parts(completedParts).build()));
+    }
+
+    /**
+     * @return The content type stored along with a compressed upload, or null to leave it to S3.
+     */
+    private String contentTypeOf(Job job) {
+        MediaType contentType = job.encoding == null ? null : contentEncoding.contentTypeOf(job.key);
+        return contentType == null ? null : contentType.toString();
+    }
+
+    /**
+     * @return The metadata recording the original size of a compressed upload, or null for other uploads.
+     */
+    private static Map<String, String> metadataOf(Job job) {
+        return job.encoding == null ? null : Map.of(S3ContentEncoding.ORIGINAL_SIZE, Long.toString(job.originalSize));
+    }
+
+    /**
+     * Lists the parts S3 already holds for the upload of a resumed job, or returns null if the upload no longer exists.
+     * Parts whose size does not match the job's part layout are left out, so they are sent again. The checksums S3
+     * stored for the listed parts are completed along with them.
+     */
+    private Map<Integer, CompletedPart> listParts(Job job) {
+        Map<Integer, CompletedPart> parts = new ConcurrentHashMap<>();
+        try {
+            for (Part part : this.s3Client.listPartsPaginator(builder -> builder.bucket(job.bucketName).key(job.key).uploadId(job.uploadId)).parts()) {
+                int index = part.partNumber() - 1;
+                if (part.size() != null && part.size() == partLength(job, index)) {
+                    parts.put(part.partNumber(), CompletedPart.builder()
+                                                              .partNumber(part.partNumber())
+                                                              .eTag(part.eTag())
+                                                              .checksumCRC32C(part.checksumCRC32C())
+                                                              .checksumSHA256(part.checksumSHA256())
+                                                              .build());
+                }
+            }
+            return parts;
+        } catch (NoSuchUploadException e) {
+            return null;
+        } catch (S3Exception e) {
+            if (e.statusCode() == 404) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Downloads the object range by range into a partial file, pinned to its ETag, then moves it in place.
+     * The written ranges are checkpointed, so a resumed job only fetches the missing ones, unless the object changed.
+     * Ranges of compressed content cannot be decompressed on their own: the partial file holds the stored content,
+     * which is checked against its checksum and decompressed into place once complete.
+     */
+    private void download(Job job) throws IOException {
+        boolean verify = checksums.verifiesDownloads();
+        HeadObjectResponse head = this.s3Client.headObject(builder -> builder.bucket(job.bucketName)
+                                                                          .key(job.key)
+                                                                          .checksumMode(verify ? ChecksumMode.ENABLED : null));
+        S3Checksums.Checksum expected = verify ? S3Checksums.stored(head.checksumCRC32C(), head.checksumSHA256()) : S3Checksums.Checksum.NONE;
+        synchronized (job) {
+            if (job.eTag == null || !job.eTag.equals(head.eTag()) || job.size != head.contentLength()) {
+                // First run, or the object changed since the last run: start over.
+                job.eTag = head.eTag();
+                job.size = head.contentLength();
+                job.partSize = multipartUploader.partSizeFor(job.size);
+                job.completedParts.clear();
+            }
+        }
+        int partCount = (int) ((job.size + job.partSize - 1) / job.partSize);
+        long resumed = 0;
+        for (int index = job.completedParts.nextSetBit(0); index >= 0; index = job.completedParts.nextSetBit(index + 1)) {
+            resumed += partLength(job, index);
+        }
+        job.resumed(resumed);
+        job.save();
+
+        Files.createDirectories(job.target.getParent());
+        try (FileChannel channel = FileChannel.open(job.dataFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (channel.size() != job.size) {
+                channel.truncate(job.size);
+                if (channel.size() < job.size && job.size > 0) {
+                    // Extend the file so each range can be written at its own position as soon as it arrives.
+                    channel.write(ByteBuffer.allocate(1), job.size - 1);
+                }
+            }
+            AtomicLong lastSaveNanos = new AtomicLong(System.nanoTime());
+            try {
+                transferParts(job, partCount, job::isPartCompleted, index -> {
+                    long start = index * job.partSize;
+                    long end = start + partLength(job, index) - 1;
+                    GetObjectRequest getObjectRequest = GetObjectRequest.builder()
+                                                                        .bucket(job.bucketName)
+                                                                        .key(job.key)
+                                                                        .range("bytes=" + start + "-" + end)
+                                                                        .ifMatch(job.eTag)
+                                                                        .build();
+                    return this.s3AsyncClient.getObject(getObjectRequest, AsyncResponseTransformer.toBytes())
+                                             .thenAccept(bytes -> {
+                                                 write(channel, bytes.asByteBuffer(), start);
+                                                 job.completePart(index);
+                                                 job.transferred(end - start + 1);
+                                                 metrics.recordBytes("download", job.bucketName, end - start + 1);
+                                                 long now = System.nanoTime();
+                                                 long last = lastSaveNanos.get();
+                                                 if (now - last >= checkpointInterval.toNanos() && lastSaveNanos.compareAndSet(last, now)) {
+                                                     checkpoint(job, channel);
+                                                 }
+                                             });
+                });
+            } finally {
+                // Also on failure, so the ranges listed by the checkpoint of the failed job are on disk.
+                channel.force(false);
+            }
+        }
+        String encoding = S3ContentEncoding.Encoding.of(head.contentEncoding()) == null ? null : head.contentEncoding();
+        if (encoding == null && expected.algorithm() == null) {
+            Files.move(job.dataFile, job.target, StandardCopyOption.REPLACE_EXISTING);
+            return;
+        }
+
+        // Composite checksums are computed over the parts of the object, which are not the ranges of the job.
+        LongSupplier partSize = () -> this.s3Client.headObject(builder -> builder.bucket(job.bucketName).key(job.key).partNumber(1).ifMatch(job.eTag))
+                                                   .contentLength();
+        try (InputStream stored = S3Checksums.verifying(Files.newInputStream(job.dataFile), expected, partSize, job.key);
+             InputStream decoded = encoding == null ? null : S3ContentEncoding.decode(stored, encoding)) {
+            if (decoded != null) {
+                Files.copy(decoded, job.target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            // Read what is left (all of it when nothing is decompressed) so the checksum covers the whole content.
+            stored.transferTo(OutputStream.nullOutputStream());
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(job.target);
+            synchronized (job) {
+                // Which ranges are corrupt is unknown: a resumed job downloads them all again.
+                job.completedParts.clear();
+            }
+            throw e;
+        }
+        if (encoding == null) {
+            Files.move(job.dataFile, job.target, StandardCopyOption.REPLACE_EXISTING);
+        } else {
+            Files.delete(job.dataFile);
+        }
+    }
+
+    /**
+     * Sends the parts that are not completed yet, with at most {@code maxInFlightParts} in flight, and waits for them.
+     * Cancelling the job cancels the parts in flight.
+     */
+    private void transferParts(Job job, int partCount, PartFilter completed, PartTransfer transfer) throws IOException {
+        Semaphore inFlight = new Semaphore(maxInFlightParts);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+
+        for (int index = 0; index < partCount && failure.get() == null; index++) {
+            if (completed.test(index)) {
+                continue;
+            }
+            acquire(inFlight);
+            if (job.cancelled || job.interrupted) {
+                inFlight.release();
+                throw new CancellationException("Job " + job.id + " was stopped");
+            }
+            CompletableFuture<Void> future;
+            try {
+                future = transfer.start(index);
+            } catch (RuntimeException e) {
+                future = CompletableFuture.failedFuture(e);
+            }
+            future.whenComplete((ignored, throwable) -> {
+                if (throwable != null) {
+                    failure.compareAndSet(null, throwable);
+                }
+                inFlight.release();
+            });
+            job.track(future);
+            futures.add(future);
+        }
+
+        try {
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+        } finally {
+            futures.forEach(job::untrack);
+        }
+        if (job.cancelled || job.interrupted) {
+            throw new CancellationException("Job " + job.id + " was stopped");
+        }
+    }
+
+    /**
+     * Flushes the partial file before saving the checkpoint, so every range it lists is on disk. The completed ranges
+     * are taken before the flush: ranges completing in the meantime may not be flushed yet, and wait for the next one.
+     */
+    private static void checkpoint(Job job, FileChannel channel) {
+        try {
+            BitSet flushedParts = job.completedParts();
+            channel.force(false);
+            job.save(flushedParts);
+        } catch (IOException e) {
+            // A missed checkpoint only means more ranges are fetched again on resume.
+        }
+    }
+
+    private void finish(Job job, State state, String error) {
+        synchronized (job) {
+            // A finished job only changes state when a failed job is cancelled.
+            if (job.isFinished() && !(job.state == State.FAILED && state == State.CANCELLED)) {
+                return;
+            }
+            job.state = state;
+            job.error = error;
+            job.finishedNanos = System.nanoTime();
+            if (state == State.FAILED) {
+                job.failedAt = System.currentTimeMillis();
+            }
+        }
+        if (state == State.FAILED) {
+            try {
+                job.save();
+            } catch (IOException e) {
+                // The job stays resumable in memory; only a restart would lose it.
+            }
+        } else {
+            if (state == State.CANCELLED && job.uploadId != null) {
+                // Abort so S3 discards the parts already stored for this upload.
+                this.s3AsyncClient.abortMultipartUpload(builder -> builder.bucket(job.bucketName).key(job.key).uploadId(job.uploadId));
+            }
+            job.deleteFiles();
+        }
+        publish(job);
+        job.subscribers.clear();
+    }
+
+    /**
+     * Sends progress to the subscribers of running jobs, cancels failed jobs that were not resumed within
+     * {@code failedRetention}, and forgets finished jobs past their retention.
+     */
+    private void tick() {
+        long now = System.nanoTime();
+        for (Job job : jobs.values()) {
+            if (job.state == State.RUNNING) {
+                publish(job);
+            } else if (job.state == State.FAILED && System.currentTimeMillis() - job.failedAt >= failedRetention.toMillis() && job.expire()) {
+                // Cancelled like any failed job, so the multipart upload is aborted and the job files deleted.
+                finish(job, State.CANCELLED, "Not resumed within " + failedRetention + ": " + job.error);
+            } else if (job.isFinished() && job.state != State.FAILED && now - job.finishedNanos >= retention.toNanos()) {
+                jobs.remove(job.id, job);
+            }
+        }
+    }
+
+    private static void publish(Job job) {
+        if (job.subscribers.isEmpty()) {
+            return;
+        }
+        TransferJobStatus status = job.status();
+        for (Consumer<TransferJobStatus> subscriber : job.subscribers) {
+            try {
+                subscriber.accept(status);
+            } catch (RuntimeException e) {
+                // A subscriber that cannot be reached any more (e.g. a closed event stream) is dropped.
+                job.subscribers.remove(subscriber);
+            }
+        }
+    }
+
+    private static long partLength(Job job, int index) {
+        return Math.min(job.partSize, job.size - index * job.partSize);
+    }
+
+    private static void read(FileChannel channel, ByteBuffer buffer, long position) {
+        try {
+            long offset = position;
+            while (buffer.hasRemaining()) {
+                int read = channel.read(buffer, offset);
+                if (read < 0) {
+                    throw new IOException("Spooled file is shorter than expected");
+                }
+                offset += read;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void write(FileChannel channel, ByteBuffer buffer, long position) {
+        long start = System.nanoTime();
+        try {
+            long offset = position;
+            while (buffer.hasRemaining()) {
+                offset += channel.write(buffer, offset);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            metrics.recordLocalWrite("transfer", System.nanoTime() - start);
+        }
+    }
+
+    private static void acquire(Semaphore semaphore) throws IOException {
+        try {
+            semaphore.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a transfer slot", e);
+        }
+    }
+
+    private static Throwable rootCause(Throwable throwable) {
+        Throwable cause = throwable;
+        while ((cause instanceof CompletionException || cause instanceof UncheckedIOException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+
+    @FunctionalInterface
+    private interface PartFilter {
+        boolean test(int index);
+    }
+
+    @FunctionalInterface
+    private interface PartTransfer {
+        CompletableFuture<Void> start(int index);
+    }
+
+    /**
+     * A transfer job, its progress and its checkpoint.
+     */
+    private static final class Job {
+        private final String id;
+        private final Type type;
+        private final String bucketName;
+        private final String key;
+        private final Path checkpointFile;
+        private final Path dataFile;
+        private final long createdNanos = System.nanoTime();
+        private final List<Consumer<TransferJobStatus>> subscribers = new CopyOnWriteArrayList<>();
+        private final List<CompletableFuture<Void>> inFlight = new CopyOnWriteArrayList<>();
+
+        // Saved in the checkpoint.
+        private Path target;
+        private volatile long size = -1;
+        private long partSize;
+        private String uploadId;
+        private String eTag;
+        private String encoding;
+        private long originalSize = -1;
+        private final BitSet completedParts = new BitSet();
+        private volatile State state = State.QUEUED;
+        private volatile String error;
+
+        // Progress of the current run.
+        private final AtomicLong transferred = new AtomicLong();
+        private volatile long resumed;
+        private volatile long runStartNanos;
+        private volatile long finishedNanos;
+        // Wall-clock time of the last failure, kept in the checkpoint so the failed retention survives restarts.
+        private volatile long failedAt;
+        private volatile boolean cancelled;
+        private volatile boolean interrupted;
+
+        private Job(String id, Type type, String bucketName, String key, Path directory) {
+            this.id = id;
+            this.type = type;
+            this.bucketName = bucketName;
+            this.key = key;
+            this.checkpointFile = directory.resolve(id + ".properties");
+            this.dataFile = directory.resolve(id + (type == Type.UPLOAD ? ".upload" : ".download"));
+        }
+
+        static Job load(Path checkpointFile) throws IOException {
+            Properties checkpoint = new Properties();
+            try (Reader reader = Files.newBufferedReader(checkpointFile)) {
+                checkpoint.load(reader);
+            }
+            Job job = new Job(checkpoint.getProperty("id"), Type.valueOf(checkpoint.getProperty("type")), checkpoint.getProperty("bucket"),
+                              checkpoint.getProperty("key"), checkpointFile.getParent());
+            if (checkpoint.getProperty("target") != null) {
+                job.target = Paths.get(checkpoint.getProperty("target"));
+            }
+            job.size = Long.parseLong(checkpoint.getProperty("size", "-1"));
+            job.partSize = Long.parseLong(checkpoint.getProperty("partSize", "0"));
+            job.uploadId = checkpoint.getProperty("uploadId");
+            job.eTag = checkpoint.getProperty("eTag");
+            job.encoding = checkpoint.getProperty("encoding");
+            job.originalSize = Long.parseLong(checkpoint.getProperty("originalSize", "-1"));
+            for (String index : checkpoint.getProperty("completedParts", "").split(",")) {
+                if (!index.isEmpty()) {
+                    job.completedParts.set(Integer.parseInt(index));
+                }
+            }
+            job.state = State.FAILED.name().equals(checkpoint.getProperty("state")) ? State.FAILED : State.QUEUED;
+            job.error = checkpoint.getProperty("error");
+            if (job.state == State.FAILED) {
+                // Checkpoints written before the failure time was saved are dated by their last write.
+                String failedAt = checkpoint.getProperty("failedAt");
+                job.failedAt = failedAt != null ? Long.parseLong(failedAt) : Files.getLastModifiedTime(checkpointFile).toMillis();
+            }
+            return job;
+        }
+
+        /**
+         * Writes the checkpoint to a temporary file and moves it in place, so a crash never leaves a truncated checkpoint.
+         */
+        synchronized void save() throws IOException {
+            save(completedParts);
+        }
+
+        /**
+         * Writes the checkpoint with the given completed parts instead of the current ones.
+         */
+        synchronized void save(BitSet savedParts) throws IOException {
+            if (cancelled) {
+                return;
+            }
+            Properties checkpoint = new Properties();
+            checkpoint.setProperty("id", id);
+            checkpoint.setProperty("type", type.name());
+            checkpoint.setProperty("bucket", bucketName);
+            checkpoint.setProperty("key", key);
+            checkpoint.setProperty("state", state.name());
+            checkpoint.setProperty("size", Long.toString(size));
+            checkpoint.setProperty("partSize", Long.toString(partSize));
+            if (target != null) {
+                checkpoint.setProperty("target", target.toString());
+            }
+            if (uploadId != null) {
+                checkpoint.setProperty("uploadId", uploadId);
+            }
+            if (eTag != null) {
+                checkpoint.setProperty("eTag", eTag);
+            }
+            if (encoding != null) {
+                checkpoint.setProperty("encoding", encoding);
+                checkpoint.setProperty("originalSize", Long.toString(originalSize));
+            }
+            if (error != null) {
+                checkpoint.setProperty("error", error);
+            }
+            if (state == State.FAILED) {
+                checkpoint.setProperty("failedAt", Long.toString(failedAt));
+            }
+            StringBuilder parts = new StringBuilder();
+            savedParts.stream().forEach(index -> parts.append(parts.isEmpty() ? "" : ",").append(index));
+            checkpoint.setProperty("completedParts", parts.toString());
+
+            Path temporary = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+            try (Writer writer = Files.newBufferedWriter(temporary)) {
+                checkpoint.store(writer, "Transfer job " + id);
+            }
+            Files.move(temporary, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        synchronized boolean begin() {
+            if (cancelled || state != State.QUEUED) {
+                return false;
+            }
+            state = State.RUNNING;
+            transferred.set(0);
+            resumed = 0;
+            runStartNanos = System.nanoTime();
+            return true;
+        }
+
+        void resumed(long bytes) {
+            resumed = bytes;
+            transferred.set(bytes);
+        }
+
+        void transferred(long bytes) {
+            transferred.addAndGet(bytes);
+        }
+
+        synchronized boolean isPartCompleted(int index) {
+            return completedParts.get(index);
+        }
+
+        synchronized void completePart(int index) {
+            completedParts.set(index);
+        }
+
+        synchronized BitSet completedParts() {
+            return (BitSet) completedParts.clone();
+        }
+
+        void track(CompletableFuture<Void> future) {
+            inFlight.add(future);
+            if (cancelled || interrupted) {
+                future.cancel(true);
+            }
+        }
+
+        void untrack(CompletableFuture<Void> future) {
+            inFlight.remove(future);
+        }
+
+        /**
+         * @return False if the job had already finished.
+         */
+        synchronized boolean cancel() {
+            if (isFinished() && state != State.FAILED) {
+                return false;
+            }
+            cancelled = true;
+            inFlight.forEach(future -> future.cancel(true));
+            return true;
+        }
+
+        /**
+         * Cancels the job if it is still failed, unlike {@link #cancel()} which also stops a resumed job.
+         *
+         * @return False if the job was resumed or cancelled in the meantime.
+         */
+        synchronized boolean expire() {
+            if (state != State.FAILED || cancelled) {
+                return false;
+            }
+            cancelled = true;
+            return true;
+        }
+
+        void interrupt() {
+            interrupted = true;
+            inFlight.forEach(future -> future.cancel(true));
+        }
+
+        boolean isFinished() {
+            return state == State.COMPLETED || state == State.FAILED || state == State.CANCELLED;
+        }
+
+        void deleteFiles() {
+            try {
+                Files.deleteIfExists(dataFile);
+                Files.deleteIfExists(checkpointFile);
+            } catch (IOException e) {
+                // Leftover files are harmless: a job without a checkpoint is never loaded again.
+            }
+        }
+
+        TransferJobStatus status() {
+            State currentState = state;
+            long bytes = transferred.get();
+            Long bytesPerSecond = null;
+            Long etaSeconds = null;
+            if (currentState == State.RUNNING) {
+                long elapsedNanos = System.nanoTime() - runStartNanos;
+                long rate = elapsedNanos > 0 ? (long) ((bytes - resumed) * 1e9 / elapsedNanos) : 0;
+                bytesPerSecond = rate;
+                if (rate > 0 && size >= 0) {
+                    etaSeconds = Math.max(size - bytes, 0) / rate;
+                }
+            }
+            return new TransferJobStatus(id, type.name(), bucketName, key, currentState.name(), size >= 0 ? size : null,
+                                         currentState == State.COMPLETED ? Math.max(size, 0) : bytes, resumed,
+                                         bytesPerSecond, etaSeconds, error);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.s3.api.admission;
+
+import com.s3.api.service.IS3Service;
+import com.s3.api.support.LocalS3ServerTestBase;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Exercises admission control, through the web layer and directly, against the in-process S3 stand-in.
+ */
+@SpringBootTest(properties = {
+        "s3.admission.enabled=true",
+        "s3.admission.client-header=X-Client-Id",
+        "s3.admission.client.rate=1",
+        "s3.admission.client.burst=5",
+        "s3.admission.max-concurrency-per-bucket=2",
+        "s3.admission.max-queue-per-bucket=1",
+        "s3.admission.queue-timeout=300ms",
+        "s3.admission.adaptive.cooldown=1m",
+        "s3.admission.max-tracked-keys=4"
+})
+@AutoConfigureMockMvc
+class S3AdmissionControlTests extends LocalS3ServerTestBase {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private S3AdmissionControl admissionControl;
+
+    @Autowired
+    private IS3Service s3Service;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void rejectsClientsBeyondTheirBurst() throws Exception {
+        server.createBucket("burst-bucket");
+        for (int i = 0; i < 5; i++) {
+            mockMvc.perform(get("/s3/check/burst-bucket").header("X-Client-Id", "bursty")).andExpect(status().isOk());
+        }
+
+        mockMvc.perform(get("/s3/check/burst-bucket").header("X-Client-Id", "bursty"))
+               .andExpect(status().isTooManyRequests())
+               .andExpect(header().string("Retry-After", "1"));
+        // Other clients have their own budget.
+        mockMvc.perform(get("/s3/check/burst-bucket").header("X-Client-Id", "quiet")).andExpect(status().isOk());
+    }
+
+    @Test
+    void queuesBeyondTheConcurrencyLimitThenRejects() throws Exception {
+        S3AdmissionControl.Permit first = admissionControl.admit(null, "queue-bucket", "a.bin", true);
+        S3AdmissionControl.Permit second = admissionControl.admit(null, "queue-bucket", "b.bin", true);
+        CompletableFuture<S3AdmissionControl.Permit> queued = CompletableFuture.supplyAsync(
+                () -> admissionControl.admit(null, "queue-bucket", "c.bin", true));
+        awaitQueueDepth(1);
+
+        S3AdmissionControl.RejectedException full = assertThrows(S3AdmissionControl.RejectedException.class,
+                                                                 () -> admissionControl.admit(null, "queue-bucket", "d.bin", true));
+        assertEquals("queue-full", full.reason());
+
+        first.close();
+        S3AdmissionControl.Permit third = queued.get(5, TimeUnit.SECONDS);
+        S3AdmissionControl.RejectedException timedOut = assertThrows(S3AdmissionControl.RejectedException.class,
+                                                                     () -> admissionControl.admit(null, "queue-bucket", "e.bin", true));
+        assertEquals("queue-timeout", timedOut.reason());
+        second.close();
+        third.close();
+    }
+
+    @Test
+    void throttlingShrinksTheBucketLimits() {
+        server.createBucket("throttled-bucket");
+        server.failRequests(request -> "throttled-bucket".equals(request.bucket()), 2, 503, "SlowDown");
+        byte[] content = new byte[1024];
+
+        // The SDK retries through the throttling, and every throttled attempt is seen.
+        assertTrue(s3Service.uploadFile("throttled-bucket", "object.bin", new ByteArrayInputStream(content), content.length));
+
+        assertEquals(0.5, admissionControl.limitFactor("throttled-bucket"), 0.01);
+        assertTrue(admissionControl.stats().get("throttled").longValue() >= 2);
+        assertEquals(1.0, admissionControl.limitFactor("queue-bucket"), 0.01);
+    }
+
+    @Test
+    void idleBucketsAreDroppedWithTheirMeters() {
+        S3AdmissionControl.Permit held = admissionControl.admit(null, "held-bucket", "a.bin", false);
+        admissionControl.admit(null, "metered-bucket", "a.bin", false).close();
+        admissionControl.throttled("never-admitted-bucket");
+        assertNotNull(meterRegistry.find("s3.admission.in.flight").tag("bucket", "metered-bucket").gauge());
+        // A bucket that never had a request admitted does not get meters of its own.
+        assertNull(meterRegistry.find("s3.admission.throttled").tag("bucket", "never-admitted-bucket").counter());
+        assertNotNull(meterRegistry.find("s3.admission.throttled").tag("bucket", "other").counter());
+
+        for (int i = 0; i < 5; i++) {
+            admissionControl.admit(null, "filler-bucket-" + i, "a.bin", false).close();
+        }
+
+        assertNull(meterRegistry.find("s3.admission.in.flight").tag("bucket", "metered-bucket").gauge());
+        // A bucket with a request in flight is kept.
+        assertNotNull(meterRegistry.find("s3.admission.in.flight").tag("bucket", "held-bucket").gauge());
+        assertEquals(1, admissionControl.stats().get("inFlight").intValue());
+        held.close();
+        assertEquals(0, admissionControl.stats().get("inFlight").intValue());
+    }
+
+    private void awaitQueueDepth(int depth) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (admissionControl.stats().get("queueDepth").intValue() < depth) {
+            if (System.nanoTime() > deadline) {
+                fail("No request queued");
+            }
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.s3.api.benchmark;
+
+import com.s3.api.admission.S3AdmissionControl;
+import com.s3.api.service.IS3Service;
+import com.s3.api.support.LocalS3Server;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load test of bursts of uploads against an in-process S3 stand-in that answers 503 SlowDown beyond 500 requests
+ * per second, with and without admission control. Without it, every request reaches S3 and throttled attempts are
+ * retried with backoff, so the slowest request of a burst waits for several retries. With it, the limits of the
+ * bucket shrink after the first throttling responses, and the excess is rejected at once instead of being retried.
+ * The trial prints the throttling responses S3 sent and the requests admission control rejected.
+ * <p>
+ * Run with: {@code mvn -Pbenchmark verify -DskipTests -Djmh.args="AdmissionControlBenchmark"}
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+public class AdmissionControlBenchmark {
+
+    private static final String BUCKET = "throttled-bucket";
+
+    // Requests per second the stand-in serves before it throttles.
+    private static final int S3_CAPACITY = 500;
+
+    private static final byte[] CONTENT = new byte[1024];
+
+    @Param({"disabled", "enabled"})
+    public String admission;
+
+    @Param({"1000"})
+    public int concurrency;
+
+    private LocalS3Server server;
+    private ConfigurableApplicationContext context;
+    private IS3Service s3Service;
+    private S3AdmissionControl admissionControl;
+    private ExecutorService executor;
+    private final AtomicLong keys = new AtomicLong();
+    private final AtomicInteger rejected = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        server = new LocalS3Server();
+        server.createBucket(BUCKET);
+        server.setLatencyMillis(20);
+        server.throttleAbove(S3_CAPACITY);
+
+        context = BenchmarkApplication.start(server,
+                                             "--aws.http.max-connections=" + concurrency,
+                                             "--spring.threads.virtual.enabled=true",
+                                             "--s3.admission.enabled=" + "enabled".equals(admission),
+                                             "--s3.admission.max-concurrency-per-bucket=" + concurrency,
+                                             "--s3.admission.max-queue-per-bucket=" + concurrency);
+        s3Service = context.getBean(IS3Service.class);
+        admissionControl = context.getBean(S3AdmissionControl.class);
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        System.out.printf("%nS3 throttling responses: %d, rejected by admission control: %d, admission stats: %s%n",
+                          server.throttledCount(), rejected.get(), admissionControl.stats());
+        executor.shutdownNow();
+        context.close();
+        server.close();
+    }
+
+    @Benchmark
+    public int burst() throws Exception {
+        List<Future<Boolean>> responses = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            responses.add(executor.submit(this::upload));
+        }
+        int uploaded = 0;
+        for (Future<Boolean> response : responses) {
+            if (response.get()) {
+                uploaded++;
+            }
+        }
+        return uploaded;
+    }
+
+    private boolean upload() {
+        String key = "load/" + keys.incrementAndGet();
+        try (S3AdmissionControl.Permit ignored = admissionControl.admit(null, BUCKET, key, true)) {
+            return s3Service.uploadFile(BUCKET, key, new ByteArrayInputStream(CONTENT), CONTENT.length);
+        } catch (S3AdmissionControl.RejectedException e) {
+            rejected.incrementAndGet();
+            return false;
+        } catch (RuntimeException e) {
+            // Throttled beyond the SDK retries.
+            return false;
+        }
+    }
+}
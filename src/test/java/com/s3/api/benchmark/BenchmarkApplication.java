@@ -0,0 +1,39 @@
+package com.s3.api.benchmark;
+
+import com.s3.api.SpringBootS3AppApplication;
+import com.s3.api.support.LocalS3Server;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Starts the application without its web server for benchmarks, optionally pointed at a local S3 stand-in.
+ */
+final class BenchmarkApplication {
+
+    private BenchmarkApplication() {
+    }
+
+    /**
+     * @param server    The S3 stand-in to use, or null to keep the configured endpoint (for benchmarks that never call S3).
+     * @param arguments Additional properties, as {@code --name=value} arguments.
+     * @return The started application context; close it in the benchmark tear-down.
+     */
+    static ConfigurableApplicationContext start(LocalS3Server server, String... arguments) {
+        List<String> args = new ArrayList<>(List.of("--aws.access.key=benchmark",
+                                                    "--aws.secret.key=benchmark",
+                                                    "--logging.level.software.amazon.awssdk=WARN"));
+        if (server != null) {
+            args.add("--aws.endpoint=" + server.endpoint());
+            args.add("--aws.path.style.access=true");
+        }
+        args.addAll(Arrays.asList(arguments));
+        return new SpringApplicationBuilder(SpringBootS3AppApplication.class)
+                .web(WebApplicationType.NONE)
+                .run(args.toArray(String[]::new));
+    }
+}
@@ -0,0 +1,97 @@
+package com.s3.api.benchmark;
+
+import com.s3.api.service.IS3Service;
+import com.s3.api.support.LocalS3Server;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test comparing blocking S3 calls served by a Tomcat-sized platform thread pool with calls served by
+ * virtual threads, against the in-process S3 stand-in with an emulated 50ms round trip.
+ * Each invocation fires a burst of {@code concurrency} concurrent requests and waits for all of them; the
+ * sample-time percentiles therefore show how long the slowest request of a burst waits (p99 across bursts).
+ * With 200 platform threads, bursts above 200 requests queue up; virtual threads only wait on the connection pool.
+ * The bucket cache is disabled so every request makes its round trip to S3.
+ * <p>
+ * Run with: {@code mvn -Pbenchmark verify -DskipTests -Djmh.args="ConcurrentRequestBenchmark"}
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+public class ConcurrentRequestBenchmark {
+
+    private static final String BUCKET = "load-bucket";
+
+    // Same as Tomcat's default maximum number of request threads.
+    private static final int PLATFORM_THREADS = 200;
+
+    @Param({"platform", "virtual"})
+    public String threads;
+
+    @Param({"200", "1000", "4000"})
+    public int concurrency;
+
+    private LocalS3Server server;
+    private ConfigurableApplicationContext context;
+    private IS3Service s3Service;
+    private ExecutorService executor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        server = new LocalS3Server();
+        server.createBucket(BUCKET);
+        server.setLatencyMillis(50);
+
+        boolean virtual = "virtual".equals(threads);
+        context = BenchmarkApplication.start(server,
+                                             "--aws.http.max-connections=" + concurrency,
+                                             "--spring.threads.virtual.enabled=" + virtual,
+                                             "--s3.bucket-cache.enabled=false");
+        s3Service = context.getBean(IS3Service.class);
+        executor = virtual ? Executors.newVirtualThreadPerTaskExecutor() : Executors.newFixedThreadPool(PLATFORM_THREADS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        executor.shutdownNow();
+        context.close();
+        server.close();
+    }
+
+    @Benchmark
+    public int burst() throws Exception {
+        List<Future<String>> responses = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            responses.add(executor.submit(() -> s3Service.checkIfBucketExists(BUCKET)));
+        }
+        int completed = 0;
+        for (Future<String> response : responses) {
+            response.get();
+            completed++;
+        }
+        return completed;
+    }
+}
@@ -0,0 +1,71 @@
+package com.s3.api.benchmark;
+
+import com.s3.api.cache.PresignedUrlCache;
+import com.s3.api.dto.PresignRequest;
+import com.s3.api.service.IS3Service;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Measures batch presigning throughput (URLs per second) for a growing number of signing threads.
+ * The presigned URL cache is disabled so every URL is actually signed.
+ * <p>
+ * Run with: {@code mvn -Pbenchmark verify -DskipTests -Djmh.args="PresignBenchmark"}
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class PresignBenchmark {
+
+    private static final int BATCH_SIZE = 10_000;
+
+    @Param({"1", "2", "4", "8"})
+    public int parallelism;
+
+    private ConfigurableApplicationContext context;
+    private IS3Service s3Service;
+    private List<PresignRequest> requests;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start(null,
+                                             "--s3.presign.cache.enabled=false",
+                                             "--s3.presign.batch.parallelism=" + parallelism);
+        s3Service = context.getBean(IS3Service.class);
+        requests = IntStream.range(0, BATCH_SIZE)
+                            .mapToObj(i -> new PresignRequest("benchmark-bucket", "objects/" + i, PresignedUrlCache.Operation.GET, 15L))
+                            .toList();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void batchPresign(Blackhole blackhole) {
+        s3Service.generatePresignedUrls(requests, blackhole::consume);
+    }
+}
@@ -0,0 +1,92 @@
+package com.s3.api.benchmark;
+
+import com.s3.api.service.IS3Service;
+import com.s3.api.support.LocalS3Server;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the small, request-bound operations of {@link IS3Service} against the in-process S3 stand-in:
+ * presigning (cached and uncached), bucket existence checks and bucket listing. Bucket existence checks and bucket
+ * listing are measured with the bucket cache disabled (a round trip to S3 per call) and enabled.
+ * Reports throughput and sample-time latency percentiles; add {@code -prof gc} for the allocation rate
+ * and {@code -t N} for N concurrent callers.
+ * <p>
+ * Run with: {@code mvn -Pbenchmark verify -DskipTests -Djmh.args="S3MetadataBenchmark -t 8 -prof gc"}
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class S3MetadataBenchmark {
+
+    private static final String BUCKET = "benchmark-bucket";
+    private static final Duration EXPIRATION = Duration.ofMinutes(15);
+    private static final int HOT_KEYS = 100;
+
+    @Param({"disabled", "enabled"})
+    public String bucketCache;
+
+    private LocalS3Server server;
+    private ConfigurableApplicationContext context;
+    private IS3Service s3Service;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        server = new LocalS3Server();
+        for (int i = 0; i < 20; i++) {
+            server.createBucket(BUCKET + "-" + i);
+        }
+        server.createBucket(BUCKET);
+        context = BenchmarkApplication.start(server, "--s3.bucket-cache.enabled=" + "enabled".equals(bucketCache));
+        s3Service = context.getBean(IS3Service.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        context.close();
+        server.close();
+    }
+
+    // A small set of hot keys, served from the presigned URL cache after the first signature.
+    @Benchmark
+    public String presignCached() {
+        return s3Service.generatePresignedDownloadUrl(BUCKET, "hot/" + ThreadLocalRandom.current().nextInt(HOT_KEYS), EXPIRATION);
+    }
+
+    // Distinct keys every time, so every call signs a new URL.
+    @Benchmark
+    public String presignUncached() {
+        return s3Service.generatePresignedUploadUrl(BUCKET, "cold/" + ThreadLocalRandom.current().nextLong(), EXPIRATION);
+    }
+
+    @Benchmark
+    public String headBucket() {
+        return s3Service.checkIfBucketExists(BUCKET);
+    }
+
+    @Benchmark
+    public List<String> listBuckets() {
+        return s3Service.getAllBuckets();
+    }
+}
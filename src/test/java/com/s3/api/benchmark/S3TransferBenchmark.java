@@ -0,0 +1,124 @@
+package com.s3.api.benchmark;
+
+import com.s3.api.service.IS3Service;
+import com.s3.api.support.LocalS3Server;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Measures uploads and downloads through {@link IS3Service} against the in-process S3 stand-in,
+ * for objects from 1KB to 1GB. Reports throughput and sample-time latency percentiles; add
+ * {@code -prof gc} to see the allocation rate, which exposes extra copies of the payload on the heap.
+ * Concurrency is set with JMH's thread count: each benchmark thread works on its own keys.
+ * <p>
+ * Run with: {@code mvn -Pbenchmark verify -DskipTests -Djmh.args="S3TransferBenchmark -t 8 -prof gc"}
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+public class S3TransferBenchmark {
+
+    private static final String BUCKET = "benchmark-bucket";
+
+    /**
+     * Application and stand-in shared by all benchmark threads.
+     */
+    @State(Scope.Benchmark)
+    public static class Environment {
+
+        // 1KB, 1MB, 64MB (multipart and ranged) and 1GB.
+        @Param({"1024", "1048576", "67108864", "1073741824"})
+        public long objectSize;
+
+        LocalS3Server server;
+        ConfigurableApplicationContext context;
+        IS3Service s3Service;
+        Path workDirectory;
+        Path source;
+        final AtomicInteger threadIds = new AtomicInteger();
+
+        @Setup(Level.Trial)
+        public void setUp() throws IOException {
+            workDirectory = Files.createTempDirectory("s3-benchmark");
+            source = workDirectory.resolve("source.bin");
+            writeRandomFile(source, objectSize);
+
+            server = new LocalS3Server();
+            server.createBucket(BUCKET);
+            context = BenchmarkApplication.start(server, "--spring.destination.folder=" + workDirectory.resolve("downloads"));
+            s3Service = context.getBean(IS3Service.class);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            context.close();
+            server.close();
+            try (Stream<Path> files = Files.walk(workDirectory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    /**
+     * Keys owned by one benchmark thread, so concurrent threads never write the same object or local file.
+     */
+    @State(Scope.Thread)
+    public static class ThreadKeys {
+
+        String uploadKey;
+        String downloadKey;
+
+        @Setup(Level.Trial)
+        public void setUp(Environment environment) {
+            int threadId = environment.threadIds.incrementAndGet();
+            uploadKey = "upload/" + threadId + ".bin";
+            downloadKey = "download/" + threadId + ".bin";
+            environment.server.putObject(BUCKET, downloadKey, environment.source);
+        }
+    }
+
+    @Benchmark
+    public Boolean upload(Environment environment, ThreadKeys keys) {
+        return environment.s3Service.uploadFile(BUCKET, keys.uploadKey, environment.source);
+    }
+
+    @Benchmark
+    public void download(Environment environment, ThreadKeys keys) throws IOException {
+        environment.s3Service.downloadFile(BUCKET, keys.downloadKey);
+    }
+
+    private static void writeRandomFile(Path file, long size) throws IOException {
+        byte[] chunk = new byte[1024 * 1024];
+        Random random = new Random(size);
+        try (OutputStream out = Files.newOutputStream(file)) {
+            for (long written = 0; written < size; written += chunk.length) {
+                random.nextBytes(chunk);
+                out.write(chunk, 0, (int) Math.min(chunk.length, size - written));
+            }
+        }
+    }
+}
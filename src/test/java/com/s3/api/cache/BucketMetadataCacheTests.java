@@ -0,0 +1,208 @@
+package com.s3.api.cache;
+
+import com.s3.api.cache.BucketMetadataCache.BucketStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Exercises load collapsing, expiry and background refresh of the bucket cache, with short durations.
+ */
+class BucketMetadataCacheTests {
+
+    private BucketMetadataCache cache;
+
+    @BeforeEach
+    void createCache() {
+        cache = new BucketMetadataCache();
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "ttl", Duration.ofHours(1));
+        ReflectionTestUtils.setField(cache, "negativeTtl", Duration.ofMillis(100));
+        ReflectionTestUtils.setField(cache, "refreshAfter", Duration.ofHours(1));
+        ReflectionTestUtils.setField(cache, "maxSize", 100);
+    }
+
+    @Test
+    void concurrentMissesShareOneLoad() throws InterruptedException {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Thread> callers = new ArrayList<>();
+        List<BucketStatus> results = new ArrayList<>();
+
+        for (int i = 0; i < 10; i++) {
+            callers.add(Thread.ofVirtual().start(() -> {
+                BucketStatus status = cache.status("shared", () -> {
+                    loads.incrementAndGet();
+                    loading.countDown();
+                    await(release);
+                    return BucketStatus.EXISTS;
+                });
+                synchronized (results) {
+                    results.add(status);
+                }
+            }));
+            if (i == 0) {
+                // The other callers arrive while the first one is still loading.
+                assertTrue(loading.await(5, TimeUnit.SECONDS));
+            }
+        }
+        waitUntil(() -> cache.stats().get("collapsedMisses").longValue() == 9);
+        release.countDown();
+        for (Thread caller : callers) {
+            caller.join();
+        }
+
+        assertEquals(1, loads.get());
+        assertEquals(List.of(BucketStatus.EXISTS), results.stream().distinct().toList());
+        assertEquals(1L, cache.stats().get("misses"));
+    }
+
+    @Test
+    void missingBucketsExpireSooner() throws InterruptedException {
+        AtomicInteger loads = new AtomicInteger();
+
+        assertEquals(BucketStatus.NOT_FOUND, cache.status("missing", () -> count(loads, BucketStatus.NOT_FOUND)));
+        assertEquals(BucketStatus.EXISTS, cache.status("present", () -> count(loads, BucketStatus.EXISTS)));
+        assertEquals(BucketStatus.NOT_FOUND, cache.status("missing", () -> count(loads, BucketStatus.NOT_FOUND)));
+        assertEquals(2, loads.get());
+
+        Thread.sleep(150);
+
+        // The missing bucket is asked again, the existing one is still served from the cache.
+        assertEquals(BucketStatus.EXISTS, cache.status("missing", () -> count(loads, BucketStatus.EXISTS)));
+        assertEquals(BucketStatus.EXISTS, cache.status("present", () -> count(loads, BucketStatus.NOT_FOUND)));
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    void failedLoadsAreNotCached() {
+        assertThrows(IllegalStateException.class, () -> cache.status("throttled", () -> {
+            throw new IllegalStateException("SlowDown");
+        }));
+
+        assertEquals(BucketStatus.EXISTS, cache.status("throttled", () -> BucketStatus.EXISTS));
+        assertEquals(1L, cache.stats().get("loadFailures"));
+    }
+
+    @Test
+    void errorsWakeTheCallersWaitingOnTheLoad() throws InterruptedException {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Throwable> failures = new CopyOnWriteArrayList<>();
+        Thread loader = Thread.ofVirtual().start(() -> failures.add(catchThrowable(() -> cache.status("erroring", () -> {
+            loading.countDown();
+            await(release);
+            throw new StackOverflowError();
+        }))));
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+        Thread waiter = Thread.ofVirtual().start(() -> failures.add(catchThrowable(() -> cache.status("erroring", () -> BucketStatus.EXISTS))));
+        waitUntil(() -> cache.stats().get("collapsedMisses").longValue() == 1);
+
+        release.countDown();
+        loader.join(5000);
+        waiter.join(5000);
+
+        assertEquals(2, failures.size());
+        assertTrue(failures.stream().allMatch(StackOverflowError.class::isInstance));
+        assertEquals(BucketStatus.EXISTS, cache.status("erroring", () -> BucketStatus.EXISTS));
+        assertEquals(1L, cache.stats().get("loadFailures"));
+    }
+
+    @Test
+    void staleEntriesAreRefreshedInTheBackground() throws InterruptedException {
+        ReflectionTestUtils.setField(cache, "refreshAfter", Duration.ofMillis(100));
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        assertEquals(List.of("first"), cache.buckets(() -> count(loads, List.of("first"))));
+        Thread.sleep(150);
+
+        // The stale list is served at once while the reload waits.
+        assertEquals(List.of("first"), cache.buckets(() -> {
+            await(release);
+            return count(loads, List.of("second"));
+        }));
+        assertEquals(List.of("first"), cache.buckets(() -> fail("Refreshed twice")));
+        release.countDown();
+
+        waitUntil(() -> cache.buckets(() -> fail("Loaded in the foreground")).equals(List.of("second")));
+        assertEquals(2, loads.get());
+        assertEquals(1L, cache.stats().get("refreshes"));
+    }
+
+    @Test
+    void failedRefreshKeepsServingTheCachedValue() throws InterruptedException {
+        ReflectionTestUtils.setField(cache, "refreshAfter", Duration.ofMillis(100));
+        assertEquals(List.of("first"), cache.buckets(() -> List.of("first")));
+        Thread.sleep(150);
+
+        assertEquals(List.of("first"), cache.buckets(() -> {
+            throw new IllegalStateException("SlowDown");
+        }));
+        waitUntil(() -> cache.stats().get("loadFailures").longValue() == 1);
+
+        // The next stale read tries again.
+        assertEquals(List.of("first"), cache.buckets(() -> List.of("second")));
+        waitUntil(() -> cache.buckets(() -> fail("Loaded in the foreground")).equals(List.of("second")));
+    }
+
+    @Test
+    void invalidatedEntriesAreLoadedAgain() {
+        assertEquals(BucketStatus.NOT_FOUND, cache.status("created", () -> BucketStatus.NOT_FOUND));
+        assertEquals(List.of(), cache.buckets(List::of));
+
+        cache.invalidate("created");
+
+        assertEquals(BucketStatus.EXISTS, cache.status("created", () -> BucketStatus.EXISTS));
+        assertEquals(List.of("created"), cache.buckets(() -> List.of("created")));
+        assertEquals(2L, cache.stats().get("invalidations"));
+    }
+
+    private static <V> V count(AtomicInteger loads, V value) {
+        loads.incrementAndGet();
+        return value;
+    }
+
+    private static Throwable catchThrowable(Runnable call) {
+        try {
+            call.run();
+            return null;
+        } catch (Throwable e) {
+            return e;
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                fail("Condition not met within 5 seconds");
+            }
+            Thread.sleep(10);
+        }
+    }
+}
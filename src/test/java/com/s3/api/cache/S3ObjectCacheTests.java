@@ -0,0 +1,65 @@
+package com.s3.api.cache;
+
+import com.s3.api.service.IS3Service;
+import com.s3.api.support.LocalS3ServerTestBase;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Exercises the local object cache behind downloads against the in-process S3 stand-in.
+ */
+@SpringBootTest(properties = {"s3.object-cache.enabled=true", "s3.object-cache.max-bytes=1048576"})
+class S3ObjectCacheTests extends LocalS3ServerTestBase {
+
+    private static final String BUCKET = "object-cache-bucket";
+
+    @Autowired
+    private IS3Service s3Service;
+
+    @Autowired
+    private S3ObjectCache objectCache;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void revalidatedDownloadsCountNoBytes() throws IOException {
+        byte[] content = randomContent(100 * 1024);
+        server.putObject(BUCKET, "revalidated.bin", content);
+        long hitsBefore = objectCache.stats().get("hits").longValue();
+        double bytesBefore = downloadedBytes();
+
+        s3Service.downloadFile(BUCKET, "revalidated.bin");
+        s3Service.downloadFile(BUCKET, "revalidated.bin");
+
+        assertArrayEquals(content, Files.readAllBytes(destinationFolder.resolve("revalidated.bin")));
+        assertEquals(hitsBefore + 1, objectCache.stats().get("hits").longValue());
+        // Only the first download transferred the object; the second was answered with 304 Not Modified.
+        assertEquals(content.length, downloadedBytes() - bytesBefore);
+    }
+
+    @Test
+    void objectsLargerThanTheCacheAreDownloadedDirectly() throws IOException {
+        byte[] content = randomContent(2 * 1024 * 1024);
+        server.putObject(BUCKET, "oversized.bin", content);
+        long bytesBefore = objectCache.stats().get("bytes").longValue();
+
+        s3Service.downloadFile(BUCKET, "oversized.bin");
+
+        assertArrayEquals(content, Files.readAllBytes(destinationFolder.resolve("oversized.bin")));
+        assertEquals(bytesBefore, objectCache.stats().get("bytes").longValue());
+    }
+
+    private double downloadedBytes() {
+        var counter = meterRegistry.find("s3.transfer.bytes").tags("direction", "download", "bucket", BUCKET).counter();
+        return counter == null ? 0 : counter.count();
+    }
+}
@@ -0,0 +1,64 @@
+package com.s3.api.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Exercises the bucket tags of the S3 metrics, which must stay bounded whatever bucket names callers send.
+ */
+class S3MetricsTests {
+
+    private MeterRegistry meterRegistry;
+
+    private S3Metrics metrics;
+
+    @BeforeEach
+    void createMetrics() {
+        meterRegistry = new SimpleMeterRegistry();
+        metrics = new S3Metrics();
+        ReflectionTestUtils.setField(metrics, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(metrics, "maxBucketTags", 2);
+    }
+
+    @Test
+    void failedCallsToUnknownBucketsAreTaggedOther() {
+        for (int i = 0; i < 10; i++) {
+            String bucketName = "random-" + i;
+            assertThrows(IllegalStateException.class, () -> metrics.record("headBucket", bucketName, () -> {
+                throw new IllegalStateException("NoSuchBucket");
+            }));
+        }
+
+        assertEquals(10, meterRegistry.get("s3.operation").tag("bucket", "other").timer().count());
+        assertNull(meterRegistry.find("s3.operation").tag("bucket", "random-0").timer());
+        assertNotNull(meterRegistry.find("s3.operation.active").tags("operation", "headBucket", "bucket", "other").gauge());
+    }
+
+    @Test
+    void bucketsAreTaggedOnceACallSucceededUpToTheLimit() {
+        metrics.record("headBucket", "first", () -> "found");
+        metrics.record("headBucket", "second", () -> "found");
+        metrics.record("headBucket", "third", () -> "found");
+        assertThrows(IllegalStateException.class, () -> metrics.record("getObject", "first", () -> {
+            throw new IllegalStateException("NoSuchKey");
+        }));
+        metrics.recordBytes("download", "fourth", 10);
+
+        assertNotNull(meterRegistry.find("s3.operation").tags("bucket", "first", "outcome", "error").timer());
+        assertNotNull(meterRegistry.find("s3.operation").tag("bucket", "second").timer());
+        assertEquals(1, meterRegistry.get("s3.operation").tag("bucket", "other").timer().count());
+        assertEquals(10, meterRegistry.get("s3.transfer.bytes").tag("bucket", "other").counter().count());
+
+        // Account-level operations have no bucket.
+        metrics.record("listBuckets", null, () -> "listed");
+        assertNotNull(meterRegistry.find("s3.operation").tags("operation", "listBuckets", "bucket", "none").timer());
+    }
+}
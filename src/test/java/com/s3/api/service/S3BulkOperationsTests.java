@@ -0,0 +1,183 @@
+package com.s3.api.service;
+
+import com.s3.api.dto.BulkJobEvent;
+import com.s3.api.support.LocalS3ServerTestBase;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Exercises bulk deletes and copies against the in-process S3 stand-in.
+ */
+class S3BulkOperationsTests extends LocalS3ServerTestBase {
+
+    private static final String BUCKET = "bulk-bucket";
+
+    @Autowired
+    private IS3Service s3Service;
+
+    @Test
+    void deletesPrefixInBatches() throws IOException {
+        seed("logs/", 2500);
+        seed("keep/", 3);
+        List<BulkJobEvent> events = new CopyOnWriteArrayList<>();
+
+        s3Service.deleteObjects(null, BUCKET, "logs/", null, events::add);
+
+        BulkJobEvent completed = events.get(events.size() - 1);
+        assertEquals("completed", completed.type());
+        assertEquals(2500, completed.succeeded());
+        assertEquals(0, completed.failed());
+        assertTrue(server.keys(BUCKET).stream().noneMatch(key -> key.startsWith("logs/")));
+        assertEquals(List.of("keep/0", "keep/1", "keep/2"), server.keys(BUCKET).stream().filter(key -> key.startsWith("keep/")).toList());
+    }
+
+    @Test
+    void reportsKeysThatCouldNotBeDeleted() throws IOException {
+        seed("denied/", 20);
+        server.denyDeletes(key -> key.endsWith("7"));
+        List<BulkJobEvent> events = new CopyOnWriteArrayList<>();
+
+        s3Service.deleteObjects(null, BUCKET, "denied/", null, events::add);
+
+        List<String> failedKeys = events.stream().filter(event -> "failure".equals(event.type())).map(BulkJobEvent::key).sorted().toList();
+        assertEquals(List.of("denied/17", "denied/7"), failedKeys);
+        assertEquals(18, events.get(events.size() - 1).succeeded());
+        assertEquals(failedKeys, server.keys(BUCKET).stream().filter(key -> key.startsWith("denied/")).toList());
+    }
+
+    @Test
+    void resumesKeyListAfterInterruption() throws IOException {
+        seed("resume/", 3000);
+
+        // The key list breaks off after 2500 keys: the first two batches are deleted and checkpointed.
+        assertThrows(IllegalStateException.class,
+                     () -> s3Service.deleteObjects("resume-job", BUCKET, null, keys("resume/", 3000, 2500), event -> { }));
+        assertEquals(1000, server.keys(BUCKET).stream().filter(key -> key.startsWith("resume/")).count());
+
+        List<BulkJobEvent> events = new CopyOnWriteArrayList<>();
+        s3Service.deleteObjects("resume-job", BUCKET, null, keys("resume/", 3000, -1), events::add);
+
+        assertEquals(2000, events.get(0).processed());
+        BulkJobEvent completed = events.get(events.size() - 1);
+        assertEquals(3000, completed.processed());
+        assertEquals(3000, completed.succeeded());
+        assertTrue(server.keys(BUCKET).stream().noneMatch(key -> key.startsWith("resume/")));
+    }
+
+    @Test
+    void rejectsAJobIdThatIsAlreadyRunning() throws Exception {
+        seed("running/", 10);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // The key list stalls until released, so the first job is still running when the second request arrives.
+        Stream<String> stalledKeys = IntStream.range(0, 10).mapToObj(i -> {
+            if (i == 5) {
+                await(release);
+            }
+            return "running/" + i;
+        });
+        CompletableFuture<Void> first = CompletableFuture.runAsync(() -> {
+            try {
+                s3Service.deleteObjects("running-job", BUCKET, null, stalledKeys, event -> {
+                    if ("started".equals(event.type())) {
+                        started.countDown();
+                    }
+                });
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        IllegalStateException conflict = assertThrows(IllegalStateException.class,
+                                                      () -> s3Service.deleteObjects("running-job", BUCKET, "running/", null, event -> { }));
+        assertTrue(conflict.getMessage().contains("already running"));
+
+        release.countDown();
+        first.get(10, TimeUnit.SECONDS);
+        assertTrue(server.keys(BUCKET).stream().noneMatch(key -> key.startsWith("running/")));
+        // Once the job ended, its id can be used again.
+        s3Service.deleteObjects("running-job", BUCKET, null, Stream.empty(), event -> { });
+    }
+
+    @Test
+    void disconnectedReportStopsTheJobSoItCanBeResumed() throws IOException {
+        seed("detached/", 2500);
+
+        // The client goes away once the first batch is checkpointed, as the NDJSON response does when it disconnects.
+        IOException stopped = assertTimeoutPreemptively(Duration.ofSeconds(10), () -> assertThrows(IOException.class,
+                () -> s3Service.deleteObjects("detached-job", BUCKET, "detached/", null, event -> {
+                    if ("progress".equals(event.type())) {
+                        throw new UncheckedIOException(new IOException("Broken pipe"));
+                    }
+                })));
+        assertTrue(stopped.getMessage().contains("could not be delivered"));
+
+        List<BulkJobEvent> events = new CopyOnWriteArrayList<>();
+        s3Service.deleteObjects("detached-job", BUCKET, "detached/", null, events::add);
+
+        assertTrue(events.get(0).processed() >= 1000);
+        assertEquals(2500, events.get(events.size() - 1).processed());
+        assertTrue(server.keys(BUCKET).stream().noneMatch(key -> key.startsWith("detached/")));
+    }
+
+    @Test
+    void copiesSmallAndLargeObjectsServerSide() throws IOException {
+        byte[] small = randomContent(1024);
+        byte[] large = randomContent(2 * PART_SIZE + 4321);
+        server.putObject(BUCKET, "source/small.bin", small);
+        server.putObject(BUCKET, "source/nested/large.bin", large);
+        List<BulkJobEvent> events = new CopyOnWriteArrayList<>();
+
+        s3Service.copyObjects(null, BUCKET, "source/", null, BUCKET, "target/", events::add);
+
+        assertEquals(2, events.get(events.size() - 1).succeeded());
+        assertArrayEquals(small, server.objectContent(BUCKET, "target/small.bin"));
+        assertArrayEquals(large, server.objectContent(BUCKET, "target/nested/large.bin"));
+        assertTrue(server.pendingUploads().isEmpty());
+    }
+
+    private static void seed(String prefix, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            server.putObject(BUCKET, prefix + i, new byte[]{(byte) i});
+        }
+    }
+
+    /**
+     * Lists {@code count} keys, failing like a dropped connection after {@code failAfter} keys (never if negative).
+     */
+    private static Stream<String> keys(String prefix, int count, int failAfter) {
+        return IntStream.range(0, count).mapToObj(i -> {
+            if (i == failAfter) {
+                throw new IllegalStateException("Key list interrupted");
+            }
+            return prefix + i;
+        });
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
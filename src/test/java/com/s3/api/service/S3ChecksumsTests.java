@@ -0,0 +1,132 @@
+package com.s3.api.service;
+
+import com.s3.api.support.LocalS3ServerTestBase;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Exercises upload checksums, download verification and content deduplication against the in-process S3 stand-in.
+ */
+@SpringBootTest(properties = {"aws.retry.max-retries=0", "s3.dedup.enabled=true"})
+class S3ChecksumsTests extends LocalS3ServerTestBase {
+
+    private static final String BUCKET = "checksum-bucket";
+
+    @Autowired
+    private IS3Service s3Service;
+
+    @Autowired
+    private S3RangedDownloader rangedDownloader;
+
+    @Test
+    void storesChecksumsAndVerifiesDownloads() throws IOException {
+        server.createBucket(BUCKET);
+        byte[] large = randomContent(2 * PART_SIZE + 1234);
+        byte[] small = randomContent(64 * 1024);
+
+        assertTrue(s3Service.uploadFile(BUCKET, "verified/large.bin", new ByteArrayInputStream(large), large.length));
+        assertTrue(s3Service.uploadFile(BUCKET, "verified/small.bin", new ByteArrayInputStream(small), small.length));
+
+        // The multipart object has a composite checksum over its 3 parts, the single put a whole-object one.
+        assertTrue(server.objectChecksums(BUCKET, "verified/large.bin").get("x-amz-checksum-crc32c").endsWith("-3"));
+        assertFalse(server.objectChecksums(BUCKET, "verified/small.bin").get("x-amz-checksum-crc32c").contains("-"));
+
+        s3Service.downloadFile(BUCKET, "verified/large.bin");
+        s3Service.downloadFile(BUCKET, "verified/small.bin");
+        assertArrayEquals(large, Files.readAllBytes(destinationFolder.resolve("large.bin")));
+        assertArrayEquals(small, Files.readAllBytes(destinationFolder.resolve("small.bin")));
+    }
+
+    @Test
+    void corruptedDownloadFailsWithoutLeavingAFile() throws IOException {
+        server.createBucket(BUCKET);
+        byte[] content = randomContent(2 * PART_SIZE + 99);
+        assertTrue(s3Service.uploadFile(BUCKET, "corrupted.bin", new ByteArrayInputStream(content), content.length));
+        server.corruptObject(BUCKET, "corrupted.bin", PART_SIZE + 10);
+
+        IOException error = assertThrows(IOException.class, () -> s3Service.downloadFile(BUCKET, "corrupted.bin"));
+
+        assertTrue(error.getMessage().contains("Checksum mismatch"));
+        assertFalse(Files.exists(destinationFolder.resolve("corrupted.bin")));
+    }
+
+    @Test
+    void rangedDownloadsAreVerifiedAsTheyAreWritten() throws IOException {
+        server.createBucket(BUCKET);
+        byte[] content = randomContent(3 * 1024 * 1024 + 17);
+        assertTrue(s3Service.uploadFile(BUCKET, "ranged.bin", new ByteArrayInputStream(content), content.length));
+        assertFalse(server.objectChecksums(BUCKET, "ranged.bin").get("x-amz-checksum-crc32c").contains("-"));
+
+        Object threshold = ReflectionTestUtils.getField(rangedDownloader, "threshold");
+        Object rangeSize = ReflectionTestUtils.getField(rangedDownloader, "rangeSize");
+        ReflectionTestUtils.setField(rangedDownloader, "threshold", 1024 * 1024L);
+        ReflectionTestUtils.setField(rangedDownloader, "rangeSize", 256 * 1024L);
+        try {
+            s3Service.downloadFile(BUCKET, "ranged.bin");
+            assertArrayEquals(content, Files.readAllBytes(destinationFolder.resolve("ranged.bin")));
+
+            server.corruptObject(BUCKET, "ranged.bin", 2 * 1024 * 1024);
+            IOException error = assertThrows(IOException.class, () -> s3Service.downloadFile(BUCKET, "ranged.bin"));
+            assertTrue(error.getMessage().contains("Checksum mismatch"));
+            assertFalse(Files.exists(destinationFolder.resolve("ranged.bin")));
+        } finally {
+            ReflectionTestUtils.setField(rangedDownloader, "threshold", threshold);
+            ReflectionTestUtils.setField(rangedDownloader, "rangeSize", rangeSize);
+        }
+    }
+
+    @Test
+    void duplicateUploadIsCopiedServerSide() throws IOException {
+        server.createBucket(BUCKET);
+        byte[] content = randomContent(3 * 1024 * 1024);
+        String sha256 = S3Checksums.sha256(new ByteArrayInputStream(content));
+        assertTrue(s3Service.uploadFile(BUCKET, "dedup/original.bin", new ByteArrayInputStream(content), content.length));
+
+        int requestsBefore = server.requestCount();
+        assertTrue(s3Service.uploadFile(BUCKET, "dedup/copy.bin", new ByteArrayInputStream(content), content.length, sha256));
+
+        // A single CopyObject, and no content sent.
+        assertEquals(1, server.requestCount() - requestsBefore);
+        assertArrayEquals(content, server.objectContent(BUCKET, "dedup/copy.bin"));
+    }
+
+    @Test
+    void staleEntryFallsBackToAnUpload() throws IOException {
+        server.createBucket(BUCKET);
+        byte[] content = randomContent(512 * 1024);
+        String sha256 = S3Checksums.sha256(new ByteArrayInputStream(content));
+        assertTrue(s3Service.uploadFile(BUCKET, "stale/original.bin", new ByteArrayInputStream(content), content.length));
+        // Overwritten behind the index's back: its entry no longer holds the content.
+        server.putObject(BUCKET, "stale/original.bin", randomContent(1000));
+
+        assertTrue(s3Service.uploadFile(BUCKET, "stale/copy.bin", new ByteArrayInputStream(content), content.length, sha256));
+
+        assertArrayEquals(content, server.objectContent(BUCKET, "stale/copy.bin"));
+    }
+
+    @Test
+    void wrongChecksumIsRejectedBeforeCommit() throws IOException {
+        server.createBucket(BUCKET);
+        byte[] content = randomContent(2 * PART_SIZE + 5);
+        String wrong = S3Checksums.sha256(new ByteArrayInputStream(randomContent(10)));
+
+        assertThrows(ChecksumMismatchException.class,
+                     () -> s3Service.uploadFile(BUCKET, "rejected.bin", new ByteArrayInputStream(content), content.length, wrong));
+
+        assertNull(server.objectChecksums(BUCKET, "rejected.bin"));
+        assertTrue(server.pendingUploads().isEmpty());
+    }
+}
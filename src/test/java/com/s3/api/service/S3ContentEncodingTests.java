@@ -0,0 +1,142 @@
+package com.s3.api.service;
+
+import com.s3.api.dto.TransferJobStatus;
+import com.s3.api.support.LocalS3ServerTestBase;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Exercises on-the-fly compression of uploads and decompression of downloads against the in-process S3 stand-in.
+ */
+@SpringBootTest(properties = {"s3.compression.enabled=true", "s3.async.enabled=true"})
+class S3ContentEncodingTests extends LocalS3ServerTestBase {
+
+    private static final String BUCKET = "encoding-bucket";
+
+    @Autowired
+    private IS3Service s3Service;
+
+    @Autowired
+    private IS3AsyncService s3AsyncService;
+
+    @Autowired
+    private S3TransferJobs transferJobs;
+
+    @Autowired
+    private S3ContentEncoding contentEncoding;
+
+    @Test
+    void compressesMatchingUploadsAndDecompressesDownloads() throws IOException {
+        server.createBucket(BUCKET);
+        byte[] json = "{\"level\":\"info\",\"message\":\"request served\"}\n".repeat(20_000).getBytes(StandardCharsets.UTF_8);
+
+        assertTrue(s3Service.uploadFile(BUCKET, "logs/app.json", new ByteArrayInputStream(json), json.length));
+
+        byte[] stored = server.objectContent(BUCKET, "logs/app.json");
+        assertTrue(stored.length * 5 < json.length);
+        try (InputStream decoded = S3ContentEncoding.decode(new ByteArrayInputStream(stored), "gzip")) {
+            assertArrayEquals(json, decoded.readAllBytes());
+        }
+
+        s3Service.downloadFile(BUCKET, "logs/app.json");
+        assertArrayEquals(json, Files.readAllBytes(destinationFolder.resolve("app.json")));
+    }
+
+    @Test
+    void asyncUploadsAndDownloadsAreEncodedToo() throws IOException {
+        server.createBucket(BUCKET);
+        byte[] json = "{\"level\":\"debug\",\"message\":\"cache hit\"}\n".repeat(20_000).getBytes(StandardCharsets.UTF_8);
+
+        assertTrue(s3AsyncService.uploadFile(BUCKET, "async/async-app.json", new ByteArrayInputStream(json), json.length).join());
+        assertTrue(server.objectContent(BUCKET, "async/async-app.json").length * 5 < json.length);
+
+        s3AsyncService.downloadFile(BUCKET, "async/async-app.json").join();
+        assertArrayEquals(json, Files.readAllBytes(destinationFolder.resolve("async-app.json")));
+    }
+
+    @Test
+    void transferJobsAreEncodedToo() throws IOException {
+        server.createBucket(BUCKET);
+        byte[] json = "{\"level\":\"warn\",\"message\":\"slow request\"}\n".repeat(20_000).getBytes(StandardCharsets.UTF_8);
+
+        TransferJobStatus upload = transferJobs.submitUpload(BUCKET, "jobs/job-app.json", new ByteArrayInputStream(json), json.length);
+        assertEquals("COMPLETED", await(upload.jobId()).state());
+        byte[] stored = server.objectContent(BUCKET, "jobs/job-app.json");
+        assertTrue(stored.length * 5 < json.length);
+        try (InputStream decoded = S3ContentEncoding.decode(new ByteArrayInputStream(stored), "gzip")) {
+            assertArrayEquals(json, decoded.readAllBytes());
+        }
+
+        TransferJobStatus download = transferJobs.submitDownload(BUCKET, "jobs/job-app.json");
+        assertEquals("COMPLETED", await(download.jobId()).state());
+        assertArrayEquals(json, Files.readAllBytes(destinationFolder.resolve("job-app.json")));
+    }
+
+    @Test
+    void storesOtherContentAsItIs() throws IOException {
+        server.createBucket(BUCKET);
+        byte[] image = randomContent(64 * 1024);
+
+        assertTrue(s3Service.uploadFile(BUCKET, "images/photo.png", new ByteArrayInputStream(image), image.length));
+
+        assertArrayEquals(image, server.objectContent(BUCKET, "images/photo.png"));
+        assertNull(contentEncoding.encodingFor("images/photo.png", image.length));
+        assertNull(contentEncoding.encodingFor("tiny.json", 10));
+    }
+
+    @Test
+    void zstdRoundTripSpansSeveralParts() throws IOException {
+        // Random content does not compress, so the encoded stream is larger than one part.
+        byte[] content = randomContent(2 * PART_SIZE + 777);
+        byte[] encoded;
+        try (InputStream in = contentEncoding.encode(new ByteArrayInputStream(content), S3ContentEncoding.Encoding.ZSTD)) {
+            encoded = in.readAllBytes();
+        }
+        try (InputStream decoded = S3ContentEncoding.decode(new ByteArrayInputStream(encoded), "zstd")) {
+            assertArrayEquals(content, decoded.readAllBytes());
+        }
+    }
+
+    @Test
+    void honoursAcceptEncoding() {
+        assertTrue(S3ContentEncoding.accepts("gzip, deflate, br", "gzip"));
+        assertTrue(S3ContentEncoding.accepts("*", "zstd"));
+        assertFalse(S3ContentEncoding.accepts("gzip;q=0, br", "gzip"));
+        assertFalse(S3ContentEncoding.accepts("gzip;q=0, *", "gzip"));
+        assertTrue(S3ContentEncoding.accepts("gzip;q=0, *", "zstd"));
+        assertFalse(S3ContentEncoding.accepts("zstd, *;q=0", "gzip"));
+        assertFalse(S3ContentEncoding.accepts(null, "gzip"));
+        assertEquals(S3ContentEncoding.Encoding.GZIP, S3ContentEncoding.Encoding.of("x-gzip"));
+    }
+
+    private TransferJobStatus await(String jobId) {
+        long deadline = System.nanoTime() + 30_000_000_000L;
+        while (System.nanoTime() < deadline) {
+            TransferJobStatus status = transferJobs.status(jobId);
+            if (status.isFinished()) {
+                return status;
+            }
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return fail("Job " + jobId + " did not finish");
+    }
+}
@@ -0,0 +1,266 @@
+package com.s3.api.service;
+
+import com.s3.api.dto.SyncEvent;
+import com.s3.api.support.LocalS3ServerTestBase;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Exercises incremental directory syncs in both directions against the in-process S3 stand-in.
+ */
+class S3DirectorySyncTests extends LocalS3ServerTestBase {
+
+    private static final String BUCKET = "sync-bucket";
+
+    // Dates on either side of the modification date the stand-in gives the objects it stores.
+    private static final Instant PAST = Instant.now().minus(Duration.ofHours(1));
+    private static final Instant FUTURE = Instant.now().plus(Duration.ofHours(1));
+
+    @Autowired
+    private S3DirectorySync directorySync;
+
+    @Autowired
+    private IS3Service s3Service;
+
+    @Test
+    void uploadsOnlyFilesThatChanged() throws IOException {
+        Path directory = directorySync.resolveDirectory("upload");
+        write(directory.resolve("a.txt"), "first", PAST);
+        write(directory.resolve("b.txt"), "second", PAST);
+        write(directory.resolve("nested/c.txt"), "third", PAST);
+        write(directory.resolve(".hidden"), "left out", PAST);
+        write(directory.resolve(".cache/d.txt"), "left out", PAST);
+
+        Map<String, String> changes = changes(sync(S3DirectorySync.Direction.UPLOAD, "upload", directory, false, false));
+        assertEquals(Map.of("a.txt", "missing", "b.txt", "missing", "nested/c.txt", "missing"), changes);
+        assertEquals(List.of("upload/a.txt", "upload/b.txt", "upload/nested/c.txt"), server.keys(BUCKET).stream().filter(key -> key.startsWith("upload/")).toList());
+
+        // Nothing changed: the listing and the walk are enough.
+        SyncEvent summary = summary(sync(S3DirectorySync.Direction.UPLOAD, "upload", directory, false, false));
+        assertEquals(3, summary.unchanged());
+        assertEquals(0, summary.transferred());
+
+        // A new size, new content under the same size, and a newer date over the same content.
+        write(directory.resolve("a.txt"), "first, longer", FUTURE);
+        write(directory.resolve("b.txt"), "SECOND", FUTURE);
+        Files.setLastModifiedTime(directory.resolve("nested/c.txt"), FileTime.from(FUTURE));
+
+        List<SyncEvent> events = sync(S3DirectorySync.Direction.UPLOAD, "upload", directory, false, false);
+        assertEquals(Map.of("a.txt", "size", "b.txt", "content"), changes(events));
+        assertEquals(1, summary(events).unchanged());
+        assertEquals(2, summary(events).transferred());
+        assertArrayEquals("SECOND".getBytes(StandardCharsets.UTF_8), server.objectContent(BUCKET, "upload/b.txt"));
+    }
+
+    @Test
+    void computesTheETagOfSingleAndMultipartUploads() throws IOException {
+        Path directory = directorySync.resolveDirectory("etag");
+        byte[] large = randomContent(2 * PART_SIZE + 100);
+        byte[] small = randomContent(1000);
+        Path largeFile = Files.write(Files.createDirectories(directory).resolve("large.bin"), large);
+        Path smallFile = Files.write(directory.resolve("small.bin"), small);
+
+        sync(S3DirectorySync.Direction.UPLOAD, "etag", directory, false, false);
+
+        Map<String, S3Object> objects = objects("etag/");
+        String largeETag = objects.get("etag/large.bin").eTag().replace("\"", "");
+        assertTrue(largeETag.endsWith("-3"));
+        assertEquals(largeETag, directorySync.eTagOf(largeFile, large.length));
+        assertEquals(objects.get("etag/small.bin").eTag().replace("\"", ""), directorySync.eTagOf(smallFile, small.length));
+
+        // A newer date over the same content is hashed and found unchanged, multipart or not.
+        Files.setLastModifiedTime(largeFile, FileTime.from(FUTURE));
+        Files.setLastModifiedTime(smallFile, FileTime.from(FUTURE));
+        int requestsBefore = server.requestCount();
+        SyncEvent summary = summary(sync(S3DirectorySync.Direction.UPLOAD, "etag", directory, false, false));
+
+        assertEquals(2, summary.unchanged());
+        assertEquals(0, summary.transferred());
+        // The listing alone.
+        assertEquals(1, server.requestCount() - requestsBefore);
+    }
+
+    @Test
+    void downloadsOnlyObjectsThatChanged() throws IOException {
+        Path directory = directorySync.resolveDirectory("download");
+        server.putObject(BUCKET, "download/new.txt", bytes("new"));
+        server.putObject(BUCKET, "download/resized.txt", bytes("resized"));
+        server.putObject(BUCKET, "download/rewritten.txt", bytes("REWRITTEN"));
+        server.putObject(BUCKET, "download/nested/same.txt", bytes("same"));
+        write(directory.resolve("resized.txt"), "old", PAST);
+        write(directory.resolve("rewritten.txt"), "rewritten", PAST);
+        write(directory.resolve("nested/same.txt"), "same", PAST);
+
+        List<SyncEvent> events = sync(S3DirectorySync.Direction.DOWNLOAD, "download", directory, false, false);
+
+        assertEquals(Map.of("new.txt", "missing", "resized.txt", "size", "rewritten.txt", "content"), changes(events));
+        assertEquals(1, summary(events).unchanged());
+        assertEquals("new", Files.readString(directory.resolve("new.txt")));
+        assertEquals("resized", Files.readString(directory.resolve("resized.txt")));
+        assertEquals("REWRITTEN", Files.readString(directory.resolve("rewritten.txt")));
+        // Downloaded files and files found unchanged take the object date, so the next sync hashes nothing.
+        Map<String, S3Object> objects = objects("download/");
+        assertEquals(objects.get("download/new.txt").lastModified(), Files.getLastModifiedTime(directory.resolve("new.txt")).toInstant());
+        assertEquals(objects.get("download/nested/same.txt").lastModified(), Files.getLastModifiedTime(directory.resolve("nested/same.txt")).toInstant());
+        try (var files = Files.list(directory)) {
+            assertTrue(files.noneMatch(file -> file.getFileName().toString().endsWith(".sync")));
+        }
+
+        SyncEvent summary = summary(sync(S3DirectorySync.Direction.DOWNLOAD, "download", directory, false, false));
+        assertEquals(4, summary.unchanged());
+        assertEquals(0, summary.transferred());
+    }
+
+    @Test
+    void deletesExtraneousObjectsOnUpload() throws IOException {
+        Path directory = directorySync.resolveDirectory("prune-remote");
+        write(directory.resolve("kept.txt"), "kept", PAST);
+        server.putObject(BUCKET, "prune-remote/kept.txt", bytes("kept"));
+        server.putObject(BUCKET, "prune-remote/extra.txt", bytes("extra"));
+        server.putObject(BUCKET, "prune-remote/nested/extra.txt", bytes("extra"));
+
+        // Left alone unless asked for.
+        sync(S3DirectorySync.Direction.UPLOAD, "prune-remote", directory, false, false);
+        assertEquals(3, server.keys(BUCKET).stream().filter(key -> key.startsWith("prune-remote/")).count());
+
+        List<SyncEvent> events = sync(S3DirectorySync.Direction.UPLOAD, "prune-remote", directory, false, true);
+
+        assertEquals(Set.of("extra.txt", "nested/extra.txt"), paths(events, "delete"));
+        assertEquals(2, summary(events).deleted());
+        assertEquals(List.of("prune-remote/kept.txt"), server.keys(BUCKET).stream().filter(key -> key.startsWith("prune-remote/")).toList());
+    }
+
+    @Test
+    void deletesExtraneousFilesOnDownload() throws IOException {
+        Path directory = directorySync.resolveDirectory("prune-local");
+        server.putObject(BUCKET, "prune-local/kept.txt", bytes("kept"));
+        write(directory.resolve("kept.txt"), "kept", FUTURE);
+        write(directory.resolve("extra.txt"), "extra", PAST);
+        write(directory.resolve("nested/extra.txt"), "extra", PAST);
+        write(directory.resolve(".hidden"), "left out", PAST);
+
+        sync(S3DirectorySync.Direction.DOWNLOAD, "prune-local", directory, false, false);
+        assertTrue(Files.exists(directory.resolve("extra.txt")));
+
+        List<SyncEvent> events = sync(S3DirectorySync.Direction.DOWNLOAD, "prune-local", directory, false, true);
+
+        assertEquals(Set.of("extra.txt", "nested/extra.txt"), paths(events, "delete"));
+        assertEquals(2, summary(events).deleted());
+        assertTrue(Files.exists(directory.resolve("kept.txt")));
+        assertFalse(Files.exists(directory.resolve("extra.txt")));
+        assertFalse(Files.exists(directory.resolve("nested/extra.txt")));
+        assertTrue(Files.exists(directory.resolve(".hidden")));
+    }
+
+    @Test
+    void dryRunReportsChangesWithoutMakingThem() throws IOException {
+        Path directory = directorySync.resolveDirectory("dry-run");
+        write(directory.resolve("local.txt"), "local", PAST);
+        write(directory.resolve("stale.txt"), "stale", PAST);
+        server.putObject(BUCKET, "dry-run/remote.txt", bytes("remote"));
+        server.putObject(BUCKET, "dry-run/stale.txt", bytes("fresh"));
+
+        List<SyncEvent> upload = sync(S3DirectorySync.Direction.UPLOAD, "dry-run", directory, true, true);
+
+        assertEquals(Set.of("local.txt"), paths(upload, "upload"));
+        assertEquals(Set.of("remote.txt"), paths(upload, "delete"));
+        assertTrue(summary(upload).dryRun());
+        assertEquals(0, summary(upload).transferred());
+        assertEquals(0, summary(upload).deleted());
+        assertEquals(List.of("dry-run/remote.txt", "dry-run/stale.txt"), server.keys(BUCKET).stream().filter(key -> key.startsWith("dry-run/")).toList());
+
+        List<SyncEvent> download = sync(S3DirectorySync.Direction.DOWNLOAD, "dry-run", directory, true, true);
+
+        assertEquals(Set.of("remote.txt", "stale.txt"), paths(download, "download"));
+        assertEquals(Set.of("local.txt"), paths(download, "delete"));
+        assertEquals(0, summary(download).transferred());
+        assertFalse(Files.exists(directory.resolve("remote.txt")));
+        assertEquals("stale", Files.readString(directory.resolve("stale.txt")));
+        assertTrue(Files.exists(directory.resolve("local.txt")));
+    }
+
+    @Test
+    void keepsDownloadsInsideTheDirectory() throws IOException {
+        assertNull(directorySync.resolveDirectory("../outside"));
+        assertNull(directorySync.resolveDirectory("nested/../../outside"));
+
+        Path directory = directorySync.resolveDirectory("traversal");
+        String escapingName = "escaped-" + System.nanoTime() + ".txt";
+        // The path of this key under the prefix is absolute, so it would resolve outside of the directory.
+        server.putObject(BUCKET, "traversal//" + escapingName, bytes("escaped"));
+        server.putObject(BUCKET, "traversal/inside.txt", bytes("inside"));
+
+        List<SyncEvent> events = sync(S3DirectorySync.Direction.DOWNLOAD, "traversal", directory, false, false);
+
+        SyncEvent failure = events.stream().filter(event -> "failure".equals(event.type())).findFirst().orElseThrow();
+        assertEquals("InvalidKey", failure.errorCode());
+        assertEquals(1, summary(events).failed());
+        assertEquals(1, summary(events).transferred());
+        assertEquals("inside", Files.readString(directory.resolve("inside.txt")));
+        assertFalse(Files.exists(directory.getRoot().resolve(escapingName)));
+    }
+
+    private List<SyncEvent> sync(S3DirectorySync.Direction direction, String prefix, Path directory, boolean dryRun, boolean deleteExtraneous)
+            throws IOException {
+        server.createBucket(BUCKET);
+        List<SyncEvent> events = new CopyOnWriteArrayList<>();
+        directorySync.sync(direction, BUCKET, prefix, directory, dryRun, deleteExtraneous, events::add);
+        return events;
+    }
+
+    /**
+     * @return The reason of each transfer, by path.
+     */
+    private static Map<String, String> changes(List<SyncEvent> events) {
+        return events.stream()
+                     .filter(event -> "upload".equals(event.type()) || "download".equals(event.type()))
+                     .collect(Collectors.toMap(SyncEvent::key, SyncEvent::reason));
+    }
+
+    private static Set<String> paths(List<SyncEvent> events, String type) {
+        return events.stream().filter(event -> type.equals(event.type())).map(SyncEvent::key).collect(Collectors.toSet());
+    }
+
+    private static SyncEvent summary(List<SyncEvent> events) {
+        SyncEvent summary = events.get(events.size() - 1);
+        assertEquals("summary", summary.type());
+        return summary;
+    }
+
+    private Map<String, S3Object> objects(String prefix) {
+        Map<String, S3Object> objects = new HashMap<>();
+        s3Service.listObjects(BUCKET, prefix, null, null, null, null, page -> page.contents().forEach(object -> objects.put(object.key(), object)));
+        return objects;
+    }
+
+    private static void write(Path file, String content, Instant lastModified) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+        Files.setLastModifiedTime(file, FileTime.from(lastModified));
+    }
+
+    private static byte[] bytes(String content) {
+        return content.getBytes(StandardCharsets.UTF_8);
+    }
+}
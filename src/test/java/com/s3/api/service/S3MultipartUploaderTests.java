@@ -0,0 +1,139 @@
+package com.s3.api.service;
+
+import com.s3.api.support.LocalS3ServerTestBase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.util.ReflectionTestUtils;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Exercises the multipart upload engine against the in-process S3 stand-in.
+ */
+class S3MultipartUploaderTests extends LocalS3ServerTestBase {
+
+    private static final String BUCKET = "multipart-bucket";
+
+    @Autowired
+    private IS3Service s3Service;
+
+    @Autowired
+    private S3MultipartUploader multipartUploader;
+
+    @TempDir
+    Path tempDir;
+
+    @AfterEach
+    void resetUploader() {
+        ReflectionTestUtils.setField(multipartUploader, "maxInFlightParts", 8);
+    }
+
+    @Test
+    void uploadsLargeFileInParts() throws IOException {
+        server.createBucket(BUCKET);
+        byte[] content = randomContent(4 * PART_SIZE + 12345);
+        Path file = Files.write(tempDir.resolve("large.bin"), content);
+
+        assertTrue(s3Service.uploadFile(BUCKET, "large.bin", file));
+
+        assertArrayEquals(content, server.objectContent(BUCKET, "large.bin"));
+        assertTrue(server.pendingUploads().isEmpty());
+    }
+
+    @Test
+    void retriesFailedParts() throws IOException {
+        server.createBucket(BUCKET);
+        byte[] content = randomContent(3 * PART_SIZE);
+        // More failures than the SDK retries on its own, so the engine has to retry the part.
+        server.failRequests(request -> request.isUploadPart() && "2".equals(request.query().get("partNumber")), 5, 500, "InternalError");
+
+        assertTrue(s3Service.uploadFile(BUCKET, "retried.bin", new ByteArrayInputStream(content), content.length));
+
+        assertArrayEquals(content, server.objectContent(BUCKET, "retried.bin"));
+    }
+
+    @Test
+    void abortsUploadWhenPartKeepsFailing() {
+        server.createBucket(BUCKET);
+        byte[] content = randomContent(3 * PART_SIZE);
+        server.failRequests(request -> request.isUploadPart() && "2".equals(request.query().get("partNumber")), Integer.MAX_VALUE, 400, "InvalidRequest");
+
+        assertThrows(SdkException.class,
+                     () -> s3Service.uploadFile(BUCKET, "aborted.bin", new ByteArrayInputStream(content), content.length));
+
+        assertTrue(server.pendingUploads().isEmpty());
+        assertNull(storedContent("aborted.bin"));
+    }
+
+    @Test
+    void shortContentAbortsTheUpload() {
+        server.createBucket(BUCKET);
+        byte[] content = randomContent(2 * PART_SIZE + 5);
+
+        // The stream ends a part and a half before the announced length, as a client that gave up would.
+        SdkException error = assertThrows(SdkException.class,
+                () -> s3Service.uploadFile(BUCKET, "truncated.bin", new ByteArrayInputStream(content), content.length + PART_SIZE + PART_SIZE / 2));
+
+        assertTrue(error.getMessage().contains("ended after " + content.length));
+        assertTrue(server.pendingUploads().isEmpty());
+        assertNull(storedContent("truncated.bin"));
+    }
+
+    @Test
+    void serviceErrorsKeepTheirStatus() {
+        server.createBucket(BUCKET);
+        byte[] content = randomContent(2 * PART_SIZE);
+        server.failRequests(request -> request.isUploadPart(), Integer.MAX_VALUE, 403, "AccessDenied");
+
+        S3Exception error = assertThrows(S3Exception.class,
+                                         () -> s3Service.uploadFile(BUCKET, "denied.bin", new ByteArrayInputStream(content), content.length));
+
+        assertEquals(403, error.statusCode());
+        assertTrue(server.pendingUploads().isEmpty());
+    }
+
+    @Test
+    void throughputScalesWithParallelParts() throws IOException {
+        server.createBucket(BUCKET);
+        Path file = Files.write(tempDir.resolve("parallel.bin"), randomContent(8 * PART_SIZE));
+        // Emulate a network round trip so the cost of each part is dominated by latency, as with real S3.
+        server.setLatencyMillis(150);
+
+        ReflectionTestUtils.setField(multipartUploader, "maxInFlightParts", 1);
+        long serialNanos = timeUpload(file, "serial.bin");
+
+        ReflectionTestUtils.setField(multipartUploader, "maxInFlightParts", 8);
+        long parallelNanos = timeUpload(file, "parallel.bin");
+
+        assertTrue(parallelNanos * 2 < serialNanos,
+                   "8 parallel parts took " + parallelNanos / 1_000_000 + "ms, 1 part at a time took " + serialNanos / 1_000_000 + "ms");
+    }
+
+    private long timeUpload(Path file, String key) {
+        long start = System.nanoTime();
+        assertTrue(s3Service.uploadFile(BUCKET, key, file));
+        return System.nanoTime() - start;
+    }
+
+    private byte[] storedContent(String key) {
+        try {
+            return server.objectContent(BUCKET, key);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
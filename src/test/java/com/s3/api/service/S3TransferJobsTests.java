@@ -0,0 +1,151 @@
+package com.s3.api.service;
+
+import com.s3.api.dto.TransferJobStatus;
+import com.s3.api.support.LocalS3ServerTestBase;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Exercises the asynchronous transfer job queue against the in-process S3 stand-in.
+ */
+@SpringBootTest(properties = "aws.retry.max-retries=0")
+class S3TransferJobsTests extends LocalS3ServerTestBase {
+
+    private static final String BUCKET = "transfer-bucket";
+
+    @Autowired
+    private S3TransferJobs transferJobs;
+
+    @Test
+    void resumedUploadOnlySendsMissingParts() throws IOException {
+        server.createBucket(BUCKET);
+        byte[] content = randomContent(3 * PART_SIZE + 4321);
+        server.failRequests(request -> request.isUploadPart() && "4".equals(request.query().get("partNumber")), Integer.MAX_VALUE, 500, "InternalError");
+
+        TransferJobStatus submitted = transferJobs.submitUpload(BUCKET, "resumed.bin", new ByteArrayInputStream(content), content.length);
+        assertEquals("FAILED", await(submitted.jobId()).state());
+
+        server.clearFaults();
+        int requestsBefore = server.requestCount();
+        transferJobs.resume(submitted.jobId());
+        TransferJobStatus completed = await(submitted.jobId());
+
+        assertEquals("COMPLETED", completed.state());
+        assertEquals(3L * PART_SIZE, completed.resumedBytes());
+        // ListParts, the last part that failed, and CompleteMultipartUpload.
+        assertEquals(3, server.requestCount() - requestsBefore);
+        assertArrayEquals(content, server.objectContent(BUCKET, "resumed.bin"));
+        assertTrue(server.pendingUploads().isEmpty());
+    }
+
+    @Test
+    void failedUploadIsDiscardedAfterItsRetention() throws IOException {
+        server.createBucket(BUCKET);
+        byte[] content = randomContent(2 * PART_SIZE + 10);
+        server.failRequests(request -> request.isUploadPart() && "2".equals(request.query().get("partNumber")), Integer.MAX_VALUE, 500, "InternalError");
+
+        TransferJobStatus submitted = transferJobs.submitUpload(BUCKET, "abandoned.bin", new ByteArrayInputStream(content), content.length);
+        assertEquals("FAILED", await(submitted.jobId()).state());
+        server.clearFaults();
+        assertFalse(server.pendingUploads().isEmpty());
+
+        Object failedRetention = ReflectionTestUtils.getField(transferJobs, "failedRetention");
+        ReflectionTestUtils.setField(transferJobs, "failedRetention", Duration.ZERO);
+        try {
+            ReflectionTestUtils.invokeMethod(transferJobs, "tick");
+        } finally {
+            ReflectionTestUtils.setField(transferJobs, "failedRetention", failedRetention);
+        }
+
+        assertEquals("CANCELLED", transferJobs.status(submitted.jobId()).state());
+        // The abort is sent asynchronously.
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (!server.pendingUploads().isEmpty() && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertTrue(server.pendingUploads().isEmpty());
+        try (var files = Files.list(workDirectory.resolve("transfer-jobs"))) {
+            assertTrue(files.noneMatch(file -> file.getFileName().toString().startsWith(submitted.jobId())));
+        }
+    }
+
+    @Test
+    void downloadReportsProgressUntilCompletion() throws IOException {
+        byte[] content = randomContent(2 * PART_SIZE + 123);
+        server.putObject(BUCKET, "nested/download.bin", content);
+        List<TransferJobStatus> events = new CopyOnWriteArrayList<>();
+
+        TransferJobStatus submitted = transferJobs.submitDownload(BUCKET, "nested/download.bin");
+        transferJobs.subscribe(submitted.jobId(), events::add);
+        TransferJobStatus completed = await(submitted.jobId());
+
+        assertEquals("COMPLETED", completed.state());
+        assertEquals(content.length, completed.transferredBytes());
+        assertArrayEquals(content, Files.readAllBytes(destinationFolder.resolve("download.bin")));
+        assertEquals("COMPLETED", events.get(events.size() - 1).state());
+    }
+
+    @Test
+    void cancelledDownloadLeavesNothingBehind() throws IOException {
+        server.putObject(BUCKET, "cancelled.bin", randomContent(4 * PART_SIZE));
+        server.setLatencyMillis(500);
+
+        TransferJobStatus submitted = transferJobs.submitDownload(BUCKET, "cancelled.bin");
+        transferJobs.cancel(submitted.jobId());
+
+        assertEquals("CANCELLED", await(submitted.jobId()).state());
+        assertFalse(Files.exists(destinationFolder.resolve("cancelled.bin")));
+        try (var files = Files.list(workDirectory.resolve("transfer-jobs"))) {
+            assertTrue(files.noneMatch(file -> file.getFileName().toString().startsWith(submitted.jobId())));
+        }
+    }
+
+    @Test
+    void uploadsCarryChecksumsAndCorruptedDownloadsFail() throws IOException {
+        server.createBucket(BUCKET);
+        byte[] content = randomContent(2 * PART_SIZE + 77);
+        TransferJobStatus uploaded = transferJobs.submitUpload(BUCKET, "checked.bin", new ByteArrayInputStream(content), content.length);
+        assertEquals("COMPLETED", await(uploaded.jobId()).state());
+        // A composite checksum over the 3 parts.
+        assertTrue(server.objectChecksums(BUCKET, "checked.bin").get("x-amz-checksum-crc32c").endsWith("-3"));
+
+        server.corruptObject(BUCKET, "checked.bin", PART_SIZE + 10);
+        TransferJobStatus downloaded = await(transferJobs.submitDownload(BUCKET, "checked.bin").jobId());
+
+        assertEquals("FAILED", downloaded.state());
+        assertTrue(downloaded.error().contains("Checksum mismatch"));
+        assertFalse(Files.exists(destinationFolder.resolve("checked.bin")));
+    }
+
+    private TransferJobStatus await(String jobId) {
+        long deadline = System.nanoTime() + 30_000_000_000L;
+        while (System.nanoTime() < deadline) {
+            TransferJobStatus status = transferJobs.status(jobId);
+            if (status.isFinished()) {
+                return status;
+            }
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return fail("Job " + jobId + " did not finish");
+    }
+}
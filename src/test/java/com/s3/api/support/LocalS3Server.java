@@ -0,0 +1,1062 @@
+package com.s3.api.support;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.zip.CRC32C;
+
+/**
+ * Minimal in-process S3-compatible HTTP server used as a local stand-in for tests and benchmarks.
+ * It understands path-style requests for the subset of the S3 API the application uses:
+ * bucket create/head/list, object listing, put/get/head (with ranges), delete (single and batched),
+ * server-side copy, and multipart uploads (including part copies and part listings).
+ * Faults, latency and a throttling capacity can be injected to test error handling and load shedding.
+ * CRC32C and SHA-256 flexible checksums sent as headers or trailers are verified, stored, and returned when the
+ * checksum mode is enabled, as whole-object or composite checksums like S3 does.
+ * Object content is kept in temporary files so large objects do not live on the heap.
+ */
+public class LocalS3Server implements AutoCloseable {
+
+    private static final DateTimeFormatter HTTP_DATE = DateTimeFormatter.RFC_1123_DATE_TIME;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Path storage;
+
+    // Bucket name -> (key -> object), keys kept sorted like S3 listings.
+    private final Map<String, ConcurrentSkipListMap<String, StoredObject>> buckets = new ConcurrentHashMap<>();
+    // Upload id -> in-progress multipart upload.
+    private final Map<String, MultipartUpload> uploads = new ConcurrentHashMap<>();
+
+    // Fault and latency injection.
+    private final List<Fault> faults = new ArrayList<>();
+    private volatile long latencyMillis;
+    private volatile Predicate<String> undeletableKeys = key -> false;
+    private final AtomicInteger requestCount = new AtomicInteger();
+
+    // Throttling: requests beyond this many per second answer 503 SlowDown, as S3 does when a prefix is too busy.
+    private volatile int maxRequestsPerSecond;
+    private long throttleWindow;
+    private int windowRequests;
+    private final AtomicInteger throttledCount = new AtomicInteger();
+
+    public LocalS3Server() throws IOException {
+        this.storage = Files.createTempDirectory("local-s3");
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.executor = Executors.newCachedThreadPool();
+        this.server.setExecutor(executor);
+        this.server.createContext("/", this::handle);
+        this.server.start();
+    }
+
+    /**
+     * @return The base URI to use as the S3 client endpoint override.
+     */
+    public URI endpoint() {
+        return URI.create("http://127.0.0.1:" + server.getAddress().getPort());
+    }
+
+    public void createBucket(String bucketName) {
+        buckets.computeIfAbsent(bucketName, name -> new ConcurrentSkipListMap<>());
+    }
+
+    /**
+     * Returns the stored content of an object, or null if it does not exist.
+     */
+    public byte[] objectContent(String bucketName, String key) throws IOException {
+        StoredObject object = bucket(bucketName) == null ? null : bucket(bucketName).get(key);
+        return object == null ? null : Files.readAllBytes(object.file());
+    }
+
+    /**
+     * Stores an object directly, bypassing HTTP.
+     */
+    public void putObject(String bucketName, String key, byte[] content) throws IOException {
+        createBucket(bucketName);
+        Path file = storage.resolve(UUID.randomUUID().toString());
+        Files.write(file, content);
+        bucket(bucketName).put(key, new StoredObject(file, content.length, quote(md5Hex(content)), now(), Map.of(), Map.of(), List.of()));
+    }
+
+    /**
+     * Copies a file into the stand-in's storage, for seeding large objects without going through HTTP.
+     */
+    public void putObject(String bucketName, String key, Path source) {
+        try {
+            createBucket(bucketName);
+            Path file = storage.resolve(UUID.randomUUID().toString());
+            Files.copy(source, file, StandardCopyOption.REPLACE_EXISTING);
+            MessageDigest digest = md5();
+            try (InputStream in = new DigestInputStream(Files.newInputStream(file), digest)) {
+                drain(in);
+            }
+            bucket(bucketName).put(key, new StoredObject(file, Files.size(file), quote(HexFormat.of().formatHex(digest.digest())), now(), Map.of(), Map.of(), List.of()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return The flexible checksums stored for an object, by header name (e.g. x-amz-checksum-crc32c).
+     */
+    public Map<String, String> objectChecksums(String bucketName, String key) {
+        StoredObject object = bucket(bucketName) == null ? null : bucket(bucketName).get(key);
+        return object == null ? null : object.checksums();
+    }
+
+    /**
+     * Flips a byte of a stored object without updating its ETag or checksums, as silent corruption would.
+     */
+    public void corruptObject(String bucketName, String key, long position) throws IOException {
+        Path file = bucket(bucketName).get(key).file();
+        byte[] content = Files.readAllBytes(file);
+        content[(int) position] ^= 0x5a;
+        Files.write(file, content);
+    }
+
+    /**
+     * @return The ids of multipart uploads that were neither completed nor aborted.
+     */
+    public Set<String> pendingUploads() {
+        return Set.copyOf(uploads.keySet());
+    }
+
+    public int requestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * Adds a fixed delay before every request is served, to emulate network round trips.
+     */
+    public void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    /**
+     * Makes the next {@code times} requests matching the predicate fail with the given status and error code.
+     * Use {@link Integer#MAX_VALUE} to fail forever.
+     */
+    public void failRequests(Predicate<Request> matcher, int times, int status, String errorCode) {
+        synchronized (faults) {
+            faults.add(new Fault(matcher, new AtomicInteger(times), status, errorCode));
+        }
+    }
+
+    public void clearFaults() {
+        synchronized (faults) {
+            faults.clear();
+        }
+        undeletableKeys = key -> false;
+        maxRequestsPerSecond = 0;
+    }
+
+    /**
+     * Answers 503 SlowDown to the requests beyond a capacity, counted per one-second window.
+     *
+     * @param requestsPerSecond The capacity, or 0 to serve every request.
+     */
+    public void throttleAbove(int requestsPerSecond) {
+        this.maxRequestsPerSecond = requestsPerSecond;
+    }
+
+    /**
+     * @return The number of requests answered 503 SlowDown because of {@link #throttleAbove(int)}.
+     */
+    public int throttledCount() {
+        return throttledCount.get();
+    }
+
+    /**
+     * Makes DeleteObjects report an AccessDenied error for every key matching the predicate, and keep the object.
+     */
+    public void denyDeletes(Predicate<String> keys) {
+        this.undeletableKeys = keys;
+    }
+
+    /**
+     * @return The keys stored in a bucket, in listing order.
+     */
+    public List<String> keys(String bucketName) {
+        return bucket(bucketName) == null ? List.of() : List.copyOf(bucket(bucketName).keySet());
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.stop(0);
+        executor.shutdownNow();
+        try (var files = Files.walk(storage)) {
+            files.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    /**
+     * Request summary exposed to fault matchers.
+     */
+    public record Request(String method, String bucket, String key, Map<String, String> query) {
+        public boolean isUploadPart() {
+            return "PUT".equals(method) && query.containsKey("partNumber");
+        }
+    }
+
+    private record Fault(Predicate<Request> matcher, AtomicInteger remaining, int status, String errorCode) {
+    }
+
+    private record StoredObject(Path file, long size, String eTag, Instant lastModified, Map<String, String> headers,
+                                Map<String, String> checksums, List<Long> partSizes) {
+    }
+
+    private record Part(Path file, long size, String eTag, Map<String, String> checksums) {
+    }
+
+    private record MultipartUpload(String bucket, String key, Map<String, String> headers, String checksumAlgorithm, Map<Integer, Part> parts) {
+    }
+
+    /**
+     * A request body, with the checksums computed while it was read and the trailers that followed it.
+     */
+    private record Body(Path file, long size, String md5, String crc32c, String sha256, Map<String, String> trailers) {
+    }
+
+    private ConcurrentSkipListMap<String, StoredObject> bucket(String bucketName) {
+        return buckets.get(bucketName);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            requestCount.incrementAndGet();
+            String rawPath = exchange.getRequestURI().getRawPath();
+            String path = rawPath.startsWith("/") ? rawPath.substring(1) : rawPath;
+            int slash = path.indexOf('/');
+            String bucketName = decode(slash < 0 ? path : path.substring(0, slash));
+            String key = slash < 0 || slash == path.length() - 1 ? null : decode(path.substring(slash + 1));
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            Request request = new Request(exchange.getRequestMethod(), bucketName, key, query);
+
+            if (latencyMillis > 0) {
+                Thread.sleep(latencyMillis);
+            }
+            if (overCapacity()) {
+                throttledCount.incrementAndGet();
+                drain(exchange.getRequestBody());
+                sendError(exchange, 503, "HEAD".equals(request.method()) ? null : "SlowDown");
+                return;
+            }
+            Fault fault = matchFault(request);
+            if (fault != null) {
+                drain(exchange.getRequestBody());
+                sendError(exchange, fault.status(), fault.errorCode());
+                return;
+            }
+
+            if (bucketName.isEmpty()) {
+                listBuckets(exchange);
+            } else if (key == null) {
+                handleBucket(exchange, request);
+            } else {
+                handleObject(exchange, request);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            sendError(exchange, 500, "InternalError");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private synchronized boolean overCapacity() {
+        if (maxRequestsPerSecond <= 0) {
+            return false;
+        }
+        long window = System.nanoTime() / 1_000_000_000L;
+        if (window != throttleWindow) {
+            throttleWindow = window;
+            windowRequests = 0;
+        }
+        return ++windowRequests > maxRequestsPerSecond;
+    }
+
+    private Fault matchFault(Request request) {
+        synchronized (faults) {
+            for (Fault fault : faults) {
+                if (fault.matcher().test(request) && fault.remaining().getAndDecrement() > 0) {
+                    return fault;
+                }
+            }
+        }
+        return null;
+    }
+
+    private void listBuckets(HttpExchange exchange) throws IOException {
+        StringBuilder xml = new StringBuilder("<ListAllMyBucketsResult xmlns=\"http://s3.amazonaws.com/doc/2006-03-01/\"><Buckets>");
+        buckets.keySet().stream().sorted().forEach(name -> xml.append("<Bucket><Name>").append(escape(name))
+                                                              .append("</Name><CreationDate>").append(now()).append("</CreationDate></Bucket>"));
+        xml.append("</Buckets></ListAllMyBucketsResult>");
+        sendXml(exchange, 200, xml.toString());
+    }
+
+    private void handleBucket(HttpExchange exchange, Request request) throws IOException {
+        String bucketName = request.bucket();
+        switch (request.method()) {
+            case "PUT" -> {
+                drain(exchange.getRequestBody());
+                createBucket(bucketName);
+                exchange.getResponseHeaders().set("Location", "/" + bucketName);
+                exchange.sendResponseHeaders(200, -1);
+            }
+            case "HEAD" -> exchange.sendResponseHeaders(bucket(bucketName) == null ? 404 : 200, -1);
+            case "GET" -> {
+                if (bucket(bucketName) == null) {
+                    sendError(exchange, 404, "NoSuchBucket");
+                } else {
+                    listObjects(exchange, request);
+                }
+            }
+            case "POST" -> {
+                if (bucket(bucketName) == null) {
+                    drain(exchange.getRequestBody());
+                    sendError(exchange, 404, "NoSuchBucket");
+                } else if (request.query().containsKey("delete")) {
+                    deleteObjects(exchange, request);
+                } else {
+                    drain(exchange.getRequestBody());
+                    sendError(exchange, 501, "NotImplemented");
+                }
+            }
+            default -> sendError(exchange, 501, "NotImplemented");
+        }
+    }
+
+    /**
+     * ListObjectsV2: keys after start-after or the continuation token (the last key of the previous page),
+     * rolled up by delimiter. Keys are returned unencoded, so the SDK does not URL-decode them.
+     */
+    private void listObjects(HttpExchange exchange, Request request) throws IOException {
+        Map<String, String> query = request.query();
+        String prefix = query.getOrDefault("prefix", "");
+        String delimiter = query.get("delimiter");
+        int maxKeys = Integer.parseInt(query.getOrDefault("max-keys", "1000"));
+        String after = query.containsKey("continuation-token") ? query.get("continuation-token") : query.get("start-after");
+
+        ConcurrentSkipListMap<String, StoredObject> bucket = bucket(request.bucket());
+        Map<String, StoredObject> candidates = after == null || after.isEmpty() ? bucket : bucket.tailMap(after, false);
+        StringBuilder contents = new StringBuilder();
+        List<String> commonPrefixes = new ArrayList<>();
+        int count = 0;
+        String lastKey = null;
+        boolean truncated = false;
+        for (Map.Entry<String, StoredObject> entry : candidates.entrySet()) {
+            String key = entry.getKey();
+            if (!key.startsWith(prefix)) {
+                if (key.compareTo(prefix) > 0) {
+                    break;
+                }
+                continue;
+            }
+            String commonPrefix = null;
+            if (delimiter != null && !delimiter.isEmpty()) {
+                int index = key.indexOf(delimiter, prefix.length());
+                if (index >= 0) {
+                    commonPrefix = key.substring(0, index + delimiter.length());
+                }
+            }
+            if (commonPrefix != null && !commonPrefixes.isEmpty() && commonPrefixes.get(commonPrefixes.size() - 1).equals(commonPrefix)) {
+                lastKey = key;
+                continue;
+            }
+            if (count == maxKeys) {
+                truncated = true;
+                break;
+            }
+            count++;
+            lastKey = key;
+            if (commonPrefix != null) {
+                commonPrefixes.add(commonPrefix);
+            } else {
+                StoredObject object = entry.getValue();
+                contents.append("<Contents><Key>").append(escape(key)).append("</Key><LastModified>").append(object.lastModified())
+                        .append("</LastModified><ETag>").append(escape(object.eTag())).append("</ETag><Size>").append(object.size())
+                        .append("</Size><StorageClass>STANDARD</StorageClass></Contents>");
+            }
+        }
+
+        StringBuilder xml = new StringBuilder("<ListBucketResult xmlns=\"http://s3.amazonaws.com/doc/2006-03-01/\"><Name>")
+                .append(escape(request.bucket())).append("</Name><Prefix>").append(escape(prefix)).append("</Prefix><KeyCount>")
+                .append(count).append("</KeyCount><MaxKeys>").append(maxKeys).append("</MaxKeys><IsTruncated>").append(truncated)
+                .append("</IsTruncated>").append(contents);
+        commonPrefixes.forEach(commonPrefix -> xml.append("<CommonPrefixes><Prefix>").append(escape(commonPrefix)).append("</Prefix></CommonPrefixes>"));
+        if (truncated) {
+            xml.append("<NextContinuationToken>").append(escape(lastKey)).append("</NextContinuationToken>");
+        }
+        xml.append("</ListBucketResult>");
+        sendXml(exchange, 200, xml.toString());
+    }
+
+    /**
+     * DeleteObjects: deletes up to 1000 keys, reporting per-key errors for keys denied with {@link #denyDeletes}.
+     */
+    private void deleteObjects(HttpExchange exchange, Request request) throws IOException {
+        String requestXml = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        List<String> keys = xmlValues(requestXml, "Key");
+        if (keys.size() > 1000) {
+            sendError(exchange, 400, "MalformedXML");
+            return;
+        }
+        boolean quiet = xmlValues(requestXml, "Quiet").contains("true");
+        ConcurrentSkipListMap<String, StoredObject> bucket = bucket(request.bucket());
+        StringBuilder xml = new StringBuilder("<DeleteResult xmlns=\"http://s3.amazonaws.com/doc/2006-03-01/\">");
+        for (String key : keys) {
+            if (undeletableKeys.test(key)) {
+                xml.append("<Error><Key>").append(escape(key)).append("</Key><Code>AccessDenied</Code><Message>Access Denied</Message></Error>");
+                continue;
+            }
+            StoredObject removed = bucket.remove(key);
+            if (removed != null) {
+                removed.file().toFile().delete();
+            }
+            if (!quiet) {
+                xml.append("<Deleted><Key>").append(escape(key)).append("</Key></Deleted>");
+            }
+        }
+        xml.append("</DeleteResult>");
+        sendXml(exchange, 200, xml.toString());
+    }
+
+    private void handleObject(HttpExchange exchange, Request request) throws IOException {
+        ConcurrentSkipListMap<String, StoredObject> bucket = bucket(request.bucket());
+        if (bucket == null) {
+            drain(exchange.getRequestBody());
+            sendError(exchange, 404, "NoSuchBucket");
+            return;
+        }
+        Map<String, String> query = request.query();
+        switch (request.method()) {
+            case "PUT" -> {
+                String copySource = exchange.getRequestHeaders().getFirst("x-amz-copy-source");
+                if (copySource != null) {
+                    drain(exchange.getRequestBody());
+                    copyObject(exchange, request, bucket, copySource);
+                } else if (query.containsKey("partNumber")) {
+                    uploadPart(exchange, request);
+                } else {
+                    putObject(exchange, request, bucket);
+                }
+            }
+            case "POST" -> {
+                if (query.containsKey("uploads")) {
+                    createMultipartUpload(exchange, request);
+                } else if (query.containsKey("uploadId")) {
+                    completeMultipartUpload(exchange, request, bucket);
+                } else {
+                    sendError(exchange, 501, "NotImplemented");
+                }
+            }
+            case "DELETE" -> {
+                if (query.containsKey("uploadId")) {
+                    MultipartUpload upload = uploads.remove(query.get("uploadId"));
+                    if (upload != null) {
+                        upload.parts().values().forEach(part -> part.file().toFile().delete());
+                    }
+                } else {
+                    StoredObject removed = bucket.remove(request.key());
+                    if (removed != null) {
+                        removed.file().toFile().delete();
+                    }
+                }
+                exchange.sendResponseHeaders(204, -1);
+            }
+            case "GET", "HEAD" -> {
+                if ("GET".equals(request.method()) && query.containsKey("uploadId")) {
+                    listParts(exchange, request);
+                } else {
+                    getObject(exchange, request, bucket);
+                }
+            }
+            default -> sendError(exchange, 501, "NotImplemented");
+        }
+    }
+
+    private void putObject(HttpExchange exchange, Request request, Map<String, StoredObject> bucket) throws IOException {
+        Body body = readBody(exchange);
+        Map<String, String> checksums = checksums(exchange.getRequestHeaders(), body);
+        if (checksums == null) {
+            body.file().toFile().delete();
+            sendError(exchange, 400, "BadDigest");
+            return;
+        }
+        StoredObject object = new StoredObject(body.file(), body.size(), quote(body.md5()), now(), storedHeaders(exchange.getRequestHeaders()),
+                                               checksums, List.of());
+        StoredObject previous = bucket.put(request.key(), object);
+        if (previous != null) {
+            previous.file().toFile().delete();
+        }
+        exchange.getResponseHeaders().set("ETag", object.eTag());
+        exchange.sendResponseHeaders(200, -1);
+    }
+
+    /**
+     * CopyObject, or UploadPartCopy when a part number is given (optionally for a byte range of the source).
+     */
+    private void copyObject(HttpExchange exchange, Request request, Map<String, StoredObject> bucket, String copySource) throws IOException {
+        String source = copySource.startsWith("/") ? copySource.substring(1) : copySource;
+        int versionSeparator = source.indexOf("?versionId=");
+        if (versionSeparator >= 0) {
+            source = source.substring(0, versionSeparator);
+        }
+        int slash = source.indexOf('/');
+        Map<String, StoredObject> sourceBucket = slash < 0 ? null : bucket(decode(source.substring(0, slash)));
+        StoredObject sourceObject = sourceBucket == null ? null : sourceBucket.get(decode(source.substring(slash + 1)));
+        if (sourceObject == null) {
+            sendError(exchange, 404, "NoSuchKey");
+            return;
+        }
+        Headers requestHeaders = exchange.getRequestHeaders();
+        String ifMatch = requestHeaders.getFirst("x-amz-copy-source-if-match");
+        if (ifMatch != null && !ifMatch.equals(sourceObject.eTag())) {
+            sendError(exchange, 412, "PreconditionFailed");
+            return;
+        }
+
+        long start = 0;
+        long length = sourceObject.size();
+        String range = requestHeaders.getFirst("x-amz-copy-source-range");
+        if (range != null && range.startsWith("bytes=")) {
+            String[] bounds = range.substring("bytes=".length()).split("-");
+            start = Long.parseLong(bounds[0]);
+            length = Long.parseLong(bounds[1]) - start + 1;
+        }
+        Path file = storage.resolve(UUID.randomUUID().toString());
+        MessageDigest digest = md5();
+        try (InputStream in = Files.newInputStream(sourceObject.file()); OutputStream out = new DigestOutputStream(Files.newOutputStream(file), digest)) {
+            in.skipNBytes(start);
+            copy(in, out, length);
+        }
+        String eTag = quote(HexFormat.of().formatHex(digest.digest()));
+
+        if (request.query().containsKey("partNumber")) {
+            MultipartUpload upload = uploads.get(request.query().get("uploadId"));
+            if (upload == null) {
+                file.toFile().delete();
+                sendError(exchange, 404, "NoSuchUpload");
+                return;
+            }
+            Part previous = upload.parts().put(Integer.parseInt(request.query().get("partNumber")), new Part(file, length, eTag, Map.of()));
+            if (previous != null) {
+                previous.file().toFile().delete();
+            }
+            sendXml(exchange, 200, "<CopyPartResult><ETag>" + escape(eTag) + "</ETag><LastModified>" + now() + "</LastModified></CopyPartResult>");
+            return;
+        }
+
+        Map<String, String> headers = "REPLACE".equals(requestHeaders.getFirst("x-amz-metadata-directive"))
+                ? storedHeaders(requestHeaders)
+                : sourceObject.headers();
+        // The copy gets a whole-object checksum when one is asked for.
+        String checksumAlgorithm = requestHeaders.getFirst("x-amz-checksum-algorithm");
+        Map<String, String> checksums = checksumAlgorithm == null ? Map.of() : fileChecksum(file, checksumAlgorithm);
+        StoredObject copied = new StoredObject(file, length, eTag, now(), headers, checksums, List.of());
+        StoredObject previous = bucket.put(request.key(), copied);
+        if (previous != null) {
+            previous.file().toFile().delete();
+        }
+        sendXml(exchange, 200, "<CopyObjectResult><ETag>" + escape(eTag) + "</ETag><LastModified>" + copied.lastModified() + "</LastModified></CopyObjectResult>");
+    }
+
+    private void createMultipartUpload(HttpExchange exchange, Request request) throws IOException {
+        drain(exchange.getRequestBody());
+        String uploadId = UUID.randomUUID().toString();
+        uploads.put(uploadId, new MultipartUpload(request.bucket(), request.key(), storedHeaders(exchange.getRequestHeaders()),
+                                                  exchange.getRequestHeaders().getFirst("x-amz-checksum-algorithm"), new ConcurrentHashMap<>()));
+        sendXml(exchange, 200, "<InitiateMultipartUploadResult xmlns=\"http://s3.amazonaws.com/doc/2006-03-01/\"><Bucket>" + escape(request.bucket())
+                + "</Bucket><Key>" + escape(request.key()) + "</Key><UploadId>" + uploadId + "</UploadId></InitiateMultipartUploadResult>");
+    }
+
+    private void uploadPart(HttpExchange exchange, Request request) throws IOException {
+        MultipartUpload upload = uploads.get(request.query().get("uploadId"));
+        if (upload == null) {
+            drain(exchange.getRequestBody());
+            sendError(exchange, 404, "NoSuchUpload");
+            return;
+        }
+        Body body = readBody(exchange);
+        Map<String, String> checksums = checksums(exchange.getRequestHeaders(), body);
+        if (checksums == null) {
+            body.file().toFile().delete();
+            sendError(exchange, 400, "BadDigest");
+            return;
+        }
+        int partNumber = Integer.parseInt(request.query().get("partNumber"));
+        Part part = new Part(body.file(), body.size(), quote(body.md5()), checksums);
+        Part previous = upload.parts().put(partNumber, part);
+        if (previous != null) {
+            previous.file().toFile().delete();
+        }
+        exchange.getResponseHeaders().set("ETag", part.eTag());
+        exchange.sendResponseHeaders(200, -1);
+    }
+
+    /**
+     * ListParts: the parts stored so far for a multipart upload, in part number order, on a single page.
+     */
+    private void listParts(HttpExchange exchange, Request request) throws IOException {
+        MultipartUpload upload = uploads.get(request.query().get("uploadId"));
+        if (upload == null) {
+            sendError(exchange, 404, "NoSuchUpload");
+            return;
+        }
+        StringBuilder xml = new StringBuilder("<ListPartsResult xmlns=\"http://s3.amazonaws.com/doc/2006-03-01/\"><Bucket>")
+                .append(escape(request.bucket())).append("</Bucket><Key>").append(escape(request.key())).append("</Key><UploadId>")
+                .append(escape(request.query().get("uploadId"))).append("</UploadId><IsTruncated>false</IsTruncated>");
+        upload.parts().entrySet().stream().sorted(Map.Entry.comparingByKey()).forEach(part -> xml.append("<Part><PartNumber>").append(part.getKey())
+                .append("</PartNumber><ETag>").append(escape(part.getValue().eTag())).append("</ETag><Size>").append(part.getValue().size())
+                .append("</Size>").append(checksumElements(part.getValue().checksums())).append("</Part>"));
+        xml.append("</ListPartsResult>");
+        sendXml(exchange, 200, xml.toString());
+    }
+
+    /**
+     * The checksum elements S3 lists with a part, for the checksums sent when it was uploaded.
+     */
+    private static String checksumElements(Map<String, String> checksums) {
+        StringBuilder xml = new StringBuilder();
+        if (checksums.containsKey("x-amz-checksum-crc32c")) {
+            xml.append("<ChecksumCRC32C>").append(escape(checksums.get("x-amz-checksum-crc32c"))).append("</ChecksumCRC32C>");
+        }
+        if (checksums.containsKey("x-amz-checksum-sha256")) {
+            xml.append("<ChecksumSHA256>").append(escape(checksums.get("x-amz-checksum-sha256"))).append("</ChecksumSHA256>");
+        }
+        return xml.toString();
+    }
+
+    private void completeMultipartUpload(HttpExchange exchange, Request request, Map<String, StoredObject> bucket) throws IOException {
+        String requestXml = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        MultipartUpload upload = uploads.get(request.query().get("uploadId"));
+        if (upload == null) {
+            sendError(exchange, 404, "NoSuchUpload");
+            return;
+        }
+        List<Integer> partNumbers = new ArrayList<>();
+        for (String value : xmlValues(requestXml, "PartNumber")) {
+            partNumbers.add(Integer.parseInt(value));
+        }
+        Path file = storage.resolve(UUID.randomUUID().toString());
+        long size = 0;
+        MessageDigest etagDigest = md5();
+        // Composite checksum: the checksum of the part checksums, when the upload was started with an algorithm.
+        String checksumHeader = upload.checksumAlgorithm() == null ? null : "x-amz-checksum-" + upload.checksumAlgorithm().toLowerCase().replace("-", "");
+        Checksummer composite = checksumHeader == null ? null : new Checksummer();
+        List<Long> partSizes = new ArrayList<>();
+        try (OutputStream out = Files.newOutputStream(file)) {
+            for (Integer partNumber : partNumbers) {
+                Part part = upload.parts().get(partNumber);
+                String partChecksum = part == null || composite == null ? null : part.checksums().get(checksumHeader);
+                if (part == null || (composite != null && partChecksum == null)) {
+                    sendError(exchange, 400, "InvalidPart");
+                    return;
+                }
+                Files.copy(part.file(), out);
+                size += part.size();
+                partSizes.add(part.size());
+                etagDigest.update(HexFormat.of().parseHex(part.eTag().replace("\"", "")));
+                if (composite != null) {
+                    byte[] raw = Base64.getDecoder().decode(partChecksum);
+                    composite.update(raw, 0, raw.length);
+                }
+            }
+        }
+        uploads.remove(request.query().get("uploadId"));
+        upload.parts().values().forEach(part -> part.file().toFile().delete());
+        String eTag = quote(HexFormat.of().formatHex(etagDigest.digest()) + "-" + partNumbers.size());
+        Map<String, String> checksums = composite == null ? Map.of() : Map.of(checksumHeader, composite.value(checksumHeader) + "-" + partNumbers.size());
+        StoredObject previous = bucket.put(request.key(), new StoredObject(file, size, eTag, now(), upload.headers(), checksums, List.copyOf(partSizes)));
+        if (previous != null) {
+            previous.file().toFile().delete();
+        }
+        sendXml(exchange, 200, "<CompleteMultipartUploadResult xmlns=\"http://s3.amazonaws.com/doc/2006-03-01/\"><Bucket>" + escape(request.bucket())
+                + "</Bucket><Key>" + escape(request.key()) + "</Key><ETag>" + escape(eTag) + "</ETag></CompleteMultipartUploadResult>");
+    }
+
+    private void getObject(HttpExchange exchange, Request request, Map<String, StoredObject> bucket) throws IOException {
+        StoredObject object = bucket.get(request.key());
+        boolean head = "HEAD".equals(request.method());
+        if (object == null) {
+            sendError(exchange, 404, head ? null : "NoSuchKey");
+            return;
+        }
+        Headers requestHeaders = exchange.getRequestHeaders();
+        Headers responseHeaders = exchange.getResponseHeaders();
+        responseHeaders.set("ETag", object.eTag());
+        responseHeaders.set("Last-Modified", HTTP_DATE.format(ZonedDateTime.ofInstant(object.lastModified(), ZoneOffset.UTC)));
+        responseHeaders.set("Accept-Ranges", "bytes");
+        object.headers().forEach(responseHeaders::set);
+
+        String ifMatch = requestHeaders.getFirst("If-Match");
+        if (ifMatch != null && !ifMatch.equals(object.eTag())) {
+            sendError(exchange, 412, head ? null : "PreconditionFailed");
+            return;
+        }
+        String ifNoneMatch = requestHeaders.getFirst("If-None-Match");
+        String ifModifiedSince = requestHeaders.getFirst("If-Modified-Since");
+        boolean notModified = ifNoneMatch != null
+                ? ifNoneMatch.equals(object.eTag())
+                : ifModifiedSince != null && !object.lastModified().isAfter(ZonedDateTime.parse(ifModifiedSince, HTTP_DATE).toInstant());
+        if (notModified) {
+            exchange.sendResponseHeaders(304, -1);
+            return;
+        }
+
+        long start = 0;
+        long end = object.size() - 1;
+        int status = 200;
+        String range = requestHeaders.getFirst("Range");
+        String partNumber = request.query().get("partNumber");
+        if (partNumber != null) {
+            // A part of a multipart object, or the whole object as its single part.
+            int part = Integer.parseInt(partNumber);
+            List<Long> partSizes = object.partSizes().isEmpty() ? List.of(object.size()) : object.partSizes();
+            if (part < 1 || part > partSizes.size()) {
+                sendError(exchange, 416, head ? null : "InvalidPartNumber");
+                return;
+            }
+            for (int i = 0; i < part - 1; i++) {
+                start += partSizes.get(i);
+            }
+            end = start + partSizes.get(part - 1) - 1;
+            responseHeaders.set("x-amz-mp-parts-count", Integer.toString(partSizes.size()));
+            if (!object.partSizes().isEmpty()) {
+                status = 206;
+                responseHeaders.set("Content-Range", "bytes " + start + "-" + end + "/" + object.size());
+            }
+        } else if (range == null && "ENABLED".equalsIgnoreCase(requestHeaders.getFirst("x-amz-checksum-mode"))) {
+            object.checksums().forEach(responseHeaders::set);
+        }
+        if (range != null && range.startsWith("bytes=")) {
+            String[] bounds = range.substring("bytes=".length()).split("-", -1);
+            if (bounds[0].isEmpty()) {
+                start = Math.max(0, object.size() - Long.parseLong(bounds[1]));
+            } else {
+                start = Long.parseLong(bounds[0]);
+                if (!bounds[1].isEmpty()) {
+                    end = Math.min(end, Long.parseLong(bounds[1]));
+                }
+            }
+            if (start >= object.size()) {
+                responseHeaders.set("Content-Range", "bytes */" + object.size());
+                sendError(exchange, 416, head ? null : "InvalidRange");
+                return;
+            }
+            status = 206;
+            responseHeaders.set("Content-Range", "bytes " + start + "-" + end + "/" + object.size());
+        }
+        long length = end - start + 1;
+        responseHeaders.set("Content-Type", object.headers().getOrDefault("content-type", "binary/octet-stream"));
+        if (head || length == 0) {
+            responseHeaders.set("Content-Length", Long.toString(length));
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(status, length);
+        try (InputStream in = Files.newInputStream(object.file()); OutputStream out = exchange.getResponseBody()) {
+            in.skipNBytes(start);
+            copy(in, out, length);
+        }
+    }
+
+    /**
+     * Reads the request body into a temporary file, decoding the aws-chunked encoding the SDK uses
+     * when signing streaming payloads over plain HTTP.
+     */
+    private Body readBody(HttpExchange exchange) throws IOException {
+        Headers headers = exchange.getRequestHeaders();
+        String contentSha = headers.getFirst("x-amz-content-sha256");
+        String contentEncoding = headers.getFirst("Content-Encoding");
+        boolean awsChunked = (contentSha != null && contentSha.startsWith("STREAMING-"))
+                || (contentEncoding != null && contentEncoding.contains("aws-chunked"));
+        Path file = storage.resolve(UUID.randomUUID().toString());
+        MessageDigest digest = md5();
+        Checksummer crc32c = new Checksummer();
+        Checksummer sha256 = new Checksummer();
+        Map<String, String> trailers = new HashMap<>();
+        long size;
+        try (InputStream raw = new BufferedInputStream(exchange.getRequestBody());
+             OutputStream out = new ChecksumOutputStream(Files.newOutputStream(file), crc32c, sha256)) {
+            if (awsChunked) {
+                size = 0;
+                while (true) {
+                    String header = readLine(raw);
+                    int extension = header.indexOf(';');
+                    long chunkSize = Long.parseLong((extension < 0 ? header : header.substring(0, extension)).trim(), 16);
+                    if (chunkSize == 0) {
+                        // Collect trailing headers (e.g. flexible checksums) up to the final blank line.
+                        String trailer;
+                        while (!(trailer = readLine(raw)).isEmpty()) {
+                            int colon = trailer.indexOf(':');
+                            if (colon > 0) {
+                                trailers.put(trailer.substring(0, colon).trim().toLowerCase(), trailer.substring(colon + 1).trim());
+                            }
+                        }
+                        break;
+                    }
+                    DigestInputStream chunk = new DigestInputStream(raw, digest);
+                    copy(chunk, out, chunkSize);
+                    size += chunkSize;
+                    readLine(raw);
+                }
+            } else {
+                size = new DigestInputStream(raw, digest).transferTo(out);
+            }
+        }
+        return new Body(file, size, HexFormat.of().formatHex(digest.digest()), crc32c.value("x-amz-checksum-crc32c"),
+                        sha256.value("x-amz-checksum-sha256"), trailers);
+    }
+
+    /**
+     * Checks the CRC32C and SHA-256 checksums sent with a body, as headers or trailers.
+     *
+     * @return The checksums to store, or null if one does not match the body.
+     */
+    private static Map<String, String> checksums(Headers headers, Body body) {
+        Map<String, String> checksums = new HashMap<>();
+        for (String name : List.of("x-amz-checksum-crc32c", "x-amz-checksum-sha256")) {
+            String sent = headers.getFirst(name) != null ? headers.getFirst(name) : body.trailers().get(name);
+            if (sent == null) {
+                continue;
+            }
+            String actual = name.endsWith("crc32c") ? body.crc32c() : body.sha256();
+            if (!sent.equals(actual)) {
+                return null;
+            }
+            checksums.put(name, sent);
+        }
+        return checksums;
+    }
+
+    private static Map<String, String> fileChecksum(Path file, String algorithm) throws IOException {
+        String header = "x-amz-checksum-" + algorithm.toLowerCase().replace("-", "");
+        if (!header.equals("x-amz-checksum-crc32c") && !header.equals("x-amz-checksum-sha256")) {
+            return Map.of();
+        }
+        Checksummer checksummer = new Checksummer();
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                checksummer.update(buffer, 0, read);
+            }
+        }
+        return Map.of(header, checksummer.value(header));
+    }
+
+    /**
+     * Computes both a CRC32C and a SHA-256, and reports the one asked for, base64 encoded like S3 headers.
+     */
+    private static final class Checksummer {
+        private final CRC32C crc32c = new CRC32C();
+        private final MessageDigest sha256 = sha256();
+
+        void update(byte[] bytes, int offset, int length) {
+            crc32c.update(bytes, offset, length);
+            sha256.update(bytes, offset, length);
+        }
+
+        String value(String header) {
+            if (header.endsWith("sha256")) {
+                return Base64.getEncoder().encodeToString(sha256.digest());
+            }
+            long value = crc32c.getValue();
+            return Base64.getEncoder().encodeToString(new byte[]{(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value});
+        }
+    }
+
+    private static final class ChecksumOutputStream extends java.io.FilterOutputStream {
+        private final Checksummer[] checksummers;
+
+        private ChecksumOutputStream(OutputStream out, Checksummer... checksummers) {
+            super(out);
+            this.checksummers = checksummers;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            for (Checksummer checksummer : checksummers) {
+                checksummer.update(bytes, offset, length);
+            }
+            out.write(bytes, offset, length);
+        }
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != -1 && b != '\n') {
+            if (b != '\r') {
+                line.write(b);
+            }
+        }
+        return line.toString(StandardCharsets.US_ASCII);
+    }
+
+    private static void copy(InputStream in, OutputStream out, long length) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        long remaining = length;
+        while (remaining > 0) {
+            int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (read < 0) {
+                throw new IOException("Unexpected end of stream");
+            }
+            out.write(buffer, 0, read);
+            remaining -= read;
+        }
+    }
+
+    private static Map<String, String> storedHeaders(Headers requestHeaders) {
+        Map<String, String> stored = new HashMap<>();
+        requestHeaders.forEach((name, values) -> {
+            String lower = name.toLowerCase();
+            if (lower.startsWith("x-amz-meta-") || lower.equals("content-type") || lower.equals("content-encoding")
+                    || lower.equals("cache-control") || lower.equals("content-disposition")) {
+                stored.put(lower, values.get(0));
+            }
+        });
+        // aws-chunked is a transfer detail of the upload, not part of the stored object.
+        String contentEncoding = stored.get("content-encoding");
+        if (contentEncoding != null) {
+            String remaining = contentEncoding.replace("aws-chunked", "").replaceAll("^\\s*,|,\\s*$", "").trim();
+            if (remaining.isEmpty()) {
+                stored.remove("content-encoding");
+            } else {
+                stored.put("content-encoding", remaining);
+            }
+        }
+        return stored;
+    }
+
+    private static void sendXml(HttpExchange exchange, int status, String xml) throws IOException {
+        byte[] body = ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + xml).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/xml");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String errorCode) throws IOException {
+        if (errorCode == null || "HEAD".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        sendXml(exchange, status, "<Error><Code>" + errorCode + "</Code><Message>" + errorCode + "</Message><RequestId>local</RequestId></Error>");
+    }
+
+    private static List<String> xmlValues(String xml, String element) {
+        List<String> values = new ArrayList<>();
+        String open = "<" + element + ">";
+        String close = "</" + element + ">";
+        int index = 0;
+        while ((index = xml.indexOf(open, index)) >= 0) {
+            int end = xml.indexOf(close, index);
+            values.add(xml.substring(index + open.length(), end)
+                          .replace("&lt;", "<").replace("&gt;", ">").replace("&quot;", "\"").replace("&amp;", "&"));
+            index = end + close.length();
+        }
+        return values;
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals < 0) {
+                query.put(decode(pair), "");
+            } else {
+                query.put(decode(pair.substring(0, equals)), decode(pair.substring(equals + 1)));
+            }
+        }
+        return query;
+    }
+
+    private static String decode(String value) {
+        return URLDecoder.decode(value.replace("+", "%2B"), StandardCharsets.UTF_8);
+    }
+
+    private static String escape(String value) {
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+
+    private static String quote(String value) {
+        return "\"" + value + "\"";
+    }
+
+    private static Instant now() {
+        return Instant.now().truncatedTo(ChronoUnit.SECONDS);
+    }
+
+    private static void drain(InputStream in) throws IOException {
+        in.transferTo(OutputStream.nullOutputStream());
+    }
+
+    private static MessageDigest md5() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String md5Hex(byte[] content) {
+        return HexFormat.of().formatHex(md5().digest(content));
+    }
+}
@@ -0,0 +1,88 @@
+package com.s3.api.support;
+
+import org.junit.jupiter.api.AfterEach;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+/**
+ * Base class of the tests running the application against the in-process S3 stand-in.
+ * A single stand-in, destination folder and work directory serve every test class of the run, and the application is pointed at
+ * them with the same properties, so test classes with the same additional properties (set through
+ * {@code @SpringBootTest(properties = ...)}) share one cached Spring context instead of booting their own.
+ * Test classes use buckets of their own, since objects are kept for the whole run; injected faults and latency are
+ * cleared after each test.
+ */
+@SpringBootTest
+public abstract class LocalS3ServerTestBase {
+
+    // Part size used by the tests: the smallest S3 accepts, so multipart paths are exercised with small objects.
+    protected static final int PART_SIZE = 5 * 1024 * 1024;
+
+    protected static final LocalS3Server server = startServer();
+    protected static final Path destinationFolder = createTempDirectory("s3-app");
+    protected static final Path workDirectory = createTempDirectory("s3-app-work");
+
+    @DynamicPropertySource
+    static void localS3Properties(DynamicPropertyRegistry registry) {
+        registry.add("aws.access.key", () -> "test");
+        registry.add("aws.secret.key", () -> "test");
+        registry.add("aws.endpoint", () -> server.endpoint().toString());
+        registry.add("aws.path.style.access", () -> "true");
+        registry.add("spring.destination.folder", destinationFolder::toString);
+        registry.add("s3.work.directory", workDirectory::toString);
+        registry.add("s3.multipart.threshold", () -> PART_SIZE);
+        registry.add("s3.multipart.part-size", () -> PART_SIZE);
+        registry.add("s3.multipart.retry-backoff-ms", () -> 10);
+        registry.add("s3.bulk.copy.multipart-threshold", () -> PART_SIZE);
+        registry.add("s3.bulk.copy.part-size", () -> PART_SIZE);
+        registry.add("s3.bulk.checkpoint-interval", () -> "0s");
+        registry.add("s3.transfer.progress-interval", () -> "50ms");
+    }
+
+    @AfterEach
+    void resetServer() {
+        server.clearFaults();
+        server.setLatencyMillis(0);
+    }
+
+    /**
+     * @return Random content of the given size, the same for a given size.
+     */
+    protected static byte[] randomContent(int size) {
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        return content;
+    }
+
+    protected static Path createTempDirectory(String prefix) {
+        try {
+            return Files.createTempDirectory(prefix);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static LocalS3Server startServer() {
+        try {
+            LocalS3Server localS3Server = new LocalS3Server();
+            // Shared by every test class of the run, so it is only stopped with the JVM.
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    localS3Server.close();
+                } catch (IOException e) {
+                    // The JVM is exiting; its temporary storage is all that is left behind.
+                }
+            }));
+            return localS3Server;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}